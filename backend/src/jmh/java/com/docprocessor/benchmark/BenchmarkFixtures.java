@@ -0,0 +1,166 @@
+package com.docprocessor.benchmark;
+
+import com.docprocessor.cache.CacheKey;
+import com.docprocessor.cache.ResultCache;
+import com.docprocessor.dto.CacheStatsResponse;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Synthetic inputs for the benchmarks. Generated with a fixed seed so runs are comparable.
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Random pixels, so the image neither compresses nor dedupes away.
+     */
+    static BufferedImage noiseImage(int width, int height, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0xFFFFFF));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * A PDF with one full-page image per page; each page adds roughly
+     * 3 * imageSize^2 bytes to the file.
+     */
+    static Path imagePdf(Path target, int pages, int imageSize) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < pages; i++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+
+                PDImageXObject image = LosslessFactory.createFromImage(document, noiseImage(imageSize, imageSize, i));
+                try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+                    contentStream.drawImage(image, 50, 200, 495, 495);
+                }
+            }
+            document.save(target.toFile());
+        }
+        return target;
+    }
+
+    /**
+     * Gradients, shapes and light grain: compresses like a photo, unlike noiseImage.
+     */
+    static BufferedImage photoImage(int width, int height, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setPaint(new GradientPaint(0, 0, new Color(random.nextInt(0xFFFFFF)),
+                    width, height, new Color(random.nextInt(0xFFFFFF))));
+            g.fillRect(0, 0, width, height);
+            for (int i = 0; i < 40; i++) {
+                g.setColor(new Color(random.nextInt(0xFFFFFF)));
+                int size = Math.max(1, random.nextInt(Math.max(1, width / 4)));
+                g.fillOval(random.nextInt(width), random.nextInt(height), size, size);
+            }
+        } finally {
+            g.dispose();
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int grain = random.nextInt(9) - 4;
+                int rgb = image.getRGB(x, y);
+                int r = clamp(((rgb >> 16) & 0xFF) + grain);
+                int gr = clamp(((rgb >> 8) & 0xFF) + grain);
+                int b = clamp((rgb & 0xFF) + grain);
+                image.setRGB(x, y, (r << 16) | (gr << 8) | b);
+            }
+        }
+        return image;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    static Path writeImage(Path target, BufferedImage image, String format) throws IOException {
+        if (!ImageIO.write(image, format, target.toFile())) {
+            throw new IOException("No ImageIO writer for " + format);
+        }
+        return target;
+    }
+
+    /**
+     * A text document with a photo on every page, closer to what users upload
+     * than imagePdf. Each page adds roughly 40KB.
+     */
+    static Path documentPdf(Path target, int pages) throws IOException {
+        PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        try (PDDocument document = new PDDocument()) {
+            PDImageXObject photo = JPEGFactory.createFromImage(document, photoImage(600, 400, 7), 0.8f);
+            for (int i = 0; i < pages; i++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+                    contentStream.drawImage(photo, 50, 480, 300, 200);
+                    contentStream.beginText();
+                    contentStream.setFont(font, 10);
+                    contentStream.setLeading(12);
+                    contentStream.newLineAtOffset(50, 450);
+                    for (int line = 0; line < 30; line++) {
+                        contentStream.showText("Page " + (i + 1) + ", line " + (line + 1)
+                                + ": the quick brown fox jumps over the lazy dog 0123456789");
+                        contentStream.newLine();
+                    }
+                    contentStream.endText();
+                }
+            }
+            document.save(target.toFile());
+        }
+        return target;
+    }
+
+    /**
+     * A ResultCache that always computes, so benchmarks measure the work itself
+     * (the cache key, which hashes the input, is still built).
+     */
+    static ResultCache noCache() {
+        return new ResultCache() {
+            @Override
+            public List<File> getOrCompute(CacheKey key, Supplier<List<File>> computation) {
+                return computation.get();
+            }
+
+            @Override
+            public CacheStatsResponse getStats() {
+                return CacheStatsResponse.builder().enabled(false).build();
+            }
+        };
+    }
+
+    static void delete(List<File> files) {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.docprocessor.benchmark;
+
+import com.docprocessor.service.image.ImagePipeline;
+import com.docprocessor.service.image.ImageServiceImpl;
+import com.docprocessor.service.image.TiledImageProcessor;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end cost of the ImageServiceImpl operations on generated JPEGs of
+ * several sizes, including decoding the upload and writing the result.
+ * The result cache is bypassed so every call does the work.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ImageServiceBenchmark {
+
+    /** Width of the source image; height is three quarters of it */
+    @Param({"1024", "2048", "4096"})
+    private int width;
+
+    private Path workDir;
+    private DiskMultipartFile image;
+    private ImageServiceImpl imageService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("image-service-bench");
+        // ImageServiceImpl writes its results to ./temp
+        Files.createDirectories(Path.of("temp"));
+        Path fixture = BenchmarkFixtures.writeImage(workDir.resolve("photo.jpg"),
+                BenchmarkFixtures.photoImage(width, width * 3 / 4, 42), "jpg");
+        image = new DiskMultipartFile(fixture, "photo.jpg", "image/jpeg");
+        imageService = new ImageServiceImpl(BenchmarkFixtures.noCache(), new ImagePipeline(1, 1, 1),
+                new TiledImageProcessor(134217728, 256, "temp"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(workDir);
+    }
+
+    @Benchmark
+    public long resize() {
+        return consume(imageService.resizeImage(image, 800, 600));
+    }
+
+    @Benchmark
+    public long thumbnail() {
+        return consume(imageService.resizeImage(image, 200, 150));
+    }
+
+    @Benchmark
+    public long crop() {
+        return consume(imageService.cropImage(image, width / 4, width / 4, 512, 384));
+    }
+
+    @Benchmark
+    public long compress() {
+        return consume(imageService.compressImage(image, 0.7f));
+    }
+
+    @Benchmark
+    public long convertToPng() {
+        return consume(imageService.convertFormat(image, "png"));
+    }
+
+    private static long consume(File result) {
+        long size = result.length();
+        result.delete();
+        return size;
+    }
+}
@@ -0,0 +1,114 @@
+package com.docprocessor.benchmark;
+
+import com.docprocessor.security.CustomUserDetailsService;
+import com.docprocessor.security.JwtAuthenticationFilter;
+import com.docprocessor.security.JwtUtil;
+import com.docprocessor.security.JwtVerificationCache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of JWT authentication.
+ *
+ * legacyFilter replays what the filter used to do: derive the key and build a
+ * parser for each of three parses, then look the user up. uncachedFilter is the
+ * current filter with the verification cache disabled (one parse plus the lookup),
+ * cachedFilter the current filter on a token it has already verified.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JwtFilterBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-that-is-long-enough-for-hs256";
+
+    private CustomUserDetailsService userDetailsService;
+    private JwtAuthenticationFilter cachedFilter;
+    private JwtAuthenticationFilter uncachedFilter;
+    private MockHttpServletRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        userDetailsService = new CustomUserDetailsService();
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 3_600_000L);
+        ReflectionTestUtils.invokeMethod(jwtUtil, "init");
+
+        cachedFilter = filter(jwtUtil, new JwtVerificationCache(10_000, 300));
+        uncachedFilter = filter(jwtUtil, new JwtVerificationCache(0, 300));
+
+        String token = jwtUtil.generateToken("admin");
+        request = new MockHttpServletRequest("POST", "/api/image/rotate");
+        request.addHeader("Authorization", "Bearer " + token);
+    }
+
+    private JwtAuthenticationFilter filter(JwtUtil jwtUtil, JwtVerificationCache cache) {
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(filter, "userDetailsService", userDetailsService);
+        ReflectionTestUtils.setField(filter, "verificationCache", cache);
+        return filter;
+    }
+
+    @Benchmark
+    public Object legacyFilter() {
+        SecurityContextHolder.clearContext();
+        String jwt = request.getHeader("Authorization").substring(7);
+        String username = legacyClaims(jwt).getSubject();
+        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        if (legacyClaims(jwt).getSubject().equals(userDetails.getUsername())
+                && !legacyClaims(jwt).getExpiration().before(new Date())) {
+            UsernamePasswordAuthenticationToken authenticationToken =
+                    new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+            authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            SecurityContextHolder.getContext().setAuthentication(authenticationToken);
+        }
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    @Benchmark
+    public Object uncachedFilter() throws ServletException, IOException {
+        return run(uncachedFilter);
+    }
+
+    @Benchmark
+    public Object cachedFilter() throws ServletException, IOException {
+        return run(cachedFilter);
+    }
+
+    private Object run(JwtAuthenticationFilter filter) throws ServletException, IOException {
+        // OncePerRequestFilter marks the request as filtered; start clean each time
+        SecurityContextHolder.clearContext();
+        request.removeAttribute(filter.getClass().getName() + ".FILTERED");
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private static Claims legacyClaims(String jwt) {
+        return Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .build()
+                .parseSignedClaims(jwt)
+                .getPayload();
+    }
+}
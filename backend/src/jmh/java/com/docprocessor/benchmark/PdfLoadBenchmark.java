@@ -0,0 +1,78 @@
+package com.docprocessor.benchmark;
+
+import com.docprocessor.service.pdf.PdfDocumentLoader;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old getBytes() load path with the file-backed PdfDocumentLoader.
+ *
+ * Run with "-prof gc" and compare gc.alloc.rate.norm: the old path allocates
+ * at least the full file size per load, the new one stays near constant.
+ * The 256MB heap cap makes the byte[] path fail first on large inputs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PdfLoadBenchmark {
+
+    @Param({"10", "100"})
+    private int pages;
+
+    private Path workDir;
+    private DiskMultipartFile upload;
+    private PdfDocumentLoader loader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("pdf-load-bench");
+        Path fixture = BenchmarkFixtures.imagePdf(workDir.resolve("fixture.pdf"), pages, 256);
+        upload = new DiskMultipartFile(fixture, "fixture.pdf", "application/pdf");
+        loader = new PdfDocumentLoader(workDir.toString(), "mixed", 16 * 1024 * 1024);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(workDir);
+    }
+
+    @Benchmark
+    public int loadFromBytes() throws IOException {
+        try (PDDocument document = Loader.loadPDF(upload.getBytes())) {
+            return walkPages(document);
+        }
+    }
+
+    @Benchmark
+    public int loadStreaming() throws IOException {
+        try (PDDocument document = loader.load(upload)) {
+            return walkPages(document);
+        }
+    }
+
+    /**
+     * Touch every page and its resources so the object graph is actually parsed.
+     */
+    private static int walkPages(PDDocument document) throws IOException {
+        int count = 0;
+        for (PDPage page : document.getPages()) {
+            PDResources resources = page.getResources();
+            for (var name : resources.getXObjectNames()) {
+                count += resources.getXObject(name).getCOSObject().getLength() > 0 ? 1 : 0;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,126 @@
+package com.docprocessor.benchmark;
+
+import com.docprocessor.service.pdf.ExcelPdfConverter;
+import com.docprocessor.service.pdf.PdfDocumentLoader;
+import com.docprocessor.service.pdf.PdfImageImporter;
+import com.docprocessor.service.pdf.PdfMerger;
+import com.docprocessor.service.pdf.PdfPageRenderer;
+import com.docprocessor.service.pdf.PdfServiceImpl;
+import com.docprocessor.service.pdf.PdfSplitter;
+import com.docprocessor.service.pdf.RenderOptions;
+import com.docprocessor.service.pdf.StampOptions;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end cost of the PdfServiceImpl operations on generated documents,
+ * including loading the upload and writing the result to the temp directory.
+ * The result cache is bypassed so every call does the work.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx512m")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PdfServiceBenchmark {
+
+    // Rendering is bounded to the first pages so its cost doesn't swamp the page-count axis
+    private static final int RENDER_PAGES = 10;
+
+    @Param({"10", "100"})
+    private int pages;
+
+    private Path workDir;
+    private DiskMultipartFile document;
+    private PdfPageRenderer renderer;
+    private PdfImageImporter imageImporter;
+    private ExcelPdfConverter excelConverter;
+    private PdfSplitter splitter;
+    private PdfMerger merger;
+    private PdfServiceImpl pdfService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("pdf-service-bench");
+        // PdfServiceImpl writes its results to ./temp
+        Files.createDirectories(Path.of("temp"));
+        Path fixture = BenchmarkFixtures.documentPdf(workDir.resolve("document.pdf"), pages);
+        document = new DiskMultipartFile(fixture, "document.pdf", "application/pdf");
+
+        renderer = new PdfPageRenderer(4, 4, 600);
+        PdfDocumentLoader loader = new PdfDocumentLoader(workDir.toString(), "mixed", 16 * 1024 * 1024);
+        imageImporter = new PdfImageImporter(loader, 4);
+        excelConverter = new ExcelPdfConverter(loader, 4);
+        splitter = new PdfSplitter(loader, 4);
+        merger = new PdfMerger(loader, 4);
+        pdfService = new PdfServiceImpl(loader, renderer, imageImporter, excelConverter, splitter, merger,
+                BenchmarkFixtures.noCache());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        renderer.shutdown();
+        imageImporter.shutdown();
+        excelConverter.shutdown();
+        splitter.shutdown();
+        merger.shutdown();
+        FileSystemUtils.deleteRecursively(workDir);
+    }
+
+    @Benchmark
+    public long merge() {
+        File merged = pdfService.mergePdfs(List.of(document, document));
+        long size = merged.length();
+        merged.delete();
+        return size;
+    }
+
+    @Benchmark
+    public int splitPerPage() {
+        List<File> parts = pdfService.splitPdf(document, 1);
+        BenchmarkFixtures.delete(parts);
+        return parts.size();
+    }
+
+    @Benchmark
+    public long addPageNumbers() {
+        File numbered = pdfService.addPageNumbers(document);
+        long size = numbered.length();
+        numbered.delete();
+        return size;
+    }
+
+    @Benchmark
+    public long stampAllOverlays() {
+        StampOptions options = StampOptions.builder()
+                .pageNumbers(true)
+                .pageNumberFormat("{page} / {total}")
+                .header("Benchmark")
+                .footer("docprocessor")
+                .watermark("DRAFT")
+                .build();
+        File stamped = pdfService.stampPdf(document, options);
+        long size = stamped.length();
+        stamped.delete();
+        return size;
+    }
+
+    @Benchmark
+    public int renderPng() {
+        RenderOptions options = RenderOptions.builder()
+                .dpi(150)
+                .lastPage(Math.min(pages, RENDER_PAGES))
+                .build();
+        List<File> images = pdfService.pdfToPng(document, options);
+        BenchmarkFixtures.delete(images);
+        return images.size();
+    }
+}
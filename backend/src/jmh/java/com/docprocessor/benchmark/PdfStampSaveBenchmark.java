@@ -0,0 +1,104 @@
+package com.docprocessor.benchmark;
+
+import com.docprocessor.job.SpooledMultipartFile;
+import com.docprocessor.service.pdf.ExcelPdfConverter;
+import com.docprocessor.service.pdf.PdfDocumentLoader;
+import com.docprocessor.service.pdf.PdfImageImporter;
+import com.docprocessor.service.pdf.PdfMerger;
+import com.docprocessor.service.pdf.PdfPageRenderer;
+import com.docprocessor.service.pdf.PdfServiceImpl;
+import com.docprocessor.service.pdf.PdfSplitter;
+import com.docprocessor.service.pdf.StampOptions;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full rewrite vs incremental update when stamping image-heavy PDFs.
+ *
+ * Each page carries a 512 px incompressible image (about 0.8MB), so a full
+ * save is dominated by re-reading and rewriting image streams that did not
+ * change, while the incremental save copies the original with transferTo and
+ * appends only the stamped pages. Compare the scores for the same page count.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx512m")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PdfStampSaveBenchmark {
+
+    @Param({"20", "100"})
+    private int pages;
+
+    @Param({"false", "true"})
+    private boolean incremental;
+
+    private Path workDir;
+    private SpooledMultipartFile document;
+    private PdfPageRenderer renderer;
+    private PdfImageImporter imageImporter;
+    private ExcelPdfConverter excelConverter;
+    private PdfSplitter splitter;
+    private PdfMerger merger;
+    private PdfServiceImpl pdfService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("pdf-stamp-bench");
+        // PdfServiceImpl writes its results to ./temp
+        Files.createDirectories(Path.of("temp"));
+        Path fixture = BenchmarkFixtures.imagePdf(workDir.resolve("scan.pdf"), pages, 512);
+        // Spooled like a job upload, so both modes open it in place without a private copy
+        document = SpooledMultipartFile.spool(
+                new DiskMultipartFile(fixture, "scan.pdf", "application/pdf"), workDir);
+
+        renderer = new PdfPageRenderer(4, 4, 600);
+        PdfDocumentLoader loader = new PdfDocumentLoader(workDir.toString(), "mixed", 16 * 1024 * 1024);
+        imageImporter = new PdfImageImporter(loader, 4);
+        excelConverter = new ExcelPdfConverter(loader, 4);
+        splitter = new PdfSplitter(loader, 4);
+        merger = new PdfMerger(loader, 4);
+        pdfService = new PdfServiceImpl(loader, renderer, imageImporter, excelConverter, splitter, merger,
+                BenchmarkFixtures.noCache());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        renderer.shutdown();
+        imageImporter.shutdown();
+        excelConverter.shutdown();
+        splitter.shutdown();
+        merger.shutdown();
+        FileSystemUtils.deleteRecursively(workDir);
+    }
+
+    @Benchmark
+    public long addPageNumbers() {
+        File numbered = pdfService.addPageNumbers(document, incremental);
+        long size = numbered.length();
+        numbered.delete();
+        return size;
+    }
+
+    @Benchmark
+    public long stampAllOverlays() {
+        StampOptions options = StampOptions.builder()
+                .pageNumbers(true)
+                .pageNumberFormat("{page} / {total}")
+                .header("Benchmark")
+                .watermark("DRAFT")
+                .incremental(incremental)
+                .build();
+        File stamped = pdfService.stampPdf(document, options);
+        long size = stamped.length();
+        stamped.delete();
+        return size;
+    }
+}
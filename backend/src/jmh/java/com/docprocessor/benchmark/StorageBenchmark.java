@@ -0,0 +1,60 @@
+package com.docprocessor.benchmark;
+
+import com.docprocessor.storage.LocalStorageService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of LocalStorageService.store for uploads of several sizes: validation
+ * plus the copy from the multipart part into the storage directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StorageBenchmark {
+
+    @Param({"1", "16", "48"})
+    private int megabytes;
+
+    private Path workDir;
+    private Path storageDir;
+    private DiskMultipartFile upload;
+    private LocalStorageService storageService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("storage-bench");
+        storageDir = workDir.resolve("uploads");
+
+        byte[] content = new byte[megabytes * 1024 * 1024];
+        new Random(megabytes).nextBytes(content);
+        Path fixture = Files.write(workDir.resolve("upload.pdf"), content);
+        upload = new DiskMultipartFile(fixture, "upload.pdf", "application/pdf");
+
+        storageService = new LocalStorageService(storageDir.toString(), workDir.resolve("temp").toString());
+        ReflectionTestUtils.setField(storageService, "maxFileSize", 52428800L);
+        storageService.init();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(workDir);
+    }
+
+    @Benchmark
+    public String store() throws IOException {
+        String filename = storageService.store(upload);
+        Files.delete(storageDir.resolve(filename));
+        return filename;
+    }
+}
@@ -0,0 +1,109 @@
+package com.docprocessor.cache;
+
+import com.docprocessor.exception.StorageException;
+import com.docprocessor.job.SpooledMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Content-addressed cache key: SHA-256 over the operation name, the content
+ * hash of every input (in order) and the parameters sorted by name.
+ * Callers should only add parameters that affect the output.
+ */
+public final class CacheKey {
+
+    private final String operation;
+    private final String digest;
+
+    private CacheKey(String operation, String digest) {
+        this.operation = operation;
+        this.digest = digest;
+    }
+
+    public static Builder builder(String operation) {
+        return new Builder(operation);
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public static final class Builder {
+        private final String operation;
+        private final MessageDigest digest = sha256();
+        private final Map<String, String> params = new TreeMap<>();
+
+        private Builder(String operation) {
+            this.operation = operation;
+            update("op", operation);
+        }
+
+        public Builder input(MultipartFile file) {
+            if (file instanceof SpooledMultipartFile spooled && spooled.getContentHash() != null) {
+                // Hashed while it was being received
+                update("input", spooled.getContentHash());
+                return this;
+            }
+            MessageDigest content = sha256();
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream inputStream = file.getInputStream()) {
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    content.update(buffer, 0, read);
+                }
+            } catch (IOException e) {
+                throw new StorageException("Failed to read upload", e);
+            }
+            update("input", HexFormat.of().formatHex(content.digest()));
+            return this;
+        }
+
+        public Builder inputs(List<? extends MultipartFile> files) {
+            files.forEach(this::input);
+            return this;
+        }
+
+        public Builder param(String name, Object value) {
+            params.put(name, String.valueOf(value));
+            return this;
+        }
+
+        public CacheKey build() {
+            params.forEach(this::update);
+            return new CacheKey(operation, HexFormat.of().formatHex(digest.digest()));
+        }
+
+        private void update(String name, String value) {
+            // Length-prefixed so "ab"+"c" and "a"+"bc" can never collide
+            for (String part : new String[]{name, value}) {
+                byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+                digest.update((byte) (bytes.length >>> 24));
+                digest.update((byte) (bytes.length >>> 16));
+                digest.update((byte) (bytes.length >>> 8));
+                digest.update((byte) bytes.length);
+                digest.update(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.docprocessor.cache;
+
+import com.docprocessor.dto.CacheStatsResponse;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Result Cache
+ *
+ * Purpose: Serves repeated operations on identical inputs without re-running
+ * PDFBox, Thumbnailator or FFmpeg
+ *
+ * How it works:
+ * - Each entry is a directory under storage.location/cache named by its key digest
+ * - An in-memory LRU index tracks entry sizes; the least recently used entries
+ *   are deleted once the total exceeds cache.max.bytes
+ * - Results are hard-linked between the temp directory and the cache where the
+ *   file system allows it, so storing and serving an entry costs no data copy
+ * - The index is rebuilt from disk on startup, oldest entries first
+ */
+@Service
+public class DiskResultCache implements ResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiskResultCache.class);
+
+    private final Path cacheLocation;
+    private final Path tempLocation;
+    private final boolean enabled;
+    private final long maxBytes;
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, CacheEntry> index = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public DiskResultCache(@Value("${storage.location}") String storageLocation,
+                           @Value("${storage.temp.location}") String tempStorageLocation,
+                           @Value("${cache.enabled}") boolean enabled,
+                           @Value("${cache.max.bytes}") long maxBytes) {
+        this.cacheLocation = Paths.get(storageLocation).resolve("cache").toAbsolutePath();
+        this.tempLocation = Paths.get(tempStorageLocation).toAbsolutePath();
+        this.enabled = enabled;
+        this.maxBytes = maxBytes;
+    }
+
+    private record CacheEntry(Path directory, List<String> filenames, long size) {
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(cacheLocation);
+            Files.createDirectories(tempLocation);
+            try (Stream<Path> directories = Files.list(cacheLocation)) {
+                List<Path> sorted = directories
+                        .filter(Files::isDirectory)
+                        .sorted(Comparator.comparing(DiskResultCache::lastModified))
+                        .toList();
+                for (Path directory : sorted) {
+                    if (directory.getFileName().toString().contains(".")) {
+                        // Half-written entry from a previous run
+                        FileSystemUtils.deleteRecursively(directory);
+                        continue;
+                    }
+                    CacheEntry entry = readEntry(directory);
+                    synchronized (this) {
+                        index.put(directory.getFileName().toString(), entry);
+                        totalBytes += entry.size();
+                    }
+                }
+            }
+            List<Path> evicted;
+            synchronized (this) {
+                evicted = evictIfNeeded();
+            }
+            deleteAll(evicted);
+            logger.info("Result cache initialized with {} entries ({} bytes)", index.size(), totalBytes);
+        } catch (IOException e) {
+            logger.error("Failed to initialize result cache", e);
+        }
+    }
+
+    @Override
+    public List<File> getOrCompute(CacheKey key, Supplier<List<File>> computation) {
+        if (!enabled) {
+            return computation.get();
+        }
+
+        CacheEntry entry;
+        synchronized (this) {
+            entry = index.get(key.getDigest());
+        }
+        if (entry != null) {
+            List<File> files = materialize(entry);
+            if (files != null) {
+                hits.incrementAndGet();
+                logger.info("Result cache hit for {}", key.getOperation());
+                return files;
+            }
+            remove(key.getDigest(), entry);
+        }
+
+        misses.incrementAndGet();
+        List<File> results = computation.get();
+        store(key, results);
+        return results;
+    }
+
+    /**
+     * Put the cached files back into the temp directory under their original
+     * names. Returns null if the entry was evicted or damaged in the meantime.
+     */
+    private List<File> materialize(CacheEntry entry) {
+        List<File> files = new ArrayList<>();
+        try {
+            FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+            for (String filename : entry.filenames()) {
+                Path cached = entry.directory().resolve(filename);
+                Path target = tempLocation.resolve(stripOrder(filename));
+                if (!Files.exists(target)) {
+                    linkOrCopy(cached, target);
+                }
+                // Keep the temp cleanup from deleting a freshly served result
+                Files.setLastModifiedTime(target, now);
+                files.add(target.toFile());
+            }
+            Files.setLastModifiedTime(entry.directory(), now);
+            return files;
+        } catch (IOException e) {
+            logger.warn("Failed to restore cached result from {}", entry.directory(), e);
+            return null;
+        }
+    }
+
+    private void store(CacheKey key, List<File> results) {
+        Path staging = cacheLocation.resolve(key.getDigest() + "." + UUID.randomUUID());
+        Path directory = cacheLocation.resolve(key.getDigest());
+        try {
+            Files.createDirectories(staging);
+            List<String> filenames = new ArrayList<>();
+            long size = 0;
+            for (int i = 0; i < results.size(); i++) {
+                File result = results.get(i);
+                // Order prefix keeps multi-file results (split, page images) in sequence
+                String filename = String.format("%04d_%s", i, result.getName());
+                linkOrCopy(result.toPath(), staging.resolve(filename));
+                filenames.add(filename);
+                size += result.length();
+            }
+
+            if (size > maxBytes || Files.exists(directory)) {
+                // Too large to ever fit, or a concurrent identical request stored it first
+                FileSystemUtils.deleteRecursively(staging);
+                return;
+            }
+            Files.move(staging, directory, StandardCopyOption.ATOMIC_MOVE);
+
+            List<Path> evicted;
+            synchronized (this) {
+                CacheEntry previous = index.put(key.getDigest(), new CacheEntry(directory, filenames, size));
+                if (previous != null) {
+                    totalBytes -= previous.size();
+                }
+                totalBytes += size;
+                evicted = evictIfNeeded();
+            }
+            deleteAll(evicted);
+        } catch (FileAlreadyExistsException e) {
+            // A concurrent identical request stored it first
+            FileSystemUtils.deleteRecursively(staging.toFile());
+        } catch (IOException e) {
+            logger.warn("Failed to cache result for {}", key.getOperation(), e);
+            FileSystemUtils.deleteRecursively(staging.toFile());
+        }
+    }
+
+    private void remove(String digest, CacheEntry entry) {
+        synchronized (this) {
+            if (!index.remove(digest, entry)) {
+                return;
+            }
+            totalBytes -= entry.size();
+        }
+        FileSystemUtils.deleteRecursively(entry.directory().toFile());
+    }
+
+    /**
+     * Drop the eldest entries from the index until it fits. Caller must hold
+     * the monitor, and delete the returned directories after releasing it so
+     * a large eviction doesn't stall every other lookup.
+     */
+    private List<Path> evictIfNeeded() {
+        List<Path> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, CacheEntry>> iterator = index.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            CacheEntry eldest = iterator.next().getValue();
+            iterator.remove();
+            totalBytes -= eldest.size();
+            evictions.incrementAndGet();
+            evicted.add(eldest.directory());
+        }
+        return evicted;
+    }
+
+    private static void deleteAll(List<Path> directories) {
+        directories.forEach(directory -> FileSystemUtils.deleteRecursively(directory.toFile()));
+    }
+
+    @Override
+    public synchronized CacheStatsResponse getStats() {
+        return CacheStatsResponse.builder()
+                .enabled(enabled)
+                .hits(hits.get())
+                .misses(misses.get())
+                .evictions(evictions.get())
+                .entries(index.size())
+                .sizeBytes(totalBytes)
+                .maxSizeBytes(maxBytes)
+                .build();
+    }
+
+    private static CacheEntry readEntry(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> sorted = files.sorted().toList();
+            long size = 0;
+            List<String> filenames = new ArrayList<>();
+            for (Path file : sorted) {
+                filenames.add(file.getFileName().toString());
+                size += Files.size(file);
+            }
+            return new CacheEntry(directory, filenames, size);
+        }
+    }
+
+    private static void linkOrCopy(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (UnsupportedOperationException | IOException e) {
+            // Different file system or no hard link support
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String stripOrder(String filename) {
+        return filename.substring(filename.indexOf('_') + 1);
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.docprocessor.cache;
+
+import com.docprocessor.dto.CacheStatsResponse;
+
+import java.io.File;
+import java.util.List;
+import java.util.function.Supplier;
+
+public interface ResultCache {
+
+    /**
+     * Return the cached results for the key, copied back into the temp directory,
+     * or run the computation and remember its results.
+     */
+    List<File> getOrCompute(CacheKey key, Supplier<List<File>> computation);
+
+    CacheStatsResponse getStats();
+}
@@ -1,15 +1,21 @@
 package com.docprocessor.config;
 
+import com.docprocessor.ratelimit.InMemoryProxyManager;
+import com.docprocessor.ratelimit.LocalRateLimiter;
+import com.docprocessor.ratelimit.ProxyManagerRateLimiter;
+import com.docprocessor.ratelimit.RateLimiter;
 import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
 import io.github.bucket4j.Refill;
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.Duration;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Rate Limiting Configuration
@@ -18,19 +24,29 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  * Why Rate Limiting is Important:
  * 1. Prevents DoS attacks by limiting requests per user
- * 2. Protects CPU-intensive operations (PDF/image processing)
+ * 2. Protects CPU-intensive operations (PDF/image/video processing)
  * 3. Ensures fair access for all users
  * 4. Reduces server load and prevents resource exhaustion
  *
  * Implementation: Token bucket algorithm
  * - Each user gets a bucket with tokens
- * - Each request consumes one token
+ * - Each request consumes tokens according to its cost (see RateLimitInterceptor)
  * - Tokens refill over time
  * - Requests blocked when bucket is empty
+ *
+ * Backends (rate.limit.backend):
+ * - local: in-process buckets in a bounded store; idle users are evicted
+ *   once their bucket would have refilled anyway. Each replica has its own budget
+ * - distributed: bucket state lives in a Bucket4j ProxyManager. Declare a
+ *   ProxyManager&lt;String&gt; bean for a shared store (bucket4j-redis,
+ *   bucket4j-postgresql...) and all replicas enforce one budget; without one,
+ *   an in-process stand-in is used
  */
 @Configuration
 public class RateLimitConfig {
 
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitConfig.class);
+
     @Value("${rate.limit.capacity}")
     private int capacity;
 
@@ -40,16 +56,41 @@ public class RateLimitConfig {
     @Value("${rate.limit.refill.duration}")
     private int refillDuration;
 
-    @Bean
-    public Map<String, Bucket> rateLimitBuckets() {
-        return new ConcurrentHashMap<>();
-    }
+    @Value("${rate.limit.backend}")
+    private String backend;
+
+    @Value("${rate.limit.max.keys}")
+    private int maxKeys;
 
-    public Bucket createNewBucket() {
+    @Bean
+    public BucketConfiguration rateLimitBucketConfiguration() {
         Bandwidth limit = Bandwidth.classic(capacity,
                 Refill.intervally(refillTokens, Duration.ofSeconds(refillDuration)));
-        return Bucket.builder()
+        return BucketConfiguration.builder()
                 .addLimit(limit)
                 .build();
     }
+
+    @Bean
+    public RateLimiter rateLimiter(BucketConfiguration rateLimitBucketConfiguration,
+                                   ObjectProvider<ProxyManager<String>> proxyManager) {
+        if ("local".equalsIgnoreCase(backend)) {
+            return new LocalRateLimiter(rateLimitBucketConfiguration, maxKeys, idleTimeout());
+        }
+        if (!"distributed".equalsIgnoreCase(backend)) {
+            throw new IllegalStateException("Unknown rate.limit.backend: " + backend);
+        }
+        ProxyManager<String> shared = proxyManager.getIfAvailable();
+        if (shared == null) {
+            logger.warn("No ProxyManager bean found; rate limits are kept in this process only");
+            shared = new InMemoryProxyManager(maxKeys, idleTimeout());
+        }
+        return new ProxyManagerRateLimiter(shared, rateLimitBucketConfiguration);
+    }
+
+    // An idle bucket is full again after this long, so forgetting it loses nothing
+    private Duration idleTimeout() {
+        long refills = Math.max(1, (capacity + refillTokens - 1) / Math.max(1, refillTokens));
+        return Duration.ofSeconds(refills * refillDuration);
+    }
 }
@@ -1,155 +1,204 @@
 package com.docprocessor.controller;
 
-import com.docprocessor.config.RateLimitConfig;
+import com.docprocessor.dto.ImageBatchItem;
+import com.docprocessor.dto.ImageOperation;
+import com.docprocessor.dto.JobResponse;
 import com.docprocessor.dto.ProcessingResponse;
-import com.docprocessor.exception.RateLimitExceededException;
+import com.docprocessor.exception.InvalidFileException;
+import com.docprocessor.job.Job;
+import com.docprocessor.job.JobService;
+import com.docprocessor.job.JobTask;
+import com.docprocessor.job.WorkloadType;
+import com.docprocessor.ratelimit.RateLimited;
+import com.docprocessor.service.image.ImagePipeline;
 import com.docprocessor.service.image.ImageService;
-import io.github.bucket4j.Bucket;
+import com.docprocessor.storage.DownloadService;
+import com.docprocessor.upload.FileType;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.File;
-import java.util.Map;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/image")
 public class ImageController {
 
+    private static final String DOWNLOAD_PATH = "/api/image/download/";
+
     @Autowired
     private ImageService imageService;
 
     @Autowired
-    private RateLimitConfig rateLimitConfig;
+    private JobService jobService;
 
     @Autowired
-    private Map<String, Bucket> rateLimitBuckets;
+    private DownloadService downloadService;
 
-    private void checkRateLimit(String username) {
-        Bucket bucket = rateLimitBuckets.computeIfAbsent(username, k -> rateLimitConfig.createNewBucket());
-        if (!bucket.tryConsume(1)) {
-            throw new RateLimitExceededException("Rate limit exceeded. Please try again later.");
-        }
-    }
+    @Autowired
+    private ImagePipeline imagePipeline;
+
+    @Autowired
+    private ObjectMapper objectMapper;
 
     @PostMapping("/resize")
-    public ResponseEntity<ProcessingResponse> resizeImage(
+    @RateLimited
+    public CompletableFuture<ResponseEntity<?>> resizeImage(
             @RequestParam("file") MultipartFile file,
             @RequestParam("width") int width,
             @RequestParam("height") int height,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
             Authentication authentication) {
 
-        checkRateLimit(authentication.getName());
-
-        File result = imageService.resizeImage(file, width, height);
-        ProcessingResponse response = ProcessingResponse.builder()
-                .filename(result.getName())
-                .downloadUrl("/api/image/download/" + result.getName())
-                .fileSize(result.length())
-                .message("Image resized successfully")
-                .build();
-
-        return ResponseEntity.ok(response);
+        Job job = submit("resize", file, authentication,
+                inputs -> List.of(imageService.resizeImage(inputs.get(0), width, height)));
+        return respond(job, async, results -> toResponse(results.get(0), "Image resized successfully"));
     }
 
     @PostMapping("/crop")
-    public ResponseEntity<ProcessingResponse> cropImage(
+    @RateLimited
+    public CompletableFuture<ResponseEntity<?>> cropImage(
             @RequestParam("file") MultipartFile file,
             @RequestParam("x") int x,
             @RequestParam("y") int y,
             @RequestParam("width") int width,
             @RequestParam("height") int height,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
             Authentication authentication) {
 
-        checkRateLimit(authentication.getName());
-
-        File result = imageService.cropImage(file, x, y, width, height);
-        ProcessingResponse response = ProcessingResponse.builder()
-                .filename(result.getName())
-                .downloadUrl("/api/image/download/" + result.getName())
-                .fileSize(result.length())
-                .message("Image cropped successfully")
-                .build();
-
-        return ResponseEntity.ok(response);
+        Job job = submit("crop", file, authentication,
+                inputs -> List.of(imageService.cropImage(inputs.get(0), x, y, width, height)));
+        return respond(job, async, results -> toResponse(results.get(0), "Image cropped successfully"));
     }
 
     @PostMapping("/rotate")
-    public ResponseEntity<ProcessingResponse> rotateImage(
+    @RateLimited
+    public CompletableFuture<ResponseEntity<?>> rotateImage(
             @RequestParam("file") MultipartFile file,
             @RequestParam("angle") double angle,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
             Authentication authentication) {
 
-        checkRateLimit(authentication.getName());
-
-        File result = imageService.rotateImage(file, angle);
-        ProcessingResponse response = ProcessingResponse.builder()
-                .filename(result.getName())
-                .downloadUrl("/api/image/download/" + result.getName())
-                .fileSize(result.length())
-                .message("Image rotated successfully")
-                .build();
-
-        return ResponseEntity.ok(response);
+        Job job = submit("rotate", file, authentication,
+                inputs -> List.of(imageService.rotateImage(inputs.get(0), angle)));
+        return respond(job, async, results -> toResponse(results.get(0), "Image rotated successfully"));
     }
 
     @PostMapping("/convert")
-    public ResponseEntity<ProcessingResponse> convertFormat(
+    @RateLimited
+    public CompletableFuture<ResponseEntity<?>> convertFormat(
             @RequestParam("file") MultipartFile file,
             @RequestParam("format") String format,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
             Authentication authentication) {
 
-        checkRateLimit(authentication.getName());
-
-        File result = imageService.convertFormat(file, format);
-        ProcessingResponse response = ProcessingResponse.builder()
-                .filename(result.getName())
-                .downloadUrl("/api/image/download/" + result.getName())
-                .fileSize(result.length())
-                .message("Image format converted successfully")
-                .build();
-
-        return ResponseEntity.ok(response);
+        Job job = submit("convert", file, authentication,
+                inputs -> List.of(imageService.convertFormat(inputs.get(0), format)));
+        return respond(job, async, results -> toResponse(results.get(0), "Image format converted successfully"));
     }
 
     @PostMapping("/compress")
-    public ResponseEntity<ProcessingResponse> compressImage(
+    @RateLimited
+    public CompletableFuture<ResponseEntity<?>> compressImage(
             @RequestParam("file") MultipartFile file,
             @RequestParam(value = "quality", defaultValue = "0.8") float quality,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
             Authentication authentication) {
 
-        checkRateLimit(authentication.getName());
+        Job job = submit("compress", file, authentication,
+                inputs -> List.of(imageService.compressImage(inputs.get(0), quality)));
+        return respond(job, async, results -> toResponse(results.get(0), "Image compressed successfully"));
+    }
 
-        File result = imageService.compressImage(file, quality);
-        ProcessingResponse response = ProcessingResponse.builder()
-                .filename(result.getName())
-                .downloadUrl("/api/image/download/" + result.getName())
-                .fileSize(result.length())
-                .message("Image compressed successfully")
-                .build();
+    /**
+     * Apply an ordered chain of operations (a JSON array of ImageOperation) to
+     * every uploaded image. Streams one JSON line per image as it finishes.
+     * Like the ZIP endpoints this is a streamed response, not a job: it runs on
+     * the MVC async executor and skips the job queue's 503 backpressure; the
+     * images themselves are processed on the bounded batch pool.
+     */
+    @PostMapping("/batch")
+    @RateLimited(perFile = true)
+    public ResponseEntity<StreamingResponseBody> processBatch(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam("operations") String operations) {
+
+        ImagePipeline.Chain chain = imagePipeline.compile(files.size(), parseOperations(operations));
+        files.forEach(file -> FileType.require(file, FileType.IMAGES));
+        StreamingResponseBody body = outputStream -> imageService.processBatch(files, chain, result -> {
+            outputStream.write(objectMapper.writeValueAsBytes(toBatchItem(result)));
+            outputStream.write('\n');
+            outputStream.flush();
+        });
 
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping("/download/{filename}")
-    public ResponseEntity<Resource> downloadFile(@PathVariable String filename) {
-        File file = new File("./temp/" + filename);
-        Resource resource = new FileSystemResource(file);
+    public void downloadFile(@PathVariable String filename, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        downloadService.serve(filename, request, response);
+    }
+
+    private Job submit(String operation, MultipartFile file, Authentication authentication, JobTask task) {
+        FileType.require(file, FileType.IMAGES);
+        return jobService.submit(authentication.getName(), "image." + operation, WorkloadType.DOCUMENT,
+                DOWNLOAD_PATH, List.of(file), task);
+    }
 
-        String contentType = MediaType.IMAGE_JPEG_VALUE;
-        if (filename.endsWith(".png")) {
-            contentType = MediaType.IMAGE_PNG_VALUE;
+    private CompletableFuture<ResponseEntity<?>> respond(Job job, boolean async, Function<List<File>, ?> body) {
+        if (async) {
+            JobResponse response = JobResponse.from(job);
+            return CompletableFuture.completedFuture(ResponseEntity.accepted()
+                    .header(HttpHeaders.LOCATION, response.getStatusUrl())
+                    .body(response));
         }
+        return job.getCompletion().thenApply(results -> ResponseEntity.ok(body.apply(results)));
+    }
 
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                .contentType(MediaType.parseMediaType(contentType))
-                .body(resource);
+    private List<ImageOperation> parseOperations(String operations) {
+        try {
+            return objectMapper.readValue(operations, new TypeReference<List<ImageOperation>>() { });
+        } catch (JsonProcessingException e) {
+            throw new InvalidFileException("operations must be a JSON array of image operations");
+        }
+    }
+
+    private ImageBatchItem toBatchItem(ImagePipeline.Result result) {
+        ImageBatchItem.ImageBatchItemBuilder item = ImageBatchItem.builder()
+                .index(result.index())
+                .originalFilename(result.originalFilename())
+                .error(result.error());
+        if (result.file() != null) {
+            item.filename(result.file().getName())
+                    .downloadUrl(DOWNLOAD_PATH + result.file().getName())
+                    .fileSize(result.file().length());
+        }
+        return item.build();
+    }
+
+    private ProcessingResponse toResponse(File result, String message) {
+        return ProcessingResponse.builder()
+                .filename(result.getName())
+                .downloadUrl(DOWNLOAD_PATH + result.getName())
+                .fileSize(result.length())
+                .message(message)
+                .build();
     }
 }
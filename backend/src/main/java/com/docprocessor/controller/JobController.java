@@ -0,0 +1,71 @@
+package com.docprocessor.controller;
+
+import com.docprocessor.dto.JobResponse;
+import com.docprocessor.job.Job;
+import com.docprocessor.job.JobService;
+import com.docprocessor.job.JobStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+@RestController
+@RequestMapping("/api/jobs")
+public class JobController {
+
+    @Autowired
+    private JobService jobService;
+
+    @Value("${jobs.events.timeout}")
+    private long eventsTimeout;
+
+    @GetMapping("/{id}")
+    public ResponseEntity<JobResponse> getJob(@PathVariable String id, Authentication authentication) {
+        Job job = jobService.getJob(id, authentication.getName());
+        return ResponseEntity.ok(JobResponse.from(job));
+    }
+
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<JobResponse> cancelJob(@PathVariable String id, Authentication authentication) {
+        Job job = jobService.cancel(id, authentication.getName());
+        return ResponseEntity.ok(JobResponse.from(job));
+    }
+
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamJob(@PathVariable String id, Authentication authentication) {
+        Job job = jobService.getJob(id, authentication.getName());
+        SseEmitter emitter = new SseEmitter(eventsTimeout);
+        AtomicReference<JobStatus> lastStatus = new AtomicReference<>();
+
+        Consumer<Job> listener = current -> {
+            try {
+                // Same status as last time means only the progress changed
+                JobStatus status = current.getStatus();
+                String event = status == lastStatus.getAndSet(status) ? "progress" : "status";
+                emitter.send(SseEmitter.event()
+                        .name(event)
+                        .data(JobResponse.from(current), MediaType.APPLICATION_JSON));
+                if (current.getStatus().isTerminal()) {
+                    emitter.complete();
+                }
+            } catch (Exception e) {
+                emitter.completeWithError(e);
+            }
+        };
+
+        job.addListener(listener);
+        emitter.onCompletion(() -> job.removeListener(listener));
+        emitter.onTimeout(() -> job.removeListener(listener));
+        emitter.onError(e -> job.removeListener(listener));
+
+        // Send the current state right away so late subscribers see finished jobs too
+        listener.accept(job);
+        return emitter;
+    }
+}
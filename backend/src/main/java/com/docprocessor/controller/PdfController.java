@@ -1,226 +1,362 @@
 package com.docprocessor.controller;
 
-import com.docprocessor.config.RateLimitConfig;
+import com.docprocessor.dto.CompressionResponse;
+import com.docprocessor.dto.JobResponse;
 import com.docprocessor.dto.ProcessingResponse;
-import com.docprocessor.exception.RateLimitExceededException;
+import com.docprocessor.job.Job;
+import com.docprocessor.job.JobService;
+import com.docprocessor.job.JobTask;
+import com.docprocessor.job.WorkloadType;
+import com.docprocessor.ratelimit.RateLimited;
+import com.docprocessor.service.pdf.PdfCompressionPreset;
 import com.docprocessor.service.pdf.PdfService;
-import io.github.bucket4j.Bucket;
+import com.docprocessor.service.pdf.RenderOptions;
+import com.docprocessor.service.pdf.SplitOptions;
+import com.docprocessor.service.pdf.StampOptions;
+import com.docprocessor.storage.DownloadService;
+import com.docprocessor.upload.FileType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.File;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/pdf")
 public class PdfController {
 
+    private static final String DOWNLOAD_PATH = "/api/pdf/download/";
+
+    private static final Set<FileType> PDF = EnumSet.of(FileType.PDF);
+
     @Autowired
     private PdfService pdfService;
 
     @Autowired
-    private RateLimitConfig rateLimitConfig;
+    private JobService jobService;
 
     @Autowired
-    private Map<String, Bucket> rateLimitBuckets;
+    private DownloadService downloadService;
 
-    private void checkRateLimit(String username) {
-        Bucket bucket = rateLimitBuckets.computeIfAbsent(username, k -> rateLimitConfig.createNewBucket());
-        if (!bucket.tryConsume(1)) {
-            throw new RateLimitExceededException("Rate limit exceeded. Please try again later.");
-        }
-    }
+    @Value("${pdf.render.max.dpi}")
+    private float maxDpi;
 
     @PostMapping("/merge")
-    public ResponseEntity<ProcessingResponse> mergePdfs(
+    @RateLimited
+    public CompletableFuture<ResponseEntity<?>> mergePdfs(
             @RequestParam("files") List<MultipartFile> files,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
             Authentication authentication) {
 
-        checkRateLimit(authentication.getName());
-
-        File result = pdfService.mergePdfs(files);
-        ProcessingResponse response = ProcessingResponse.builder()
-                .filename(result.getName())
-                .downloadUrl("/api/pdf/download/" + result.getName())
-                .fileSize(result.length())
-                .message("PDFs merged successfully")
-                .build();
-
-        return ResponseEntity.ok(response);
+        Job job = submit("merge", PDF, files, authentication,
+                inputs -> List.of(pdfService.mergePdfs(inputs)));
+        return respond(job, async, results -> toResponse(results.get(0), "PDFs merged successfully"));
     }
 
     @PostMapping("/split")
-    public ResponseEntity<List<ProcessingResponse>> splitPdf(
+    @RateLimited
+    public CompletableFuture<ResponseEntity<?>> splitPdf(
             @RequestParam("file") MultipartFile file,
-            @RequestParam("pageCount") int pageCount,
+            @RequestParam(value = "pageCount", required = false) Integer pageCount,
+            @RequestParam(value = "ranges", required = false) String ranges,
+            @RequestParam(value = "outline", defaultValue = "false") boolean outline,
+            @RequestParam(value = "maxPartSize", required = false) Long maxPartSize,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
             Authentication authentication) {
 
-        checkRateLimit(authentication.getName());
-
-        List<File> results = pdfService.splitPdf(file, pageCount);
-        List<ProcessingResponse> responses = new ArrayList<>();
+        SplitOptions options = splitOptions(pageCount, ranges, outline, maxPartSize);
+        Job job = submit("split", PDF, List.of(file), authentication,
+                inputs -> pdfService.splitPdf(inputs.get(0), options));
+        return respond(job, async, this::toResponses);
+    }
 
-        for (File result : results) {
-            responses.add(ProcessingResponse.builder()
-                    .filename(result.getName())
-                    .downloadUrl("/api/pdf/download/" + result.getName())
-                    .fileSize(result.length())
-                    .build());
-        }
+    @PostMapping(value = "/split", params = "zip=true")
+    @RateLimited
+    public ResponseEntity<StreamingResponseBody> splitPdfZip(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "pageCount", required = false) Integer pageCount,
+            @RequestParam(value = "ranges", required = false) String ranges,
+            @RequestParam(value = "outline", defaultValue = "false") boolean outline,
+            @RequestParam(value = "maxPartSize", required = false) Long maxPartSize,
+            Authentication authentication) {
 
-        return ResponseEntity.ok(responses);
+        SplitOptions options = splitOptions(pageCount, ranges, outline, maxPartSize);
+        // Reject bad options and files with a 400 before the streamed 200 is committed
+        options.validate();
+        FileType.require(file, PDF);
+        return zipResponse("parts_", outputStream -> pdfService.splitPdfZip(file, options, outputStream));
     }
 
     @PostMapping("/compress")
-    public ResponseEntity<ProcessingResponse> compressPdf(
+    @RateLimited(cost = 2)
+    public CompletableFuture<ResponseEntity<?>> compressPdf(
             @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "preset", defaultValue = "ebook") String preset,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
             Authentication authentication) {
 
-        checkRateLimit(authentication.getName());
-
-        File result = pdfService.compressPdf(file);
-        ProcessingResponse response = ProcessingResponse.builder()
-                .filename(result.getName())
-                .downloadUrl("/api/pdf/download/" + result.getName())
-                .fileSize(result.length())
-                .message("PDF compressed successfully")
-                .build();
-
-        return ResponseEntity.ok(response);
+        PdfCompressionPreset compressionPreset = PdfCompressionPreset.from(preset);
+        long originalSize = file.getSize();
+        Job job = submit("compress", PDF, List.of(file), authentication,
+                inputs -> List.of(pdfService.compressPdf(inputs.get(0), compressionPreset)));
+        return respond(job, async, results -> {
+            File result = results.get(0);
+            return CompressionResponse.builder()
+                    .filename(result.getName())
+                    .downloadUrl(DOWNLOAD_PATH + result.getName())
+                    .fileSize(result.length())
+                    .originalSize(originalSize)
+                    .bytesSaved(Math.max(0, originalSize - result.length()))
+                    .preset(compressionPreset.name().toLowerCase())
+                    .message("PDF compressed successfully")
+                    .build();
+        });
     }
 
     @PostMapping("/protect")
-    public ResponseEntity<ProcessingResponse> protectPdf(
+    @RateLimited
+    public CompletableFuture<ResponseEntity<?>> protectPdf(
             @RequestParam("file") MultipartFile file,
             @RequestParam("password") String password,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
             Authentication authentication) {
 
-        checkRateLimit(authentication.getName());
-
-        File result = pdfService.protectPdf(file, password);
-        ProcessingResponse response = ProcessingResponse.builder()
-                .filename(result.getName())
-                .downloadUrl("/api/pdf/download/" + result.getName())
-                .fileSize(result.length())
-                .message("PDF password protected successfully")
-                .build();
-
-        return ResponseEntity.ok(response);
+        Job job = submit("protect", PDF, List.of(file), authentication,
+                inputs -> List.of(pdfService.protectPdf(inputs.get(0), password)));
+        return respond(job, async, results -> toResponse(results.get(0), "PDF password protected successfully"));
     }
 
     @PostMapping("/add-page-numbers")
-    public ResponseEntity<ProcessingResponse> addPageNumbers(
+    @RateLimited
+    public CompletableFuture<ResponseEntity<?>> addPageNumbers(
             @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "incremental", defaultValue = "false") boolean incremental,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
             Authentication authentication) {
 
-        checkRateLimit(authentication.getName());
+        Job job = submit("add-page-numbers", PDF, List.of(file), authentication,
+                inputs -> List.of(pdfService.addPageNumbers(inputs.get(0), incremental)));
+        return respond(job, async, results -> toResponse(results.get(0), "Page numbers added successfully"));
+    }
 
-        File result = pdfService.addPageNumbers(file);
-        ProcessingResponse response = ProcessingResponse.builder()
-                .filename(result.getName())
-                .downloadUrl("/api/pdf/download/" + result.getName())
-                .fileSize(result.length())
-                .message("Page numbers added successfully")
-                .build();
+    @PostMapping("/stamp")
+    @RateLimited
+    public CompletableFuture<ResponseEntity<?>> stampPdf(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "pageNumbers", defaultValue = "false") boolean pageNumbers,
+            @RequestParam(value = "pageNumberFormat", defaultValue = "{page}") String pageNumberFormat,
+            @RequestParam(value = "header", required = false) String header,
+            @RequestParam(value = "footer", required = false) String footer,
+            @RequestParam(value = "watermark", required = false) String watermark,
+            @RequestParam(value = "watermarkOpacity", defaultValue = "0.2") float watermarkOpacity,
+            @RequestParam(value = "fontSize", defaultValue = "12") float fontSize,
+            @RequestParam(value = "incremental", defaultValue = "false") boolean incremental,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            Authentication authentication) {
 
-        return ResponseEntity.ok(response);
+        StampOptions options = StampOptions.builder()
+                .pageNumbers(pageNumbers)
+                .pageNumberFormat(pageNumberFormat)
+                .header(header)
+                .footer(footer)
+                .watermark(watermark)
+                .watermarkOpacity(watermarkOpacity)
+                .fontSize(fontSize)
+                .incremental(incremental)
+                .build();
+        Job job = submit("stamp", PDF, List.of(file), authentication,
+                inputs -> List.of(pdfService.stampPdf(inputs.get(0), options)));
+        return respond(job, async, results -> toResponse(results.get(0), "PDF stamped successfully"));
     }
 
     @PostMapping("/to-jpg")
-    public ResponseEntity<List<ProcessingResponse>> pdfToJpg(
+    @RateLimited(cost = 2, rendering = true)
+    public CompletableFuture<ResponseEntity<?>> pdfToJpg(
             @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "dpi", defaultValue = "300") float dpi,
+            @RequestParam(value = "firstPage", required = false) Integer firstPage,
+            @RequestParam(value = "lastPage", required = false) Integer lastPage,
+            @RequestParam(value = "parallelism", required = false) Integer parallelism,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
             Authentication authentication) {
 
-        checkRateLimit(authentication.getName());
-
-        List<File> results = pdfService.pdfToJpg(file);
-        List<ProcessingResponse> responses = new ArrayList<>();
-
-        for (File result : results) {
-            responses.add(ProcessingResponse.builder()
-                    .filename(result.getName())
-                    .downloadUrl("/api/pdf/download/" + result.getName())
-                    .fileSize(result.length())
-                    .build());
-        }
-
-        return ResponseEntity.ok(responses);
+        RenderOptions options = RenderOptions.builder()
+                .dpi(dpi)
+                .firstPage(firstPage)
+                .lastPage(lastPage)
+                .parallelism(parallelism)
+                .build();
+        Job job = submit("to-jpg", PDF, List.of(file), authentication,
+                inputs -> pdfService.pdfToJpg(inputs.get(0), options));
+        return respond(job, async, this::toResponses);
     }
 
     @PostMapping("/to-png")
-    public ResponseEntity<List<ProcessingResponse>> pdfToPng(
+    @RateLimited(cost = 2, rendering = true)
+    public CompletableFuture<ResponseEntity<?>> pdfToPng(
             @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "dpi", defaultValue = "300") float dpi,
+            @RequestParam(value = "firstPage", required = false) Integer firstPage,
+            @RequestParam(value = "lastPage", required = false) Integer lastPage,
+            @RequestParam(value = "parallelism", required = false) Integer parallelism,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
             Authentication authentication) {
 
-        checkRateLimit(authentication.getName());
+        RenderOptions options = RenderOptions.builder()
+                .dpi(dpi)
+                .firstPage(firstPage)
+                .lastPage(lastPage)
+                .parallelism(parallelism)
+                .build();
+        Job job = submit("to-png", PDF, List.of(file), authentication,
+                inputs -> pdfService.pdfToPng(inputs.get(0), options));
+        return respond(job, async, this::toResponses);
+    }
 
-        List<File> results = pdfService.pdfToPng(file);
-        List<ProcessingResponse> responses = new ArrayList<>();
+    @PostMapping(value = "/to-jpg", params = "zip=true")
+    @RateLimited(cost = 2, rendering = true)
+    public ResponseEntity<StreamingResponseBody> pdfToJpgZip(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "dpi", defaultValue = "300") float dpi,
+            @RequestParam(value = "firstPage", required = false) Integer firstPage,
+            @RequestParam(value = "lastPage", required = false) Integer lastPage,
+            @RequestParam(value = "parallelism", required = false) Integer parallelism,
+            Authentication authentication) {
 
-        for (File result : results) {
-            responses.add(ProcessingResponse.builder()
-                    .filename(result.getName())
-                    .downloadUrl("/api/pdf/download/" + result.getName())
-                    .fileSize(result.length())
-                    .build());
-        }
+        RenderOptions options = RenderOptions.builder()
+                .dpi(dpi)
+                .firstPage(firstPage)
+                .lastPage(lastPage)
+                .parallelism(parallelism)
+                .build();
+        // Reject bad options and files with a 400 before the streamed 200 is committed
+        options.validate(maxDpi);
+        FileType.require(file, PDF);
+        return zipResponse("pages_", outputStream -> pdfService.pdfToImagesZip(file, "jpg", options, outputStream));
+    }
 
-        return ResponseEntity.ok(responses);
+    @PostMapping(value = "/to-png", params = "zip=true")
+    @RateLimited(cost = 2, rendering = true)
+    public ResponseEntity<StreamingResponseBody> pdfToPngZip(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "dpi", defaultValue = "300") float dpi,
+            @RequestParam(value = "firstPage", required = false) Integer firstPage,
+            @RequestParam(value = "lastPage", required = false) Integer lastPage,
+            @RequestParam(value = "parallelism", required = false) Integer parallelism,
+            Authentication authentication) {
+
+        RenderOptions options = RenderOptions.builder()
+                .dpi(dpi)
+                .firstPage(firstPage)
+                .lastPage(lastPage)
+                .parallelism(parallelism)
+                .build();
+        // Reject bad options and files with a 400 before the streamed 200 is committed
+        options.validate(maxDpi);
+        FileType.require(file, PDF);
+        return zipResponse("pages_", outputStream -> pdfService.pdfToImagesZip(file, "png", options, outputStream));
     }
 
     @PostMapping("/from-images")
-    public ResponseEntity<ProcessingResponse> imagesToPdf(
+    @RateLimited
+    public CompletableFuture<ResponseEntity<?>> imagesToPdf(
             @RequestParam("files") List<MultipartFile> files,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
             Authentication authentication) {
 
-        checkRateLimit(authentication.getName());
-
-        File result = pdfService.imageToPdf(files);
-        ProcessingResponse response = ProcessingResponse.builder()
-                .filename(result.getName())
-                .downloadUrl("/api/pdf/download/" + result.getName())
-                .fileSize(result.length())
-                .message("Images converted to PDF successfully")
-                .build();
-
-        return ResponseEntity.ok(response);
+        Job job = submit("from-images", FileType.IMAGES, files, authentication,
+                inputs -> List.of(pdfService.imageToPdf(inputs)));
+        return respond(job, async, results -> toResponse(results.get(0), "Images converted to PDF successfully"));
     }
 
     @PostMapping("/from-excel")
-    public ResponseEntity<ProcessingResponse> excelToPdf(
+    @RateLimited(cost = 2)
+    public CompletableFuture<ResponseEntity<?>> excelToPdf(
             @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
             Authentication authentication) {
 
-        checkRateLimit(authentication.getName());
+        Job job = submit("from-excel", FileType.SPREADSHEETS, List.of(file), authentication,
+                inputs -> List.of(pdfService.excelToPdf(inputs.get(0))));
+        return respond(job, async, results -> toResponse(results.get(0), "Excel converted to PDF successfully"));
+    }
 
-        File result = pdfService.excelToPdf(file);
-        ProcessingResponse response = ProcessingResponse.builder()
-                .filename(result.getName())
-                .downloadUrl("/api/pdf/download/" + result.getName())
-                .fileSize(result.length())
-                .message("Excel converted to PDF successfully")
-                .build();
+    @GetMapping("/download/{filename}")
+    public void downloadFile(@PathVariable String filename, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        downloadService.serve(filename, request, response);
+    }
 
-        return ResponseEntity.ok(response);
+    private Job submit(String operation, Set<FileType> accepted, List<MultipartFile> files,
+                       Authentication authentication, JobTask task) {
+        files.forEach(file -> FileType.require(file, accepted));
+        return jobService.submit(authentication.getName(), "pdf." + operation, WorkloadType.DOCUMENT,
+                DOWNLOAD_PATH, files, task);
     }
 
-    @GetMapping("/download/{filename}")
-    public ResponseEntity<Resource> downloadFile(@PathVariable String filename) {
-        File file = new File("./temp/" + filename);
-        Resource resource = new FileSystemResource(file);
+    /**
+     * Async requests get 202 with the job id straight away; everything else waits for
+     * the job without holding a servlet thread and gets the usual response body.
+     */
+    private CompletableFuture<ResponseEntity<?>> respond(Job job, boolean async, Function<List<File>, ?> body) {
+        if (async) {
+            JobResponse response = JobResponse.from(job);
+            return CompletableFuture.completedFuture(ResponseEntity.accepted()
+                    .header(HttpHeaders.LOCATION, response.getStatusUrl())
+                    .body(response));
+        }
+        return job.getCompletion().thenApply(results -> ResponseEntity.ok(body.apply(results)));
+    }
+
+    /**
+     * Pages or parts are produced and zipped straight onto the response while the
+     * client downloads, instead of N temp files plus N download requests.
+     */
+    private ResponseEntity<StreamingResponseBody> zipResponse(String prefix, StreamingResponseBody body) {
+        String filename = prefix + UUID.randomUUID() + ".zip";
 
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                .contentType(MediaType.APPLICATION_PDF)
-                .body(resource);
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .body(body);
+    }
+
+    private static SplitOptions splitOptions(Integer pageCount, String ranges, boolean outline, Long maxPartSize) {
+        return SplitOptions.builder()
+                .pageCount(pageCount)
+                .ranges(ranges)
+                .byOutline(outline)
+                .maxPartBytes(maxPartSize)
+                .build();
+    }
+
+    private ProcessingResponse toResponse(File result, String message) {
+        return ProcessingResponse.builder()
+                .filename(result.getName())
+                .downloadUrl(DOWNLOAD_PATH + result.getName())
+                .fileSize(result.length())
+                .message(message)
+                .build();
+    }
+
+    private List<ProcessingResponse> toResponses(List<File> results) {
+        return results.stream()
+                .map(result -> toResponse(result, null))
+                .toList();
     }
 }
@@ -0,0 +1,105 @@
+package com.docprocessor.controller;
+
+import com.docprocessor.dto.UploadSessionRequest;
+import com.docprocessor.dto.UploadSessionResponse;
+import com.docprocessor.exception.InvalidFileException;
+import com.docprocessor.ratelimit.RateLimited;
+import com.docprocessor.upload.ChunkedUploadService;
+import com.docprocessor.upload.UploadSession;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resumable uploads: POST creates one, chunks are PUT with a Content-Range and
+ * their SHA-256 in X-Chunk-Sha256 (in parallel, in any order, retried as needed),
+ * GET reports which ranges have arrived, POST .../complete finishes it. The
+ * upload id can then be passed to the video endpoints as videoUpload.
+ */
+@RestController
+@RequestMapping("/api/uploads")
+public class UploadController {
+
+    private static final String CHECKSUM_HEADER = "X-Chunk-Sha256";
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+
+    private final ChunkedUploadService uploadService;
+
+    public UploadController(ChunkedUploadService uploadService) {
+        this.uploadService = uploadService;
+    }
+
+    @PostMapping
+    public ResponseEntity<UploadSessionResponse> createUpload(@Valid @RequestBody UploadSessionRequest request,
+                                                              Authentication authentication) {
+        UploadSession session = uploadService.create(authentication.getName(), request.getFilename(),
+                request.getContentType(), request.getSize());
+        UploadSessionResponse response = UploadSessionResponse.from(session);
+        return ResponseEntity.created(URI.create(response.getUploadUrl())).body(response);
+    }
+
+    // Plain byte transfer: the video weight is charged by the operation that uses the upload
+    @PutMapping("/{id}")
+    @RateLimited
+    public ResponseEntity<UploadSessionResponse> uploadChunk(
+            @PathVariable String id,
+            @RequestHeader(HttpHeaders.CONTENT_RANGE) String contentRange,
+            @RequestHeader(CHECKSUM_HEADER) String checksum,
+            HttpServletRequest request,
+            Authentication authentication) throws IOException {
+
+        Matcher range = CONTENT_RANGE.matcher(contentRange.strip());
+        if (!range.matches()) {
+            throw new InvalidFileException("Content-Range must look like 'bytes start-end/size'");
+        }
+        long start;
+        long end;
+        Long total;
+        try {
+            start = Long.parseLong(range.group(1));
+            end = Math.addExact(Long.parseLong(range.group(2)), 1);
+            total = range.group(3).equals("*") ? null : Long.valueOf(range.group(3));
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new InvalidFileException("Content-Range is out of range: " + contentRange);
+        }
+        UploadSession session = uploadService.get(id, authentication.getName());
+        if (total != null && total != session.getSize()) {
+            throw new InvalidFileException("Content-Range size does not match the upload size of "
+                    + session.getSize());
+        }
+        long length = request.getContentLengthLong();
+        if (length != -1 && length != end - start) {
+            throw new InvalidFileException("Content-Length does not match Content-Range");
+        }
+
+        session = uploadService.writeChunk(id, authentication.getName(), start, end, checksum,
+                request.getInputStream());
+        return ResponseEntity.ok(UploadSessionResponse.from(session));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<UploadSessionResponse> getUpload(@PathVariable String id, Authentication authentication) {
+        return ResponseEntity.ok(UploadSessionResponse.from(uploadService.get(id, authentication.getName())));
+    }
+
+    @PostMapping("/{id}/complete")
+    public ResponseEntity<UploadSessionResponse> completeUpload(@PathVariable String id,
+                                                                Authentication authentication) {
+        return ResponseEntity.ok(UploadSessionResponse.from(uploadService.complete(id, authentication.getName())));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteUpload(@PathVariable String id, Authentication authentication) {
+        uploadService.abort(id, authentication.getName());
+        return ResponseEntity.noContent().build();
+    }
+}
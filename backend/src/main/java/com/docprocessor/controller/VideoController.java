@@ -1,86 +1,188 @@
 package com.docprocessor.controller;
 
+import com.docprocessor.dto.JobResponse;
+import com.docprocessor.exception.InvalidFileException;
+import com.docprocessor.job.Job;
+import com.docprocessor.job.JobService;
+import com.docprocessor.job.JobTask;
+import com.docprocessor.job.SpooledMultipartFile;
+import com.docprocessor.job.WorkloadType;
+import com.docprocessor.ratelimit.RateLimited;
 import com.docprocessor.service.video.VideoService;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
+import com.docprocessor.storage.DownloadService;
+import com.docprocessor.upload.ChunkedUploadService;
+import com.docprocessor.upload.FileType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/video")
 public class VideoController {
 
+    private static final String DOWNLOAD_PATH = "/api/video/download/";
+
     private final VideoService videoService;
+    private final JobService jobService;
+    private final DownloadService downloadService;
+    private final ChunkedUploadService uploadService;
 
-    public VideoController(VideoService videoService) {
+    public VideoController(VideoService videoService, JobService jobService, DownloadService downloadService,
+                           ChunkedUploadService uploadService) {
         this.videoService = videoService;
+        this.jobService = jobService;
+        this.downloadService = downloadService;
+        this.uploadService = uploadService;
     }
 
     @PostMapping("/add-text")
-    public ResponseEntity<Map<String, Object>> addTextToVideo(
-            @RequestParam("video") MultipartFile video,
+    @RateLimited(cost = 5, uploads = "videoUpload")
+    public CompletableFuture<ResponseEntity<?>> addTextToVideo(
+            @RequestParam(value = "video", required = false) MultipartFile video,
+            @RequestParam(value = "videoUpload", required = false) String videoUpload,
             @RequestParam("text") String text,
             @RequestParam(value = "position", defaultValue = "bottom-left") String position,
             @RequestParam(value = "fontSize", defaultValue = "24") int fontSize,
-            @RequestParam(value = "color", defaultValue = "white") String color) {
+            @RequestParam(value = "color", defaultValue = "white") String color,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            Authentication authentication) {
 
-        File result = videoService.addTextToVideo(video, text, position, fontSize, color);
-        return buildResponse(result, "Text added to video successfully");
+        Job job = submit("add-text", List.of(video(video, videoUpload, authentication)), authentication,
+                inputs -> List.of(videoService.addTextToVideo(inputs.get(0), text, position, fontSize, color)));
+        return respond(job, async, "Text added to video successfully");
     }
 
     @PostMapping("/add-image")
-    public ResponseEntity<Map<String, Object>> addImageToVideo(
-            @RequestParam("video") MultipartFile video,
+    @RateLimited(cost = 5, uploads = "videoUpload")
+    public CompletableFuture<ResponseEntity<?>> addImageToVideo(
+            @RequestParam(value = "video", required = false) MultipartFile video,
+            @RequestParam(value = "videoUpload", required = false) String videoUpload,
             @RequestParam("image") MultipartFile image,
-            @RequestParam(value = "position", defaultValue = "top-left") String position) {
-
-        File result = videoService.addImageToVideo(video, image, position);
-        return buildResponse(result, "Image added to video successfully");
+            @RequestParam(value = "position", defaultValue = "top-left") String position,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            Authentication authentication) {
+
+        FileType.require(image, FileType.IMAGES);
+        Job job = submit("add-image", List.of(video(video, videoUpload, authentication), image), authentication,
+                inputs -> List.of(videoService.addImageToVideo(inputs.get(0), inputs.get(1), position)));
+        return respond(job, async, "Image added to video successfully");
     }
 
     @PostMapping("/change-speed")
-    public ResponseEntity<Map<String, Object>> changeVideoSpeed(
-            @RequestParam("video") MultipartFile video,
-            @RequestParam("speed") double speed) {
-
-        File result = videoService.changeVideoSpeed(video, speed);
-        return buildResponse(result, "Video speed changed successfully");
+    @RateLimited(cost = 5, uploads = "videoUpload")
+    public CompletableFuture<ResponseEntity<?>> changeVideoSpeed(
+            @RequestParam(value = "video", required = false) MultipartFile video,
+            @RequestParam(value = "videoUpload", required = false) String videoUpload,
+            @RequestParam("speed") double speed,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            Authentication authentication) {
+
+        Job job = submit("change-speed", List.of(video(video, videoUpload, authentication)), authentication,
+                inputs -> List.of(videoService.changeVideoSpeed(inputs.get(0), speed)));
+        return respond(job, async, "Video speed changed successfully");
     }
 
     @PostMapping("/merge")
-    public ResponseEntity<Map<String, Object>> mergeVideos(
-            @RequestParam("videos") List<MultipartFile> videos) {
-
-        File result = videoService.mergeVideos(videos);
-        return buildResponse(result, "Videos merged successfully");
+    @RateLimited(cost = 5, uploads = "videoUploads")
+    public CompletableFuture<ResponseEntity<?>> mergeVideos(
+            @RequestParam(value = "videos", required = false) List<MultipartFile> videos,
+            @RequestParam(value = "videoUploads", required = false) List<String> videoUploads,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            Authentication authentication) {
+
+        if (videoUploads != null && !videoUploads.isEmpty()) {
+            if (videos != null && !videos.isEmpty()) {
+                throw new InvalidFileException("Send either videos or videoUploads, not both");
+            }
+            List<MultipartFile> opened = new ArrayList<>(videoUploads.size());
+            try {
+                for (String id : videoUploads) {
+                    opened.add(uploadService.open(id, authentication.getName(), "videos"));
+                }
+            } catch (RuntimeException e) {
+                discardUnclaimed(opened);
+                throw e;
+            }
+            videos = opened;
+        } else if (videos == null || videos.isEmpty()) {
+            throw new InvalidFileException("No videos provided");
+        } else {
+            videos.forEach(video -> FileType.require(video, FileType.VIDEOS));
+        }
+        Job job = submit("merge", videos, authentication,
+                inputs -> List.of(videoService.mergeVideos(inputs)));
+        return respond(job, async, "Videos merged successfully");
     }
 
     @GetMapping("/download/{filename}")
-    public ResponseEntity<Resource> downloadVideo(@PathVariable String filename) {
-        File file = new File("./temp/" + filename);
-        if (!file.exists()) {
-            return ResponseEntity.notFound().build();
+    public void downloadVideo(@PathVariable String filename, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        downloadService.serve(filename, request, response);
+    }
+
+    /**
+     * The uploaded video, or a completed chunked upload when its id is given instead.
+     */
+    private MultipartFile video(MultipartFile video, String videoUpload, Authentication authentication) {
+        if (videoUpload != null) {
+            return uploadService.open(videoUpload, authentication.getName(), "video");
+        }
+        if (video == null) {
+            throw new InvalidFileException("Either video or videoUpload is required");
         }
+        FileType.require(video, FileType.VIDEOS);
+        return video;
+    }
+
+    private Job submit(String operation, List<MultipartFile> files, Authentication authentication, JobTask task) {
+        try {
+            return jobService.submit(authentication.getName(), "video." + operation, WorkloadType.VIDEO,
+                    DOWNLOAD_PATH, files, task);
+        } catch (RuntimeException e) {
+            // A rejected job never takes over the handles opened on chunked uploads
+            discardUnclaimed(files);
+            throw e;
+        }
+    }
 
-        Resource resource = new FileSystemResource(file);
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType("video/mp4"))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                .body(resource);
+    /**
+     * Delete the spooled files nobody has taken over: handles on chunked
+     * uploads have no other owner (the uploads themselves stay).
+     */
+    private static void discardUnclaimed(List<MultipartFile> files) {
+        for (MultipartFile file : files) {
+            if (file instanceof SpooledMultipartFile spooled && spooled.claim()) {
+                spooled.delete();
+            }
+        }
+    }
+
+    private CompletableFuture<ResponseEntity<?>> respond(Job job, boolean async, String message) {
+        if (async) {
+            JobResponse response = JobResponse.from(job);
+            return CompletableFuture.completedFuture(ResponseEntity.accepted()
+                    .header(HttpHeaders.LOCATION, response.getStatusUrl())
+                    .body(response));
+        }
+        return job.getCompletion().thenApply(results -> buildResponse(results.get(0), message));
     }
 
     private ResponseEntity<Map<String, Object>> buildResponse(File file, String message) {
         Map<String, Object> response = new HashMap<>();
         response.put("filename", file.getName());
-        response.put("downloadUrl", "/api/video/download/" + file.getName());
+        response.put("downloadUrl", DOWNLOAD_PATH + file.getName());
         response.put("fileSize", file.length());
         response.put("message", message);
         return ResponseEntity.ok(response);
@@ -0,0 +1,20 @@
+package com.docprocessor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStatsResponse {
+    private boolean enabled;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private int entries;
+    private long sizeBytes;
+    private long maxSizeBytes;
+}
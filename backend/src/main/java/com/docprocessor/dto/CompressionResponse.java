@@ -0,0 +1,20 @@
+package com.docprocessor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CompressionResponse {
+    private String filename;
+    private String downloadUrl;
+    private long fileSize;
+    private long originalSize;
+    private long bytesSaved;
+    private String preset;
+    private String message;
+}
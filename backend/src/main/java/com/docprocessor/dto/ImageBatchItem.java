@@ -0,0 +1,19 @@
+package com.docprocessor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageBatchItem {
+    private int index;
+    private String originalFilename;
+    private String filename;
+    private String downloadUrl;
+    private Long fileSize;
+    private String error;
+}
@@ -0,0 +1,26 @@
+package com.docprocessor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One step of a batch operation chain. Only the fields of the given type are
+ * used: resize (width, height), crop (x, y, width, height), rotate (angle),
+ * compress (quality) and convert (format).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageOperation {
+    private String type;
+    private Integer width;
+    private Integer height;
+    private Integer x;
+    private Integer y;
+    private Double angle;
+    private Float quality;
+    private String format;
+}
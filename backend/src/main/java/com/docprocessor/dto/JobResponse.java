@@ -0,0 +1,52 @@
+package com.docprocessor.dto;
+
+import com.docprocessor.job.Job;
+import com.docprocessor.job.JobProgress;
+import com.docprocessor.job.JobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobResponse {
+    private String jobId;
+    private String operation;
+    private JobStatus status;
+    private String statusUrl;
+    private Instant createdAt;
+    private Instant startedAt;
+    private Instant completedAt;
+    private List<ProcessingResponse> results;
+    private String error;
+    private JobProgress progress;
+
+    public static JobResponse from(Job job) {
+        List<ProcessingResponse> results = job.getResults().stream()
+                .map(file -> ProcessingResponse.builder()
+                        .filename(file.getName())
+                        .downloadUrl(job.getDownloadPath() + file.getName())
+                        .fileSize(file.length())
+                        .build())
+                .toList();
+
+        return JobResponse.builder()
+                .jobId(job.getId())
+                .operation(job.getOperation())
+                .status(job.getStatus())
+                .statusUrl("/api/jobs/" + job.getId())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .completedAt(job.getCompletedAt())
+                .results(results)
+                .error(job.getError())
+                .progress(job.getProgress())
+                .build();
+    }
+}
@@ -0,0 +1,21 @@
+package com.docprocessor.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionRequest {
+
+    @NotBlank(message = "Filename is required")
+    private String filename;
+
+    private String contentType;
+
+    @Positive(message = "Size must be positive")
+    private long size;
+}
@@ -0,0 +1,43 @@
+package com.docprocessor.dto;
+
+import com.docprocessor.upload.FileType;
+import com.docprocessor.upload.UploadSession;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionResponse {
+    private String uploadId;
+    private String uploadUrl;
+    private String filename;
+    private long size;
+    private long receivedBytes;
+    /** Received byte ranges, [start, end) */
+    private List<UploadSession.ByteRange> received;
+    private boolean complete;
+    /** Detected from the content once the upload is complete */
+    private FileType fileType;
+    private Instant createdAt;
+
+    public static UploadSessionResponse from(UploadSession session) {
+        return UploadSessionResponse.builder()
+                .uploadId(session.getId())
+                .uploadUrl("/api/uploads/" + session.getId())
+                .filename(session.getFilename())
+                .size(session.getSize())
+                .receivedBytes(session.getReceivedBytes())
+                .received(session.getReceived())
+                .complete(session.isComplete())
+                .fileType(session.getFileType())
+                .createdAt(session.getCreatedAt())
+                .build();
+    }
+}
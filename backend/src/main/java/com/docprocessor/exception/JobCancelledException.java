@@ -0,0 +1,7 @@
+package com.docprocessor.exception;
+
+public class JobCancelledException extends RuntimeException {
+    public JobCancelledException(String message) {
+        super(message);
+    }
+}
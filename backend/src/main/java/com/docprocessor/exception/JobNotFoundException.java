@@ -0,0 +1,7 @@
+package com.docprocessor.exception;
+
+public class JobNotFoundException extends RuntimeException {
+    public JobNotFoundException(String message) {
+        super(message);
+    }
+}
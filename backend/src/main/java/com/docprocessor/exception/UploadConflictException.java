@@ -0,0 +1,7 @@
+package com.docprocessor.exception;
+
+public class UploadConflictException extends RuntimeException {
+    public UploadConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,215 @@
+package com.docprocessor.job;
+
+import com.docprocessor.exception.JobCancelledException;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * A processing job tracked by the {@link JobService}.
+ *
+ * State transitions are QUEUED -> RUNNING -> COMPLETED | FAILED, and
+ * QUEUED | RUNNING -> CANCELLED. Listeners are notified on every transition
+ * and progress update; the completion future lets synchronous callers wait
+ * for the result without polling.
+ *
+ * Work that can be stopped (an FFmpeg process, a queued slot) registers a
+ * cancel hook, which runs when the job is cancelled.
+ */
+public class Job {
+
+    private final String id;
+    private final String owner;
+    private final String operation;
+    private final WorkloadType workload;
+    private final String downloadPath;
+    private final Instant createdAt = Instant.now();
+    private final CompletableFuture<List<File>> completion = new CompletableFuture<>();
+    private final List<Consumer<Job>> listeners = new CopyOnWriteArrayList<>();
+    private final Set<Runnable> cancelHooks = ConcurrentHashMap.newKeySet();
+
+    private volatile JobStatus status = JobStatus.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant completedAt;
+    private volatile List<File> results = Collections.emptyList();
+    private volatile String error;
+    private volatile JobProgress progress;
+
+    public Job(String id, String owner, String operation, WorkloadType workload, String downloadPath) {
+        this.id = id;
+        this.owner = owner;
+        this.operation = operation;
+        this.workload = workload;
+        this.downloadPath = downloadPath;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public WorkloadType getWorkload() {
+        return workload;
+    }
+
+    public String getDownloadPath() {
+        return downloadPath;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    public List<File> getResults() {
+        return results;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public JobProgress getProgress() {
+        return progress;
+    }
+
+    public boolean isCancelled() {
+        return status == JobStatus.CANCELLED;
+    }
+
+    public CompletableFuture<List<File>> getCompletion() {
+        return completion;
+    }
+
+    public void addListener(Consumer<Job> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Job> listener) {
+        listeners.remove(listener);
+    }
+
+    synchronized boolean markRunning() {
+        if (status != JobStatus.QUEUED) {
+            return false;
+        }
+        startedAt = Instant.now();
+        status = JobStatus.RUNNING;
+        notifyListeners();
+        return true;
+    }
+
+    /**
+     * Returns false if the job already ended (e.g. was cancelled), in which
+     * case the caller still owns the files.
+     */
+    synchronized boolean markCompleted(List<File> files) {
+        if (status.isTerminal()) {
+            return false;
+        }
+        results = List.copyOf(files);
+        completedAt = Instant.now();
+        status = JobStatus.COMPLETED;
+        notifyListeners();
+        completion.complete(results);
+        return true;
+    }
+
+    synchronized void markFailed(String message, Throwable cause) {
+        if (status.isTerminal()) {
+            return;
+        }
+        error = message;
+        completedAt = Instant.now();
+        status = JobStatus.FAILED;
+        notifyListeners();
+        completion.completeExceptionally(cause);
+    }
+
+    public synchronized void updateProgress(JobProgress progress) {
+        if (status != JobStatus.RUNNING) {
+            return;
+        }
+        this.progress = progress;
+        notifyListeners();
+    }
+
+    /**
+     * Register work to stop when the job is cancelled. Returns false, without
+     * registering, if the job has already been cancelled.
+     */
+    public boolean addCancelHook(Runnable hook) {
+        cancelHooks.add(hook);
+        if (isCancelled()) {
+            // cancel() may have run before the add; the hook must not be left behind
+            cancelHooks.remove(hook);
+            return false;
+        }
+        return true;
+    }
+
+    public void removeCancelHook(Runnable hook) {
+        cancelHooks.remove(hook);
+    }
+
+    /**
+     * Cancel a queued or running job. Returns false if it had already ended.
+     */
+    boolean cancel() {
+        synchronized (this) {
+            if (status.isTerminal()) {
+                return false;
+            }
+            error = "Job was cancelled";
+            completedAt = Instant.now();
+            status = JobStatus.CANCELLED;
+            notifyListeners();
+            completion.completeExceptionally(new JobCancelledException(error));
+        }
+        // Outside the monitor: hooks take other locks (e.g. the FFmpeg governor's)
+        for (Runnable hook : cancelHooks) {
+            cancelHooks.remove(hook);
+            try {
+                hook.run();
+            } catch (RuntimeException ignored) {
+                // Keep stopping the remaining work
+            }
+        }
+        return true;
+    }
+
+    private void notifyListeners() {
+        for (Consumer<Job> listener : listeners) {
+            try {
+                listener.accept(this);
+            } catch (RuntimeException ignored) {
+                // A broken subscriber must never affect the job itself
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.docprocessor.job;
+
+/**
+ * Exposes the job running on the current worker thread to the services,
+ * which only see MultipartFiles and plain parameters.
+ */
+public final class JobContext {
+
+    private static final ThreadLocal<Job> CURRENT = new ThreadLocal<>();
+
+    private JobContext() {
+    }
+
+    static void set(Job job) {
+        CURRENT.set(job);
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * The current job, or null when called outside the job engine.
+     */
+    public static Job current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Carry the current job over to a helper thread, so work fanned out
+     * by a task is still attributed to its job.
+     */
+    public static Runnable wrap(Runnable task) {
+        Job job = CURRENT.get();
+        return () -> {
+            Job previous = CURRENT.get();
+            CURRENT.set(job);
+            try {
+                task.run();
+            } finally {
+                if (previous != null) {
+                    CURRENT.set(previous);
+                } else {
+                    CURRENT.remove();
+                }
+            }
+        };
+    }
+
+    public static String currentOwner() {
+        Job job = CURRENT.get();
+        return job != null ? job.getOwner() : "anonymous";
+    }
+}
@@ -0,0 +1,12 @@
+package com.docprocessor.job;
+
+/**
+ * Latest progress reported by a running job, as parsed from FFmpeg's
+ * -progress output. percent is null when the total duration is unknown.
+ */
+public record JobProgress(long frame,
+                          double outTimeSeconds,
+                          String speed,
+                          String bitrate,
+                          Double percent) {
+}
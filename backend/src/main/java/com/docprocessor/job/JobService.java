@@ -0,0 +1,28 @@
+package com.docprocessor.job;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+
+public interface JobService {
+
+    /**
+     * Spool the uploads and queue the task on the pool for its workload class.
+     * Returns immediately; throws ServiceBusyException when the queue is full.
+     */
+    Job submit(String owner, String operation, WorkloadType workload, String downloadPath,
+               List<MultipartFile> inputs, JobTask task);
+
+    /**
+     * Look up a job owned by the given user. Throws JobNotFoundException otherwise.
+     */
+    Job getJob(String id, String owner);
+
+    /**
+     * Cancel a queued or running job owned by the given user, stopping any
+     * FFmpeg process it started. Finished jobs are returned unchanged.
+     */
+    Job cancel(String id, String owner);
+
+    void evictExpiredJobs();
+}
@@ -0,0 +1,237 @@
+package com.docprocessor.job;
+
+import com.docprocessor.exception.InvalidFileException;
+import com.docprocessor.exception.JobCancelledException;
+import com.docprocessor.exception.JobNotFoundException;
+import com.docprocessor.exception.ProcessingException;
+import com.docprocessor.exception.ServiceBusyException;
+import com.docprocessor.exception.StorageException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Job Engine
+ *
+ * Purpose: Moves PDF, image and video processing off the Tomcat request threads
+ *
+ * How it works:
+ * - Each workload class has its own fixed-size pool with a bounded queue
+ * - Uploads are spooled to the temp directory so they survive the request;
+ *   streamed uploads already live there and are adopted without a copy
+ * - When a queue is full the submit is rejected (HTTP 503 + Retry-After)
+ *   instead of piling up work the server cannot finish
+ * - Finished jobs are kept for a retention period so clients can poll them
+ * - Cancelling a job runs its cancel hooks (killing FFmpeg processes); work
+ *   without hooks runs to the end and its results are discarded
+ * - Queue wait and execution time are timed per workload (jobs.queue.wait,
+ *   jobs.execution); running and queued jobs are exposed as gauges
+ */
+@Service
+public class JobServiceImpl implements JobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobServiceImpl.class);
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Map<WorkloadType, ThreadPoolExecutor> executors = new EnumMap<>(WorkloadType.class);
+    private final Path spoolLocation;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${jobs.retry.after}")
+    private long retryAfterSeconds;
+
+    @Value("${jobs.retention}")
+    private long retentionMillis;
+
+    public JobServiceImpl(@Value("${storage.temp.location}") String tempStorageLocation,
+                          @Value("${jobs.document.pool.size}") int documentPoolSize,
+                          @Value("${jobs.document.queue.capacity}") int documentQueueCapacity,
+                          @Value("${jobs.video.pool.size}") int videoPoolSize,
+                          @Value("${jobs.video.queue.capacity}") int videoQueueCapacity,
+                          MeterRegistry meterRegistry) {
+        this.spoolLocation = Paths.get(tempStorageLocation).toAbsolutePath();
+        this.meterRegistry = meterRegistry;
+        executors.put(WorkloadType.DOCUMENT,
+                createExecutor("job-document-", documentPoolSize, documentQueueCapacity));
+        executors.put(WorkloadType.VIDEO,
+                createExecutor("job-video-", videoPoolSize, videoQueueCapacity));
+        executors.forEach((workload, executor) -> {
+            Gauge.builder("jobs.running", executor, ThreadPoolExecutor::getActiveCount)
+                    .tag("workload", tag(workload))
+                    .register(meterRegistry);
+            Gauge.builder("jobs.queued", executor, pool -> pool.getQueue().size())
+                    .tag("workload", tag(workload))
+                    .register(meterRegistry);
+        });
+    }
+
+    private static String tag(WorkloadType workload) {
+        return workload.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static ThreadPoolExecutor createExecutor(String prefix, int poolSize, int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory(prefix),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Override
+    public Job submit(String owner, String operation, WorkloadType workload, String downloadPath,
+                      List<MultipartFile> inputs, JobTask task) {
+        ThreadPoolExecutor executor = executors.get(workload);
+        if (executor.getQueue().remainingCapacity() == 0) {
+            // Cheap early rejection so we don't spool uploads we'll throw away
+            throw busy(workload);
+        }
+
+        List<SpooledMultipartFile> spooled = spool(inputs);
+        Job job = new Job(UUID.randomUUID().toString(), owner, operation, workload, downloadPath);
+        jobs.put(job.getId(), job);
+
+        try {
+            executor.execute(() -> run(job, spooled, task));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            spooled.forEach(SpooledMultipartFile::delete);
+            throw busy(workload);
+        }
+
+        logger.info("Job {} ({}) queued for user {}", job.getId(), operation, owner);
+        return job;
+    }
+
+    private void run(Job job, List<SpooledMultipartFile> inputs, JobTask task) {
+        if (!job.markRunning()) {
+            inputs.forEach(SpooledMultipartFile::delete);
+            return;
+        }
+        String workload = tag(job.getWorkload());
+        Timer.builder("jobs.queue.wait")
+                .description("Time between submitting a job and a worker picking it up")
+                .tag("workload", workload)
+                .register(meterRegistry)
+                .record(Duration.between(job.getCreatedAt(), job.getStartedAt()));
+
+        long start = System.nanoTime();
+        String outcome = "failed";
+        JobContext.set(job);
+        try {
+            List<File> results = task.run(new ArrayList<>(inputs));
+            if (job.markCompleted(results)) {
+                outcome = "completed";
+                logger.info("Job {} ({}) completed", job.getId(), job.getOperation());
+            } else {
+                // Cancelled while finishing; nobody will download these
+                outcome = "cancelled";
+                results.forEach(File::delete);
+            }
+        } catch (JobCancelledException e) {
+            outcome = "cancelled";
+            logger.info("Job {} ({}) stopped after cancellation", job.getId(), job.getOperation());
+        } catch (InvalidFileException e) {
+            // The client's input, not a fault: keep the reason for async callers
+            logger.warn("Job {} ({}) rejected its input: {}", job.getId(), job.getOperation(), e.getMessage());
+            job.markFailed(e.getMessage(), e);
+        } catch (ProcessingException e) {
+            logger.error("Job {} ({}) failed: {}", job.getId(), job.getOperation(), e.getMessage());
+            job.markFailed(e.getMessage(), e);
+        } catch (Exception e) {
+            logger.error("Job {} ({}) failed", job.getId(), job.getOperation(), e);
+            job.markFailed("An unexpected error occurred", e);
+        } finally {
+            JobContext.clear();
+            inputs.forEach(SpooledMultipartFile::delete);
+            Timer.builder("jobs.execution")
+                    .description("Time a worker spends running a job")
+                    .tags("workload", workload, "outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private List<SpooledMultipartFile> spool(List<MultipartFile> inputs) {
+        List<SpooledMultipartFile> spooled = new ArrayList<>();
+        try {
+            Files.createDirectories(spoolLocation);
+            for (MultipartFile input : inputs) {
+                // Streamed uploads are already in the temp directory: adopt them instead of copying
+                if (input instanceof SpooledMultipartFile received && received.claim()) {
+                    spooled.add(received);
+                } else {
+                    spooled.add(SpooledMultipartFile.spool(input, spoolLocation));
+                }
+            }
+            return spooled;
+        } catch (IOException e) {
+            spooled.forEach(SpooledMultipartFile::delete);
+            throw new StorageException("Failed to spool uploaded files", e);
+        }
+    }
+
+    private ServiceBusyException busy(WorkloadType workload) {
+        logger.warn("Rejected {} job: queue is full", workload);
+        return new ServiceBusyException("Server is busy processing other requests. Please try again later.",
+                retryAfterSeconds);
+    }
+
+    @Override
+    public Job getJob(String id, String owner) {
+        Job job = jobs.get(id);
+        if (job == null || !job.getOwner().equals(owner)) {
+            throw new JobNotFoundException("Job not found: " + id);
+        }
+        return job;
+    }
+
+    @Override
+    public Job cancel(String id, String owner) {
+        Job job = getJob(id, owner);
+        if (job.cancel()) {
+            logger.info("Job {} ({}) cancelled by user {}", job.getId(), job.getOperation(), owner);
+        }
+        return job;
+    }
+
+    @Override
+    @Scheduled(fixedRate = 300000) // Run every 5 minutes
+    public void evictExpiredJobs() {
+        Instant cutoff = Instant.now().minusMillis(retentionMillis);
+        jobs.values().removeIf(job -> job.getStatus().isTerminal()
+                && job.getCompletedAt() != null
+                && job.getCompletedAt().isBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+    }
+}
@@ -0,0 +1,15 @@
+package com.docprocessor.job;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Unit of work executed by the job engine. Receives the spooled copies of the
+ * uploaded files, in the order they were submitted.
+ */
+@FunctionalInterface
+public interface JobTask {
+    List<File> run(List<MultipartFile> inputs) throws Exception;
+}
@@ -0,0 +1,148 @@
+package com.docprocessor.job;
+
+import com.docprocessor.upload.FileType;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Disk-backed copy of an upload that outlives the HTTP request.
+ *
+ * The servlet container deletes multipart parts once the request completes,
+ * but queued jobs may run long after that. Spooling uses {@link MultipartFile#transferTo}
+ * which Tomcat implements as a rename when the part is already on disk.
+ *
+ * Uploads parsed by the streaming multipart resolver already arrive in this form,
+ * written once to the temp directory with their SHA-256 and sniffed type known;
+ * whoever {@link #claim()}s such a file takes over deleting it from the resolver.
+ */
+public class SpooledMultipartFile implements MultipartFile {
+
+    private final String name;
+    private final String originalFilename;
+    private final String contentType;
+    private final Path path;
+    private final long size;
+    private final String contentHash;
+    private final FileType fileType;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+    private SpooledMultipartFile(String name, String originalFilename, String contentType, Path path, long size,
+                                 String contentHash, FileType fileType) {
+        this.name = name;
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.path = path;
+        this.size = size;
+        this.contentHash = contentHash;
+        this.fileType = fileType;
+    }
+
+    /**
+     * Wrap a file that was received straight into the temp directory.
+     *
+     * @param contentHash hex SHA-256 of the content
+     */
+    public static SpooledMultipartFile received(String name, String originalFilename, String contentType,
+                                                Path path, long size, String contentHash, FileType fileType) {
+        return new SpooledMultipartFile(name, originalFilename, contentType, path, size, contentHash, fileType);
+    }
+
+    public static SpooledMultipartFile spool(MultipartFile file, Path directory) throws IOException {
+        Path target = directory.resolve("spool_" + UUID.randomUUID()).toAbsolutePath();
+        file.transferTo(target.toFile());
+        return new SpooledMultipartFile(file.getName(), file.getOriginalFilename(),
+                file.getContentType(), target, Files.size(target), null, null);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Hex SHA-256 of the content, or null if it was not computed on the way in.
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Type detected from the first bytes, or null if it was not sniffed on the way in.
+     */
+    public FileType getFileType() {
+        return fileType;
+    }
+
+    /**
+     * Take ownership of the file: true for exactly one caller, which is then
+     * responsible for deleting it.
+     */
+    public boolean claim() {
+        return claimed.compareAndSet(false, true);
+    }
+
+    public boolean isClaimed() {
+        return claimed.get();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return Files.readAllBytes(path);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        transferTo(dest.toPath());
+    }
+
+    @Override
+    public void transferTo(Path dest) throws IOException {
+        // Like the container's own parts, a spooled file can be moved out exactly once
+        Files.move(path, dest, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public void delete() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Leftovers are removed by the scheduled temp cleanup
+        }
+    }
+}
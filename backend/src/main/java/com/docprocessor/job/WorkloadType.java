@@ -0,0 +1,12 @@
+package com.docprocessor.job;
+
+/**
+ * Workload classes that get their own bounded worker pool, so a burst of
+ * long FFmpeg jobs can never starve the cheap PDF and image operations.
+ */
+public enum WorkloadType {
+    /** CPU-bound PDFBox / Thumbnailator work */
+    DOCUMENT,
+    /** Process-bound FFmpeg work */
+    VIDEO
+}
@@ -0,0 +1,69 @@
+package com.docprocessor.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lets the services report work units (pages, frames) for the operation that
+ * ProcessingMetricsAspect is measuring on the current thread. Outside a
+ * measured operation the calls do nothing.
+ */
+public final class OperationMetrics {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private OperationMetrics() {
+    }
+
+    static final class Scope {
+        final LongAdder pages = new LongAdder();
+        final LongAdder frames = new LongAdder();
+    }
+
+    /**
+     * Start a scope on this thread and return the one it replaces, to be
+     * passed back to {@link #end}.
+     */
+    static Scope begin(Scope scope) {
+        Scope previous = CURRENT.get();
+        CURRENT.set(scope);
+        return previous;
+    }
+
+    static void end(Scope previous) {
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    public static void recordPages(long pages) {
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.pages.add(pages);
+        }
+    }
+
+    public static void recordFrames(long frames) {
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.frames.add(frames);
+        }
+    }
+
+    /**
+     * Carry the current scope over to a helper thread, so work fanned out by
+     * an operation is still counted towards it.
+     */
+    public static Runnable wrap(Runnable task) {
+        Scope scope = CURRENT.get();
+        return () -> {
+            Scope previous = begin(scope);
+            try {
+                task.run();
+            } finally {
+                end(previous);
+            }
+        };
+    }
+}
@@ -0,0 +1,100 @@
+package com.docprocessor.metrics;
+
+import com.docprocessor.cache.ResultCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Gauges for temp directory usage and the result cache. The temp directory
+ * is scanned at most once per storage.metrics.scan.interval, however often
+ * the gauges are scraped.
+ */
+@Component
+public class StorageMetrics implements MeterBinder {
+
+    private final Path tempLocation;
+    private final long scanIntervalNanos;
+    private final ResultCache resultCache;
+
+    private long lastScan;
+    private volatile long tempBytes;
+    private volatile long tempFiles;
+
+    public StorageMetrics(@Value("${storage.temp.location}") String tempStorageLocation,
+                          @Value("${storage.metrics.scan.interval}") long scanIntervalSeconds,
+                          ResultCache resultCache) {
+        this.tempLocation = Paths.get(tempStorageLocation).toAbsolutePath();
+        this.scanIntervalNanos = scanIntervalSeconds * 1_000_000_000L;
+        this.resultCache = resultCache;
+        this.lastScan = System.nanoTime() - scanIntervalNanos;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("storage.temp.size", this, metrics -> metrics.scan().tempBytes)
+                .description("Bytes in the temp directory (uploads being processed and results)")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("storage.temp.files", this, metrics -> metrics.scan().tempFiles)
+                .description("Files in the temp directory")
+                .register(registry);
+
+        Gauge.builder("cache.results.size", resultCache, cache -> cache.getStats().getSizeBytes())
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("cache.results.entries", resultCache, cache -> cache.getStats().getEntries())
+                .register(registry);
+        FunctionCounter.builder("cache.results.requests", resultCache, cache -> cache.getStats().getHits())
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.results.requests", resultCache, cache -> cache.getStats().getMisses())
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("cache.results.evictions", resultCache, cache -> cache.getStats().getEvictions())
+                .register(registry);
+    }
+
+    private synchronized StorageMetrics scan() {
+        long now = System.nanoTime();
+        if (now - lastScan < scanIntervalNanos) {
+            return this;
+        }
+        long bytes = 0;
+        long files = 0;
+        // Results and spooled uploads sit directly in the temp directory
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(tempLocation)) {
+            for (Path entry : entries) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    // Deleted by a finished job or the cleanup since it was listed
+                    continue;
+                }
+                if (attributes.isRegularFile()) {
+                    bytes += attributes.size();
+                    files++;
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            // Directory missing or unreadable; keep what we counted
+        }
+        tempBytes = bytes;
+        tempFiles = files;
+        lastScan = now;
+        return this;
+    }
+}
@@ -0,0 +1,152 @@
+package com.docprocessor.ratelimit;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Bounded map from user to bucket state.
+ *
+ * Keys are spread over a fixed number of shards, each an access-ordered
+ * LinkedHashMap behind its own lock, so users rarely contend with each other.
+ * A shard drops its least recently used entry once it is full and expires
+ * entries that have been idle longer than the configured time. Reading an
+ * existing entry allocates nothing.
+ */
+final class BucketStore<V> {
+
+    private static final int SHARDS = 16;
+
+    private final Shard<V>[] shards;
+    private final long idleNanos;
+
+    @SuppressWarnings("unchecked")
+    BucketStore(int maxEntries, Duration idleTimeout) {
+        int perShard = Math.max(1, (maxEntries + SHARDS - 1) / SHARDS);
+        this.shards = new Shard[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard<>(perShard);
+        }
+        this.idleNanos = idleTimeout.toNanos();
+    }
+
+    private static final class Entry<V> {
+        private V value;
+        private long lastAccess;
+
+        Entry(V value, long lastAccess) {
+            this.value = value;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private static final class Shard<V> extends LinkedHashMap<String, Entry<V>> {
+        private final int maxEntries;
+
+        Shard(int maxEntries) {
+            super(64, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    V computeIfAbsent(String key, Function<String, V> factory) {
+        Shard<V> shard = shard(key);
+        long now = System.nanoTime();
+        synchronized (shard) {
+            expire(shard, now);
+            Entry<V> entry = shard.get(key);
+            if (entry == null) {
+                entry = new Entry<>(factory.apply(key), now);
+                shard.put(key, entry);
+            }
+            entry.lastAccess = now;
+            return entry.value;
+        }
+    }
+
+    V get(String key) {
+        Shard<V> shard = shard(key);
+        long now = System.nanoTime();
+        synchronized (shard) {
+            expire(shard, now);
+            Entry<V> entry = shard.get(key);
+            if (entry == null) {
+                return null;
+            }
+            entry.lastAccess = now;
+            return entry.value;
+        }
+    }
+
+    boolean putIfAbsent(String key, V value) {
+        Shard<V> shard = shard(key);
+        long now = System.nanoTime();
+        synchronized (shard) {
+            expire(shard, now);
+            if (shard.containsKey(key)) {
+                return false;
+            }
+            shard.put(key, new Entry<>(value, now));
+            return true;
+        }
+    }
+
+    /**
+     * Swap in the new value only if the current one is the same instance as expected.
+     */
+    boolean replace(String key, V expected, V value) {
+        Shard<V> shard = shard(key);
+        long now = System.nanoTime();
+        synchronized (shard) {
+            expire(shard, now);
+            Entry<V> entry = shard.get(key);
+            if (entry == null || entry.value != expected) {
+                return false;
+            }
+            entry.value = value;
+            entry.lastAccess = now;
+            return true;
+        }
+    }
+
+    void remove(String key) {
+        Shard<V> shard = shard(key);
+        synchronized (shard) {
+            shard.remove(key);
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Shard<V> shard : shards) {
+            synchronized (shard) {
+                size += shard.size();
+            }
+        }
+        return size;
+    }
+
+    private Shard<V> shard(String key) {
+        int hash = key.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & (SHARDS - 1)];
+    }
+
+    // Caller must hold the shard's lock. Iteration starts at the least recently
+    // used entry, so this stops at the first one that is still fresh.
+    private void expire(Shard<V> shard, long now) {
+        Iterator<Entry<V>> iterator = shard.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().lastAccess < idleNanos) {
+                return;
+            }
+            iterator.remove();
+        }
+    }
+}
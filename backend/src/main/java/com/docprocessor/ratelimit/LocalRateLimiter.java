@@ -0,0 +1,36 @@
+package com.docprocessor.ratelimit;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.ConsumptionProbe;
+import io.github.bucket4j.local.LocalBucketBuilder;
+
+import java.time.Duration;
+
+/**
+ * Keeps one in-process Bucket4j bucket per user. Budgets are per replica.
+ */
+public class LocalRateLimiter implements RateLimiter {
+
+    private final BucketConfiguration configuration;
+    private final BucketStore<Bucket> buckets;
+
+    public LocalRateLimiter(BucketConfiguration configuration, int maxKeys, Duration idleTimeout) {
+        this.configuration = configuration;
+        this.buckets = new BucketStore<>(maxKeys, idleTimeout);
+    }
+
+    @Override
+    public ConsumptionProbe tryConsume(String key, long cost) {
+        return buckets.computeIfAbsent(key, this::newBucket).tryConsumeAndReturnRemaining(cost);
+    }
+
+    private Bucket newBucket(String key) {
+        LocalBucketBuilder builder = Bucket.builder();
+        for (Bandwidth bandwidth : configuration.getBandwidths()) {
+            builder.addLimit(bandwidth);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,28 @@
+package com.docprocessor.ratelimit;
+
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.ConsumptionProbe;
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+
+import java.util.function.Supplier;
+
+/**
+ * Keeps bucket state in a Bucket4j ProxyManager. Backed by a shared store
+ * (Redis, JDBC, Hazelcast...), every replica draws from the same budget.
+ */
+public class ProxyManagerRateLimiter implements RateLimiter {
+
+    private final ProxyManager<String> proxyManager;
+    // Only consulted when the store has no state for the key yet
+    private final Supplier<BucketConfiguration> configuration;
+
+    public ProxyManagerRateLimiter(ProxyManager<String> proxyManager, BucketConfiguration configuration) {
+        this.proxyManager = proxyManager;
+        this.configuration = () -> configuration;
+    }
+
+    @Override
+    public ConsumptionProbe tryConsume(String key, long cost) {
+        return proxyManager.builder().build(key, configuration).tryConsumeAndReturnRemaining(cost);
+    }
+}
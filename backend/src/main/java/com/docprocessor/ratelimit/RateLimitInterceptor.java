@@ -0,0 +1,188 @@
+package com.docprocessor.ratelimit;
+
+import com.docprocessor.exception.RateLimitExceededException;
+import com.docprocessor.exception.ResourceNotFoundException;
+import com.docprocessor.upload.ChunkedUploadService;
+import io.github.bucket4j.ConsumptionProbe;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.MethodParameter;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ValueConstants;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.List;
+
+/**
+ * Rate Limit Interceptor
+ *
+ * Purpose: Applies the per-user token budget to every @RateLimited endpoint
+ *
+ * How it works:
+ * - The cost is the endpoint's weight times the number of started
+ *   rate.limit.cost.unit.bytes in the upload, counting chunked uploads the
+ *   request refers to by id as if they had been sent inline
+ * - Rendering endpoints also scale with the page range (per
+ *   rate.limit.cost.pages.per.unit pages) and with (dpi / base dpi)^2,
+ *   since pixel count grows with the square of the resolution
+ * - A range left open on either side is estimated from the upload size at
+ *   rate.limit.cost.bytes.per.page, as the page count is only known once
+ *   the document is opened
+ * - Batch endpoints charge at least the weight per uploaded file
+ * - Costs are capped at the bucket capacity, so a large job waits for a
+ *   full bucket instead of being refused forever
+ * - Accepted requests get X-Rate-Limit-Remaining; refused ones a 429 with
+ *   Retry-After
+ */
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private static final String REMAINING_HEADER = "X-Rate-Limit-Remaining";
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final RateLimiter rateLimiter;
+    private final ChunkedUploadService uploadService;
+    private final long capacity;
+    private final long unitBytes;
+    private final int pagesPerUnit;
+    private final long bytesPerPage;
+    private final float baseDpi;
+
+    public RateLimitInterceptor(RateLimiter rateLimiter,
+                                ChunkedUploadService uploadService,
+                                @Value("${rate.limit.capacity}") long capacity,
+                                @Value("${rate.limit.cost.unit.bytes}") long unitBytes,
+                                @Value("${rate.limit.cost.pages.per.unit}") int pagesPerUnit,
+                                @Value("${rate.limit.cost.bytes.per.page}") long bytesPerPage,
+                                @Value("${rate.limit.cost.base.dpi}") float baseDpi) {
+        this.rateLimiter = rateLimiter;
+        this.uploadService = uploadService;
+        this.capacity = capacity;
+        this.unitBytes = Math.max(1, unitBytes);
+        this.pagesPerUnit = Math.max(1, pagesPerUnit);
+        this.bytesPerPage = Math.max(1, bytesPerPage);
+        this.baseDpi = baseDpi;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Async re-dispatches belong to a request that has already paid
+        if (request.getDispatcherType() != DispatcherType.REQUEST || !(handler instanceof HandlerMethod method)) {
+            return true;
+        }
+        RateLimited limit = method.getMethodAnnotation(RateLimited.class);
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (limit == null || authentication == null) {
+            return true;
+        }
+
+        ConsumptionProbe probe = rateLimiter.tryConsume(authentication.getName(),
+                cost(limit, method, request, authentication.getName()));
+        if (!probe.isConsumed()) {
+            long retryAfter = Math.max(1,
+                    (probe.getNanosToWaitForRefill() + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+            throw new RateLimitExceededException("Rate limit exceeded. Please try again later.", retryAfter);
+        }
+        response.setHeader(REMAINING_HEADER, String.valueOf(probe.getRemainingTokens()));
+        return true;
+    }
+
+    private long cost(RateLimited limit, HandlerMethod method, HttpServletRequest request, String owner) {
+        long length = Math.max(0, request.getContentLengthLong()) + uploadedBytes(limit, request, owner);
+        long units = length > 0 ? (length + unitBytes - 1) / unitBytes : 1;
+        if (limit.perFile() && request instanceof MultipartHttpServletRequest multipart) {
+            // The multipart request has already been parsed by the time interceptors run
+            long files = multipart.getMultiFileMap().values().stream().mapToLong(List::size).sum();
+            units = Math.max(units, files);
+        }
+        double cost = limit.cost() * (double) units;
+
+        if (limit.rendering()) {
+            long pages = renderedPages(request, length);
+            long pageUnits = (pages + pagesPerUnit - 1) / pagesPerUnit;
+            cost = limit.cost() * (double) Math.max(units, pageUnits);
+            float dpi = parseDpi(request.getParameter("dpi"), method);
+            cost *= Math.max(1.0, Math.round(Math.pow(dpi / baseDpi, 2)));
+        }
+        return (long) Math.max(1, Math.min(cost, capacity));
+    }
+
+    /**
+     * Total size of the chunked uploads named by the request. Unknown ids
+     * cost nothing here; the controller answers them with a 404.
+     */
+    private long uploadedBytes(RateLimited limit, HttpServletRequest request, String owner) {
+        long bytes = 0;
+        for (String parameter : limit.uploads()) {
+            String[] values = request.getParameterValues(parameter);
+            if (values == null) {
+                continue;
+            }
+            for (String value : values) {
+                // A list parameter may also arrive as one comma-separated value
+                for (String id : StringUtils.commaDelimitedListToStringArray(value)) {
+                    try {
+                        bytes += uploadService.get(id.strip(), owner).getSize();
+                    } catch (ResourceNotFoundException e) {
+                        // Not charged
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Pages the request will render: the range itself when both bounds are
+     * given, otherwise the part of the estimated page count it covers.
+     */
+    private long renderedPages(HttpServletRequest request, long length) {
+        Integer firstPage = parseInt(request.getParameter("firstPage"));
+        Integer lastPage = parseInt(request.getParameter("lastPage"));
+        long first = firstPage != null ? Math.max(1, firstPage) : 1;
+        if (lastPage != null && firstPage != null) {
+            return Math.max(1, lastPage - first + 1);
+        }
+        long estimated = Math.max(1, (length + bytesPerPage - 1) / bytesPerPage);
+        long last = lastPage != null ? Math.min(lastPage, estimated) : estimated;
+        return Math.max(1, last - first + 1);
+    }
+
+    private float parseDpi(String value, HandlerMethod method) {
+        if (value == null) {
+            // Fall back to the endpoint's own default
+            for (MethodParameter parameter : method.getMethodParameters()) {
+                RequestParam param = parameter.getParameterAnnotation(RequestParam.class);
+                if (param != null && "dpi".equals(param.value())
+                        && !ValueConstants.DEFAULT_NONE.equals(param.defaultValue())) {
+                    value = param.defaultValue();
+                }
+            }
+        }
+        try {
+            return value != null ? Float.parseFloat(value) : baseDpi;
+        } catch (NumberFormatException e) {
+            // The controller will reject it; charge the base rate
+            return baseDpi;
+        }
+    }
+
+    private static Integer parseInt(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
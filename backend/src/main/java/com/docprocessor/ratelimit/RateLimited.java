@@ -0,0 +1,35 @@
+package com.docprocessor.ratelimit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a handler method as rate limited. The request costs cost tokens per
+ * started rate.limit.cost.unit.bytes of upload; rendering endpoints are also
+ * scaled by page count and resolution, batch endpoints by file count.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+
+    long cost() default 1;
+
+    /**
+     * Scale by the dpi, firstPage and lastPage request parameters.
+     */
+    boolean rendering() default false;
+
+    /**
+     * Charge at least cost tokens for every uploaded file, so a batch of
+     * small files costs as much as sending them one by one.
+     */
+    boolean perFile() default false;
+
+    /**
+     * Request parameters holding chunked upload ids. The uploads' sizes count
+     * as uploaded bytes, so using an upload costs as much as sending it inline.
+     */
+    String[] uploads() default {};
+}
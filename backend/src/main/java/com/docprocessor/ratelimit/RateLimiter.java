@@ -0,0 +1,12 @@
+package com.docprocessor.ratelimit;
+
+import io.github.bucket4j.ConsumptionProbe;
+
+public interface RateLimiter {
+
+    /**
+     * Take cost tokens from the key's bucket if it has that many. The probe
+     * reports the tokens left, or how long to wait when the request was refused.
+     */
+    ConsumptionProbe tryConsume(String key, long cost);
+}
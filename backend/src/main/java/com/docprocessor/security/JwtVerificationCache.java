@@ -0,0 +1,112 @@
+package com.docprocessor.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JWT Verification Cache
+ * Purpose: Lets repeat requests with the same token skip signature verification
+ * and the user lookup
+ * Security: Entries are keyed by the token's SHA-256 digest, so raw tokens are not
+ * kept in memory. Only verified tokens are cached, and never past their own expiry or
+ * jwt.cache.ttl, whichever comes first
+ * Capacity: Once full, expired entries are swept at most once per SWEEP_INTERVAL_MILLIS;
+ * if the cache is still full, an arbitrary entry makes room so put stays O(1) amortised
+ */
+@Component
+public class JwtVerificationCache {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweepMillis = new AtomicLong();
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    public JwtVerificationCache(@Value("${jwt.cache.max.entries}") int maxEntries,
+                                @Value("${jwt.cache.ttl}") long ttlSeconds) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    private record Entry(UserDetails user, long expiresAtMillis) {
+    }
+
+    /**
+     * The user a previously verified token belongs to, or null if the token
+     * has not been seen or its entry has expired.
+     */
+    public UserDetails get(String token) {
+        if (maxEntries <= 0) {
+            return null;
+        }
+        String key = digest(token);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis() <= System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.user();
+    }
+
+    public void put(String token, UserDetails user, Date tokenExpiration) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long expiresAt = now + ttlMillis;
+        if (tokenExpiration != null) {
+            expiresAt = Math.min(expiresAt, tokenExpiration.getTime());
+        }
+        if (expiresAt <= now) {
+            return;
+        }
+        if (entries.size() >= maxEntries) {
+            makeRoom(now);
+        }
+        entries.put(digest(token), new Entry(user, expiresAt));
+    }
+
+    private void makeRoom(long now) {
+        long lastSweep = lastSweepMillis.get();
+        if (now - lastSweep >= SWEEP_INTERVAL_MILLIS && lastSweepMillis.compareAndSet(lastSweep, now)) {
+            entries.values().removeIf(entry -> entry.expiresAtMillis() <= now);
+        }
+        // Still full of live tokens: drop any one of them, it only costs a re-verification
+        Iterator<String> keys = entries.keySet().iterator();
+        while (entries.size() >= maxEntries && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static String digest(String token) {
+        byte[] hash = SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+    }
+}
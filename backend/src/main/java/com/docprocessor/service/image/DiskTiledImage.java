@@ -0,0 +1,690 @@
+package com.docprocessor.service.image;
+
+import java.awt.Point;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.IndexColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An INT_RGB or INT_ARGB image whose pixels live in a scratch file, split
+ * into square tiles. Only the most recently used tiles are kept in memory;
+ * evicted tiles are written back to the file. The image is a regular
+ * BufferedImage, so ImageIO readers can decode into it and writers and
+ * Java2D can read from it, one row or tile at a time.
+ *
+ * Not thread-safe: one image is used by one request thread.
+ */
+final class DiskTiledImage implements Closeable {
+
+    private static final DirectColorModel RGB = new DirectColorModel(24, 0xff0000, 0xff00, 0xff);
+    private static final DirectColorModel ARGB = new DirectColorModel(32, 0xff0000, 0xff00, 0xff, 0xff000000);
+
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int tilesAcross;
+    private final Path file;
+    private final FileChannel channel;
+    private final TileDataBuffer dataBuffer;
+    private final BufferedImage image;
+
+    DiskTiledImage(int width, int height, boolean alpha, int tileSize, Path directory) throws IOException {
+        if ((long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Image too large: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.tilesAcross = (width + tileSize - 1) / tileSize;
+        this.file = Files.createTempFile(directory, "tiles_", ".raw");
+        this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        // Decoding and encoding walk the image row by row, so a full row of
+        // tiles has to fit; a few more keep rotation from thrashing
+        this.dataBuffer = new TileDataBuffer(tilesAcross + 8);
+        DirectColorModel colorModel = alpha ? ARGB : RGB;
+        SinglePixelPackedSampleModel sampleModel = new TiledSampleModel(width, height, colorModel.getMasks(),
+                dataBuffer);
+        WritableRaster raster = Raster.createWritableRaster(sampleModel, dataBuffer, new Point(0, 0));
+        this.image = new BufferedImage(colorModel, raster, false, null);
+    }
+
+    BufferedImage image() {
+        return image;
+    }
+
+    int width() {
+        return width;
+    }
+
+    int height() {
+        return height;
+    }
+
+    boolean hasAlpha() {
+        return image.getColorModel().hasAlpha();
+    }
+
+    /**
+     * A view of the same pixels in the reader's own 8-bit gray, gray+alpha,
+     * RGB or RGBA layout, so a reader can decode straight into the tiles
+     * without converting to packed ints first. Null for other layouts.
+     */
+    BufferedImage componentView(ColorModel colorModel) {
+        if (!(colorModel instanceof ComponentColorModel) || colorModel.isAlphaPremultiplied()
+                || colorModel.getTransferType() != DataBuffer.TYPE_BYTE) {
+            return null;
+        }
+        int type = colorModel.getColorSpace().getType();
+        int[][] shifts;
+        if (type == ColorSpace.TYPE_GRAY && colorModel.getNumColorComponents() == 1) {
+            // Gray is stored as equal red, green and blue
+            shifts = colorModel.hasAlpha()
+                    ? new int[][]{{16, 8, 0}, {24}}
+                    : new int[][]{{16, 8, 0}};
+        } else if (colorModel.getColorSpace().isCS_sRGB() && colorModel.getNumColorComponents() == 3) {
+            shifts = colorModel.hasAlpha()
+                    ? new int[][]{{16}, {8}, {0}, {24}}
+                    : new int[][]{{16}, {8}, {0}};
+        } else {
+            return null;
+        }
+        if (colorModel.hasAlpha() != hasAlpha()) {
+            return null;
+        }
+        WritableRaster raster = Raster.createWritableRaster(
+                new ComponentView(width, height, shifts, dataBuffer), dataBuffer, new Point(0, 0));
+        return new BufferedImage(colorModel, raster, false, null);
+    }
+
+    /**
+     * A view for the layouts componentView does not cover, such as indexed
+     * or 16-bit pixels: each pixel is converted through the color model as
+     * the reader writes it, so those images are decoded in one pass as well.
+     * Null for float or signed sample types.
+     */
+    BufferedImage convertedView(ColorModel colorModel) {
+        int transferType = colorModel.getTransferType();
+        if (transferType != DataBuffer.TYPE_BYTE && transferType != DataBuffer.TYPE_USHORT
+                && transferType != DataBuffer.TYPE_INT) {
+            return null;
+        }
+        if (colorModel.hasAlpha() != hasAlpha()) {
+            return null;
+        }
+        WritableRaster raster = Raster.createWritableRaster(
+                new ConvertedView(width, height, colorModel, dataBuffer), dataBuffer, new Point(0, 0));
+        return new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * Copy a region into a regular in-memory image of the same type.
+     */
+    BufferedImage copyRegion(int x, int y, int regionWidth, int regionHeight) {
+        BufferedImage copy = new BufferedImage(regionWidth, regionHeight,
+                hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        int[] row = new int[regionWidth];
+        Raster source = image.getRaster();
+        WritableRaster target = copy.getRaster();
+        for (int line = 0; line < regionHeight; line++) {
+            source.getDataElements(x, y + line, regionWidth, 1, row);
+            target.setDataElements(0, line, regionWidth, 1, row);
+        }
+        return copy;
+    }
+
+    /**
+     * Copy an in-memory image of the same type into this one at (x, y).
+     */
+    void writeRegion(int x, int y, BufferedImage region) {
+        int[] row = new int[region.getWidth()];
+        Raster source = region.getRaster();
+        WritableRaster target = image.getRaster();
+        for (int line = 0; line < region.getHeight(); line++) {
+            source.getDataElements(0, line, region.getWidth(), 1, row);
+            target.setDataElements(x, y + line, region.getWidth(), 1, row);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Copies whole runs of pixels to and from the tiles. Without it readers,
+     * writers and Java2D go through the data buffer one element at a time.
+     */
+    private static final class TiledSampleModel extends SinglePixelPackedSampleModel {
+
+        private final TileDataBuffer dataBuffer;
+        private final int[] masks;
+        private final int[] offsets;
+
+        TiledSampleModel(int width, int height, int[] masks, TileDataBuffer dataBuffer) {
+            super(DataBuffer.TYPE_INT, width, height, masks);
+            this.dataBuffer = dataBuffer;
+            this.masks = getBitMasks();
+            this.offsets = getBitOffsets();
+        }
+
+        @Override
+        public SampleModel createSubsetSampleModel(int[] bands) {
+            int[] subset = new int[bands.length];
+            for (int i = 0; i < bands.length; i++) {
+                subset[i] = masks[bands[i]];
+            }
+            return new TiledSampleModel(getWidth(), getHeight(), subset, dataBuffer);
+        }
+
+        @Override
+        public SampleModel createCompatibleSampleModel(int w, int h) {
+            // Compatible rasters are ordinary in-memory ones
+            return new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, w, h, masks);
+        }
+
+        @Override
+        public Object getDataElements(int x, int y, int w, int h, Object obj, DataBuffer data) {
+            int[] pixels = obj != null ? (int[]) obj : new int[w * h];
+            for (int row = 0; row < h; row++) {
+                dataBuffer.getRow(x, y + row, w, pixels, row * w);
+            }
+            return pixels;
+        }
+
+        @Override
+        public void setDataElements(int x, int y, int w, int h, Object obj, DataBuffer data) {
+            int[] pixels = (int[]) obj;
+            for (int row = 0; row < h; row++) {
+                dataBuffer.setRow(x, y + row, w, pixels, row * w);
+            }
+        }
+
+        @Override
+        public int[] getPixels(int x, int y, int w, int h, int[] iArray, DataBuffer data) {
+            int bands = masks.length;
+            int[] samples = iArray != null ? iArray : new int[w * h * bands];
+            int[] line = new int[w];
+            int i = 0;
+            for (int row = 0; row < h; row++) {
+                dataBuffer.getRow(x, y + row, w, line, 0);
+                for (int column = 0; column < w; column++) {
+                    int value = line[column];
+                    for (int band = 0; band < bands; band++) {
+                        samples[i++] = (value & masks[band]) >>> offsets[band];
+                    }
+                }
+            }
+            return samples;
+        }
+
+        @Override
+        public void setPixels(int x, int y, int w, int h, int[] iArray, DataBuffer data) {
+            int bands = masks.length;
+            int[] line = new int[w];
+            int i = 0;
+            for (int row = 0; row < h; row++) {
+                // Read first: a band subset must leave the other bands alone
+                dataBuffer.getRow(x, y + row, w, line, 0);
+                for (int column = 0; column < w; column++) {
+                    int value = line[column];
+                    for (int band = 0; band < bands; band++) {
+                        value = (value & ~masks[band]) | ((iArray[i++] << offsets[band]) & masks[band]);
+                    }
+                    line[column] = value;
+                }
+                dataBuffer.setRow(x, y + row, w, line, 0);
+            }
+        }
+    }
+
+    /**
+     * Another layout of the packed pixels, one element per band. Subclasses
+     * convert a pixel's samples to and from its packed int; everything the
+     * raster does goes through those two methods.
+     */
+    private abstract static class PackedView extends PixelInterleavedSampleModel {
+
+        final TileDataBuffer dataBuffer;
+        final int bands;
+
+        PackedView(int dataType, int width, int height, int bands, TileDataBuffer dataBuffer) {
+            super(dataType, width, height, bands, width * bands, bandOffsets(bands));
+            this.dataBuffer = dataBuffer;
+            this.bands = bands;
+        }
+
+        static int[] bandOffsets(int bands) {
+            int[] offsets = new int[bands];
+            for (int i = 0; i < bands; i++) {
+                offsets[i] = i;
+            }
+            return offsets;
+        }
+
+        /**
+         * Write the samples of packed pixel value to samples[offset..].
+         */
+        abstract void unpack(int value, int[] samples, int offset);
+
+        /**
+         * The packed pixel for samples[offset..], keeping whatever of value
+         * those samples do not cover.
+         */
+        abstract int pack(int[] samples, int offset, int value);
+
+        @Override
+        public SampleModel createCompatibleSampleModel(int w, int h) {
+            return new PixelInterleavedSampleModel(getDataType(), w, h, bands, w * bands, bandOffsets(bands));
+        }
+
+        @Override
+        public int[] getPixels(int x, int y, int w, int h, int[] iArray, DataBuffer data) {
+            int[] samples = iArray != null ? iArray : new int[w * h * bands];
+            int[] line = new int[w];
+            int i = 0;
+            for (int row = 0; row < h; row++) {
+                dataBuffer.getRow(x, y + row, w, line, 0);
+                for (int column = 0; column < w; column++) {
+                    unpack(line[column], samples, i);
+                    i += bands;
+                }
+            }
+            return samples;
+        }
+
+        @Override
+        public void setPixels(int x, int y, int w, int h, int[] iArray, DataBuffer data) {
+            int[] line = new int[w];
+            int i = 0;
+            for (int row = 0; row < h; row++) {
+                dataBuffer.getRow(x, y + row, w, line, 0);
+                for (int column = 0; column < w; column++) {
+                    line[column] = pack(iArray, i, line[column]);
+                    i += bands;
+                }
+                dataBuffer.setRow(x, y + row, w, line, 0);
+            }
+        }
+
+        @Override
+        public int[] getPixel(int x, int y, int[] iArray, DataBuffer data) {
+            return getPixels(x, y, 1, 1, iArray, data);
+        }
+
+        @Override
+        public void setPixel(int x, int y, int[] iArray, DataBuffer data) {
+            setPixels(x, y, 1, 1, iArray, data);
+        }
+
+        @Override
+        public int getSample(int x, int y, int b, DataBuffer data) {
+            return getPixel(x, y, (int[]) null, data)[b];
+        }
+
+        @Override
+        public float getSampleFloat(int x, int y, int b, DataBuffer data) {
+            return getSample(x, y, b, data);
+        }
+
+        @Override
+        public double getSampleDouble(int x, int y, int b, DataBuffer data) {
+            return getSample(x, y, b, data);
+        }
+
+        @Override
+        public void setSample(int x, int y, int b, int s, DataBuffer data) {
+            int[] pixel = getPixel(x, y, (int[]) null, data);
+            pixel[b] = s;
+            setPixel(x, y, pixel, data);
+        }
+
+        @Override
+        public void setSample(int x, int y, int b, float s, DataBuffer data) {
+            setSample(x, y, b, (int) s, data);
+        }
+
+        @Override
+        public void setSample(int x, int y, int b, double s, DataBuffer data) {
+            setSample(x, y, b, (int) s, data);
+        }
+
+        @Override
+        public int[] getSamples(int x, int y, int w, int h, int b, int[] iArray, DataBuffer data) {
+            int[] pixels = getPixels(x, y, w, h, (int[]) null, data);
+            int[] samples = iArray != null ? iArray : new int[w * h];
+            for (int i = 0; i < w * h; i++) {
+                samples[i] = pixels[i * bands + b];
+            }
+            return samples;
+        }
+
+        @Override
+        public void setSamples(int x, int y, int w, int h, int b, int[] iArray, DataBuffer data) {
+            int[] pixels = getPixels(x, y, w, h, (int[]) null, data);
+            for (int i = 0; i < w * h; i++) {
+                pixels[i * bands + b] = iArray[i];
+            }
+            setPixels(x, y, w, h, pixels, data);
+        }
+
+        @Override
+        public Object getDataElements(int x, int y, Object obj, DataBuffer data) {
+            return getDataElements(x, y, 1, 1, obj, data);
+        }
+
+        @Override
+        public void setDataElements(int x, int y, Object obj, DataBuffer data) {
+            setDataElements(x, y, 1, 1, obj, data);
+        }
+
+        @Override
+        public Object getDataElements(int x, int y, int w, int h, Object obj, DataBuffer data) {
+            int[] pixels = getPixels(x, y, w, h, (int[]) null, data);
+            switch (getDataType()) {
+                case DataBuffer.TYPE_BYTE -> {
+                    byte[] elements = obj != null ? (byte[]) obj : new byte[pixels.length];
+                    for (int i = 0; i < pixels.length; i++) {
+                        elements[i] = (byte) pixels[i];
+                    }
+                    return elements;
+                }
+                case DataBuffer.TYPE_USHORT -> {
+                    short[] elements = obj != null ? (short[]) obj : new short[pixels.length];
+                    for (int i = 0; i < pixels.length; i++) {
+                        elements[i] = (short) pixels[i];
+                    }
+                    return elements;
+                }
+                default -> {
+                    int[] elements = obj != null ? (int[]) obj : new int[pixels.length];
+                    System.arraycopy(pixels, 0, elements, 0, pixels.length);
+                    return elements;
+                }
+            }
+        }
+
+        @Override
+        public void setDataElements(int x, int y, int w, int h, Object obj, DataBuffer data) {
+            int[] pixels = new int[w * h * bands];
+            switch (getDataType()) {
+                case DataBuffer.TYPE_BYTE -> {
+                    byte[] elements = (byte[]) obj;
+                    for (int i = 0; i < pixels.length; i++) {
+                        pixels[i] = elements[i] & 0xff;
+                    }
+                }
+                case DataBuffer.TYPE_USHORT -> {
+                    short[] elements = (short[]) obj;
+                    for (int i = 0; i < pixels.length; i++) {
+                        pixels[i] = elements[i] & 0xffff;
+                    }
+                }
+                default -> System.arraycopy((int[]) obj, 0, pixels, 0, pixels.length);
+            }
+            setPixels(x, y, w, h, pixels, data);
+        }
+    }
+
+    /**
+     * 8-bit components mapped onto the packed pixels: band b reads from and
+     * writes to the bytes at shifts[b].
+     */
+    private static final class ComponentView extends PackedView {
+
+        private final int[][] shifts;
+
+        ComponentView(int width, int height, int[][] shifts, TileDataBuffer dataBuffer) {
+            super(DataBuffer.TYPE_BYTE, width, height, shifts.length, dataBuffer);
+            this.shifts = shifts;
+        }
+
+        @Override
+        public SampleModel createSubsetSampleModel(int[] bands) {
+            int[][] subset = new int[bands.length][];
+            for (int i = 0; i < bands.length; i++) {
+                subset[i] = shifts[bands[i]];
+            }
+            return new ComponentView(getWidth(), getHeight(), subset, dataBuffer);
+        }
+
+        @Override
+        void unpack(int value, int[] samples, int offset) {
+            for (int band = 0; band < shifts.length; band++) {
+                samples[offset + band] = (value >>> shifts[band][0]) & 0xff;
+            }
+        }
+
+        @Override
+        int pack(int[] samples, int offset, int value) {
+            for (int band = 0; band < shifts.length; band++) {
+                int sample = samples[offset + band] & 0xff;
+                for (int shift : shifts[band]) {
+                    value = (value & ~(0xff << shift)) | (sample << shift);
+                }
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Any other layout the color model describes, converted through it one
+     * pixel at a time: indexed pixels become their palette colour, 16-bit
+     * samples are scaled to 8 bits. Reading back finds the closest pixel.
+     */
+    private static final class ConvertedView extends PackedView {
+
+        private final ColorModel colorModel;
+        private Object elements;
+
+        ConvertedView(int width, int height, ColorModel colorModel, TileDataBuffer dataBuffer) {
+            // An indexed pixel is one band however many components its palette has
+            super(colorModel.getTransferType(), width, height,
+                    colorModel instanceof IndexColorModel ? 1 : colorModel.getNumComponents(), dataBuffer);
+            this.colorModel = colorModel;
+            this.elements = colorModel.getDataElements(0, null);
+        }
+
+        @Override
+        public SampleModel createSubsetSampleModel(int[] bands) {
+            // A converted pixel cannot be split into bands
+            throw new UnsupportedOperationException("Band subsets of a converted view");
+        }
+
+        @Override
+        void unpack(int value, int[] samples, int offset) {
+            elements = colorModel.getDataElements(value, elements);
+            switch (getDataType()) {
+                case DataBuffer.TYPE_BYTE -> {
+                    for (int band = 0; band < bands; band++) {
+                        samples[offset + band] = ((byte[]) elements)[band] & 0xff;
+                    }
+                }
+                case DataBuffer.TYPE_USHORT -> {
+                    for (int band = 0; band < bands; band++) {
+                        samples[offset + band] = ((short[]) elements)[band] & 0xffff;
+                    }
+                }
+                default -> System.arraycopy((int[]) elements, 0, samples, offset, bands);
+            }
+        }
+
+        @Override
+        int pack(int[] samples, int offset, int value) {
+            switch (getDataType()) {
+                case DataBuffer.TYPE_BYTE -> {
+                    for (int band = 0; band < bands; band++) {
+                        ((byte[]) elements)[band] = (byte) samples[offset + band];
+                    }
+                }
+                case DataBuffer.TYPE_USHORT -> {
+                    for (int band = 0; band < bands; band++) {
+                        ((short[]) elements)[band] = (short) samples[offset + band];
+                    }
+                }
+                default -> System.arraycopy(samples, offset, (int[]) elements, 0, bands);
+            }
+            return colorModel.getRGB(elements);
+        }
+    }
+
+    /**
+     * Data buffer over the tiles. Element i is pixel (i % width, i / width).
+     */
+    private final class TileDataBuffer extends DataBuffer {
+
+        private final int capacity;
+        private final Map<Integer, Tile> cache;
+        private final BitSet stored = new BitSet();
+        private final ByteBuffer io;
+        private int lastIndex = -1;
+        private Tile lastTile;
+
+        TileDataBuffer(int capacity) {
+            super(DataBuffer.TYPE_INT, width * height);
+            this.capacity = capacity;
+            this.cache = new LinkedHashMap<>(capacity * 2, 0.75f, true);
+            this.io = ByteBuffer.allocateDirect(tileSize * tileSize * Integer.BYTES);
+        }
+
+        @Override
+        public int getElem(int bank, int i) {
+            int x = i % width;
+            int y = i / width;
+            return tile(x, y).pixels[(y % tileSize) * tileSize + x % tileSize];
+        }
+
+        @Override
+        public void setElem(int bank, int i, int value) {
+            int x = i % width;
+            int y = i / width;
+            Tile tile = tile(x, y);
+            tile.pixels[(y % tileSize) * tileSize + x % tileSize] = value;
+            tile.dirty = true;
+        }
+
+        void getRow(int x, int y, int length, int[] target, int offset) {
+            while (length > 0) {
+                int column = x % tileSize;
+                int run = Math.min(length, tileSize - column);
+                System.arraycopy(tile(x, y).pixels, (y % tileSize) * tileSize + column, target, offset, run);
+                x += run;
+                offset += run;
+                length -= run;
+            }
+        }
+
+        void setRow(int x, int y, int length, int[] source, int offset) {
+            while (length > 0) {
+                int column = x % tileSize;
+                int run = Math.min(length, tileSize - column);
+                Tile tile = tile(x, y);
+                System.arraycopy(source, offset, tile.pixels, (y % tileSize) * tileSize + column, run);
+                tile.dirty = true;
+                x += run;
+                offset += run;
+                length -= run;
+            }
+        }
+
+        private Tile tile(int x, int y) {
+            int index = (y / tileSize) * tilesAcross + x / tileSize;
+            // Consecutive pixels almost always fall in the same tile
+            if (index == lastIndex) {
+                return lastTile;
+            }
+            Tile tile = cache.get(index);
+            if (tile == null) {
+                tile = load(index);
+                cache.put(index, tile);
+                evict();
+            }
+            lastIndex = index;
+            lastTile = tile;
+            return tile;
+        }
+
+        private Tile load(int index) {
+            Tile tile = new Tile(new int[tileSize * tileSize]);
+            if (stored.get(index)) {
+                try {
+                    io.clear();
+                    long position = offset(index);
+                    while (io.hasRemaining()) {
+                        if (channel.read(io, position + io.position()) < 0) {
+                            break;
+                        }
+                    }
+                    io.flip();
+                    io.asIntBuffer().get(tile.pixels);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read image tile", e);
+                }
+            }
+            return tile;
+        }
+
+        private void evict() {
+            Iterator<Map.Entry<Integer, Tile>> entries = cache.entrySet().iterator();
+            while (cache.size() > capacity && entries.hasNext()) {
+                Map.Entry<Integer, Tile> eldest = entries.next();
+                if (eldest.getValue().dirty) {
+                    store(eldest.getKey(), eldest.getValue());
+                }
+                entries.remove();
+            }
+        }
+
+        private void store(int index, Tile tile) {
+            try {
+                io.clear();
+                io.asIntBuffer().put(tile.pixels);
+                long position = offset(index);
+                while (io.hasRemaining()) {
+                    channel.write(io, position + io.position());
+                }
+                stored.set(index);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write image tile", e);
+            }
+        }
+
+        private long offset(int index) {
+            return (long) index * tileSize * tileSize * Integer.BYTES;
+        }
+    }
+
+    private static final class Tile {
+        private final int[] pixels;
+        private boolean dirty;
+
+        Tile(int[] pixels) {
+            this.pixels = pixels;
+        }
+    }
+}
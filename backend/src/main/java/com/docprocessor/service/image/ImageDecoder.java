@@ -0,0 +1,166 @@
+package com.docprocessor.service.image;
+
+import com.docprocessor.exception.InvalidFileException;
+import com.docprocessor.exception.ProcessingException;
+import net.coobird.thumbnailator.util.exif.ExifFilterUtils;
+import net.coobird.thumbnailator.util.exif.ExifUtils;
+import net.coobird.thumbnailator.util.exif.Orientation;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * Image Decoder
+ *
+ * Purpose: Decodes only the pixels an operation needs, instead of always
+ * materialising the full-resolution raster
+ *
+ * How it works:
+ * - The header is read first, so the size is known before any pixel is decoded
+ * - For a resize the reader skips rows and columns (source subsampling) while
+ *   still decoding at least OVERSAMPLE times the target size, leaving the final
+ *   high-quality downscale to Thumbnailator
+ * - For a crop only the source region is decoded
+ * - A 48MP photo resized to 200px decodes a ~400x300 raster instead of ~190MB
+ */
+final class ImageDecoder {
+
+    /**
+     * How much larger than the target the subsampled decode stays. Subsampling
+     * is point sampling, so the extra resolution is what the final filtered
+     * downscale smooths over.
+     */
+    static final int OVERSAMPLE = 2;
+
+    private ImageDecoder() {
+    }
+
+    record Decoded(BufferedImage image, String format) {
+    }
+
+    /**
+     * Decode the whole image at full resolution.
+     */
+    static Decoded read(MultipartFile file) {
+        return decode(file, false, (reader, param) -> {
+        });
+    }
+
+    /**
+     * Decode at a reduced resolution that is still large enough to fit
+     * boxWidth x boxHeight (aspect ratio kept) without upscaling. When
+     * useExifOrientation is set the image is returned upright, and the box
+     * refers to the upright image.
+     */
+    static Decoded readForSize(MultipartFile file, int boxWidth, int boxHeight, boolean useExifOrientation) {
+        return decode(file, useExifOrientation, (reader, param) -> {
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            if (useExifOrientation && isTransposed(orientation(reader))) {
+                width = reader.getHeight(0);
+                height = reader.getWidth(0);
+            }
+            int factor = subsampling(width, height, boxWidth, boxHeight);
+            if (factor > 1) {
+                param.setSourceSubsampling(factor, factor, 0, 0);
+            }
+        });
+    }
+
+    /**
+     * Decode only the given region, clipped to the image, reduced towards
+     * targetWidth x targetHeight.
+     */
+    static Decoded readRegion(MultipartFile file, int x, int y, int width, int height,
+                              int targetWidth, int targetHeight) {
+        return decode(file, false, (reader, param) -> {
+            Rectangle region = clip(x, y, width, height, reader.getWidth(0), reader.getHeight(0));
+            param.setSourceRegion(region);
+            int factor = subsampling(region.width, region.height, targetWidth, targetHeight);
+            if (factor > 1) {
+                param.setSourceSubsampling(factor, factor, 0, 0);
+            }
+        });
+    }
+
+    /**
+     * The part of the requested region that lies inside a width x height image.
+     */
+    static Rectangle clip(int x, int y, int width, int height, int imageWidth, int imageHeight) {
+        Rectangle region = new Rectangle(x, y, width, height)
+                .intersection(new Rectangle(imageWidth, imageHeight));
+        if (region.isEmpty()) {
+            throw new InvalidFileException("Crop region lies outside the "
+                    + imageWidth + "x" + imageHeight + " image");
+        }
+        return region;
+    }
+
+    /**
+     * Largest factor that keeps the decoded image at least OVERSAMPLE times
+     * the size it will be scaled to.
+     */
+    static int subsampling(int width, int height, int boxWidth, int boxHeight) {
+        double reduction = Math.max((double) width / boxWidth, (double) height / boxHeight);
+        return Math.max(1, (int) Math.floor(reduction / OVERSAMPLE));
+    }
+
+    @FunctionalInterface
+    private interface ParamCustomizer {
+        void customize(ImageReader reader, ImageReadParam param) throws IOException;
+    }
+
+    private static Decoded decode(MultipartFile file, boolean useExifOrientation, ParamCustomizer customizer) {
+        try (InputStream inputStream = file.getInputStream();
+             ImageInputStream imageStream = ImageIO.createImageInputStream(inputStream)) {
+            Iterator<ImageReader> readers = imageStream != null ? ImageIO.getImageReaders(imageStream) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new InvalidFileException("Unsupported or corrupt image");
+            }
+            ImageReader reader = readers.next();
+            try {
+                // Metadata is only parsed when the EXIF orientation is needed
+                reader.setInput(imageStream, false, !useExifOrientation);
+                ImageReadParam param = reader.getDefaultReadParam();
+                customizer.customize(reader, param);
+                BufferedImage image = reader.read(0, param);
+                if (useExifOrientation) {
+                    Orientation orientation = orientation(reader);
+                    if (orientation != Orientation.TOP_LEFT) {
+                        image = ExifFilterUtils.getFilterForOrientation(orientation).apply(image);
+                    }
+                }
+                return new Decoded(image, reader.getFormatName().toLowerCase(Locale.ROOT));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            throw new ProcessingException("Failed to read image", e);
+        }
+    }
+
+    /**
+     * EXIF orientation of a JPEG; other formats are taken as stored.
+     */
+    static Orientation orientation(ImageReader reader) throws IOException {
+        if (!"jpeg".equalsIgnoreCase(reader.getFormatName())) {
+            return Orientation.TOP_LEFT;
+        }
+        Orientation orientation = ExifUtils.getExifOrientation(reader, 0);
+        return orientation != null ? orientation : Orientation.TOP_LEFT;
+    }
+
+    private static boolean isTransposed(Orientation orientation) {
+        return orientation == Orientation.LEFT_TOP || orientation == Orientation.RIGHT_TOP
+                || orientation == Orientation.RIGHT_BOTTOM || orientation == Orientation.LEFT_BOTTOM;
+    }
+}
@@ -0,0 +1,382 @@
+package com.docprocessor.service.image;
+
+import com.docprocessor.dto.ImageOperation;
+import com.docprocessor.exception.InvalidFileException;
+import com.docprocessor.exception.ProcessingException;
+import jakarta.annotation.PreDestroy;
+import net.coobird.thumbnailator.Thumbnails;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Image Batch Pipeline
+ *
+ * Purpose: Runs an ordered chain of operations over many images, decoding and
+ * encoding each image only once
+ *
+ * How it works:
+ * - The chain is checked up front; resize, crop and rotate become in-memory
+ *   steps on the decoded image, while compress and convert only set the
+ *   quality and format of the single final encode
+ * - A leading resize or crop is folded into the decode (ImageDecoder), so
+ *   pixels the chain would throw away are never decoded
+ * - Images are processed in parallel on a shared pool; each batch keeps at
+ *   most one image per worker in flight, so memory stays bounded by the
+ *   pool size rather than the batch size
+ * - Results are handed to the sink on the calling thread as they finish, in
+ *   completion order; a slow sink holds back the next image
+ * - A failing image is reported to the sink with its error and the rest of
+ *   the batch carries on
+ */
+@Component
+public class ImagePipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImagePipeline.class);
+    private static final String TEMP_DIR = "./temp/";
+
+    /**
+     * Receives each finished image, on the thread that called process().
+     */
+    @FunctionalInterface
+    public interface ResultSink {
+        void accept(Result result) throws IOException;
+    }
+
+    /**
+     * Outcome for one input: either the encoded file or an error message.
+     */
+    public record Result(int index, String originalFilename, File file, String error) {
+    }
+
+    /**
+     * A validated operation chain, ready to apply to decoded images.
+     */
+    public static final class Chain {
+        private final List<Function<BufferedImage, BufferedImage>> steps;
+        private final ImageOperation first;
+        private final String format;
+        private final Float quality;
+        private final String description;
+
+        private Chain(List<Function<BufferedImage, BufferedImage>> steps, ImageOperation first, String format,
+                      Float quality, String description) {
+            this.steps = steps;
+            this.first = first;
+            this.format = format;
+            this.quality = quality;
+            this.description = description;
+        }
+
+        /**
+         * Canonical form of the chain, usable as a cache key parameter.
+         */
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private final ExecutorService pool;
+    private final int threads;
+    private final int maxFiles;
+    private final int maxOperations;
+
+    public ImagePipeline(@Value("${image.batch.threads}") int threads,
+                         @Value("${image.batch.max.files}") int maxFiles,
+                         @Value("${image.batch.max.operations}") int maxOperations) {
+        this.threads = Math.max(1, threads);
+        this.pool = Executors.newFixedThreadPool(this.threads, new CustomizableThreadFactory("image-batch-"));
+        this.maxFiles = maxFiles;
+        this.maxOperations = maxOperations;
+    }
+
+    /**
+     * Validate the batch size and the operation chain before any work starts.
+     */
+    public Chain compile(int fileCount, List<ImageOperation> operations) {
+        if (fileCount == 0 || fileCount > maxFiles) {
+            throw new InvalidFileException("A batch must contain between 1 and " + maxFiles + " images");
+        }
+        if (operations == null || operations.isEmpty() || operations.size() > maxOperations) {
+            throw new InvalidFileException("An operation chain must contain between 1 and "
+                    + maxOperations + " operations");
+        }
+
+        List<Function<BufferedImage, BufferedImage>> steps = new ArrayList<>();
+        StringBuilder description = new StringBuilder();
+        String format = null;
+        Float quality = null;
+        for (ImageOperation operation : operations) {
+            String type = operation.getType() != null ? operation.getType().toLowerCase(Locale.ROOT) : "";
+            switch (type) {
+                case "resize" -> {
+                    int width = positive(operation.getWidth(), "resize width");
+                    int height = positive(operation.getHeight(), "resize height");
+                    steps.add(image -> resize(image, width, height));
+                    description.append("resize:").append(width).append('x').append(height);
+                }
+                case "crop" -> {
+                    int x = nonNegative(operation.getX(), "crop x");
+                    int y = nonNegative(operation.getY(), "crop y");
+                    int width = positive(operation.getWidth(), "crop width");
+                    int height = positive(operation.getHeight(), "crop height");
+                    steps.add(image -> crop(image, x, y, width, height));
+                    description.append("crop:").append(x).append(',').append(y).append(',')
+                            .append(width).append('x').append(height);
+                }
+                case "rotate" -> {
+                    if (operation.getAngle() == null) {
+                        throw new InvalidFileException("rotate requires an angle");
+                    }
+                    double angle = operation.getAngle();
+                    steps.add(image -> rotate(image, angle));
+                    description.append("rotate:").append(angle);
+                }
+                case "compress" -> {
+                    Float value = operation.getQuality();
+                    if (value == null || value <= 0 || value > 1) {
+                        throw new InvalidFileException("compress requires a quality between 0 and 1");
+                    }
+                    quality = value;
+                    description.append("compress:").append(value);
+                }
+                case "convert" -> {
+                    String value = operation.getFormat() != null ? operation.getFormat().toLowerCase(Locale.ROOT) : "";
+                    if (!ImageIO.getImageWritersByFormatName(value).hasNext()) {
+                        throw new InvalidFileException("Unsupported target format: " + operation.getFormat());
+                    }
+                    format = value;
+                    description.append("convert:").append(value);
+                }
+                default -> throw new InvalidFileException("Unknown image operation: " + operation.getType());
+            }
+            description.append(';');
+        }
+        return new Chain(List.copyOf(steps), operations.get(0), format, quality, description.toString());
+    }
+
+    /**
+     * Apply the chain to every file, passing each result to the sink as soon
+     * as it is ready. Returns once every image has been reported; if the sink
+     * fails (e.g. the client went away) the remaining images are dropped.
+     */
+    public void process(List<MultipartFile> files, Function<MultipartFile, File> apply, ResultSink sink)
+            throws IOException {
+        CompletionService<Result> completion = new ExecutorCompletionService<>(pool);
+        int window = Math.min(threads, files.size());
+        int submitted = 0;
+        int finished = 0;
+        try {
+            while (finished < files.size()) {
+                while (submitted < files.size() && submitted - finished < window) {
+                    int index = submitted++;
+                    MultipartFile file = files.get(index);
+                    completion.submit(() -> run(index, file, apply));
+                }
+                Result result = take(completion);
+                finished++;
+                try {
+                    sink.accept(result);
+                } catch (IOException | RuntimeException e) {
+                    // Taken but never delivered
+                    if (result.file() != null) {
+                        result.file().delete();
+                    }
+                    throw e;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Let the images still in flight finish, then discard their output
+            for (; finished < submitted; finished++) {
+                Result abandoned = takeQuietly(completion);
+                if (abandoned != null && abandoned.file() != null) {
+                    abandoned.file().delete();
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Decode the file once, run every step of the chain on the decoded image
+     * and encode the result once into the temp directory.
+     */
+    public File apply(MultipartFile file, Chain chain) {
+        ImageDecoder.Decoded decoded = decode(file, chain);
+        BufferedImage image = decoded.image();
+        List<Function<BufferedImage, BufferedImage>> steps = chain.steps;
+        if ("crop".equalsIgnoreCase(chain.first.getType())) {
+            // The leading crop was already applied while decoding
+            steps = steps.subList(1, steps.size());
+        }
+        for (Function<BufferedImage, BufferedImage> step : steps) {
+            image = step.apply(image);
+        }
+
+        String format = chain.format != null ? chain.format : decoded.format();
+        if (!ImageIO.getImageWritersByFormatName(format).hasNext()) {
+            // Write back in the source format when possible, PNG otherwise
+            format = "png";
+        }
+        File outputFile = new File(TEMP_DIR + "batch_" + UUID.randomUUID() + "." + format);
+        try {
+            encode(image, format, chain.quality, outputFile);
+        } catch (IOException | RuntimeException e) {
+            outputFile.delete();
+            throw new ProcessingException("Failed to encode image as " + format, e);
+        }
+        return outputFile;
+    }
+
+    private Result run(int index, MultipartFile file, Function<MultipartFile, File> apply) {
+        try {
+            return new Result(index, file.getOriginalFilename(), apply.apply(file), null);
+        } catch (InvalidFileException | ProcessingException e) {
+            return new Result(index, file.getOriginalFilename(), null, e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Batch image {} failed", index, e);
+            return new Result(index, file.getOriginalFilename(), null, "Failed to process image");
+        }
+    }
+
+    /**
+     * A leading resize or crop lets the decoder skip pixels the chain would
+     * throw away anyway.
+     */
+    private static ImageDecoder.Decoded decode(MultipartFile file, Chain chain) {
+        ImageOperation first = chain.first;
+        return switch (first.getType().toLowerCase(Locale.ROOT)) {
+            case "resize" -> ImageDecoder.readForSize(file, first.getWidth(), first.getHeight(), true);
+            case "crop" -> ImageDecoder.readRegion(file, first.getX(), first.getY(), first.getWidth(),
+                    first.getHeight(), first.getWidth(), first.getHeight());
+            default -> ImageDecoder.read(file);
+        };
+    }
+
+    private static void encode(BufferedImage image, String format, Float quality, File outputFile)
+            throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(outputFile)) {
+            if (!writer.getOriginatingProvider().canEncodeImage(ImageTypeSpecifier.createFromRenderedImage(image))) {
+                // e.g. a PNG with alpha going to JPEG
+                image = flatten(image);
+            }
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (quality != null && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionType() == null && param.getCompressionTypes() != null) {
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                }
+                param.setCompressionQuality(quality);
+            }
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static BufferedImage flatten(BufferedImage image) {
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = rgb.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return rgb;
+    }
+
+    private static BufferedImage resize(BufferedImage image, int width, int height) {
+        try {
+            return Thumbnails.of(image).size(width, height).asBufferedImage();
+        } catch (IOException e) {
+            throw new ProcessingException("Failed to resize image", e);
+        }
+    }
+
+    private static BufferedImage crop(BufferedImage image, int x, int y, int width, int height) {
+        Rectangle region = ImageDecoder.clip(x, y, width, height, image.getWidth(), image.getHeight());
+        // Shares the pixels with the source; no copy until the next step or the encode
+        return image.getSubimage(region.x, region.y, region.width, region.height);
+    }
+
+    private static BufferedImage rotate(BufferedImage image, double angle) {
+        try {
+            return Thumbnails.of(image).scale(1.0).rotate(angle).asBufferedImage();
+        } catch (IOException e) {
+            throw new ProcessingException("Failed to rotate image", e);
+        }
+    }
+
+    private static int positive(Integer value, String name) {
+        if (value == null || value <= 0) {
+            throw new InvalidFileException(name + " must be a positive number");
+        }
+        return value;
+    }
+
+    private static int nonNegative(Integer value, String name) {
+        if (value == null || value < 0) {
+            throw new InvalidFileException(name + " must not be negative");
+        }
+        return value;
+    }
+
+    private static Result take(CompletionService<Result> completion) throws IOException {
+        try {
+            return completion.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while processing batch", e);
+        } catch (ExecutionException e) {
+            throw new ProcessingException("Batch worker failed", e.getCause());
+        }
+    }
+
+    private static Result takeQuietly(CompletionService<Result> completion) {
+        try {
+            Future<Result> future = completion.take();
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -3,6 +3,8 @@ package com.docprocessor.service.image;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.List;
 
 public interface ImageService {
     File resizeImage(MultipartFile file, int width, int height);
@@ -10,4 +12,11 @@ public interface ImageService {
     File rotateImage(MultipartFile file, double angle);
     File convertFormat(MultipartFile file, String targetFormat);
     File compressImage(MultipartFile file, float quality);
+
+    /**
+     * Run a compiled operation chain over every file, reporting each result
+     * to the sink as soon as it is ready.
+     */
+    void processBatch(List<MultipartFile> files, ImagePipeline.Chain chain, ImagePipeline.ResultSink sink)
+            throws IOException;
 }
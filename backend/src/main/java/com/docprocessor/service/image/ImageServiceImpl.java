@@ -1,5 +1,7 @@
 package com.docprocessor.service.image;
 
+import com.docprocessor.cache.CacheKey;
+import com.docprocessor.cache.ResultCache;
 import com.docprocessor.exception.ProcessingException;
 import net.coobird.thumbnailator.Thumbnails;
 import net.coobird.thumbnailator.geometry.Positions;
@@ -12,6 +14,7 @@ import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -20,12 +23,36 @@ public class ImageServiceImpl implements ImageService {
     private static final Logger logger = LoggerFactory.getLogger(ImageServiceImpl.class);
     private static final String TEMP_DIR = "./temp/";
 
+    private final ResultCache resultCache;
+    private final ImagePipeline imagePipeline;
+    private final TiledImageProcessor tiledImageProcessor;
+
+    public ImageServiceImpl(ResultCache resultCache, ImagePipeline imagePipeline,
+                            TiledImageProcessor tiledImageProcessor) {
+        this.resultCache = resultCache;
+        this.imagePipeline = imagePipeline;
+        this.tiledImageProcessor = tiledImageProcessor;
+    }
+
     @Override
     public File resizeImage(MultipartFile file, int width, int height) {
+        CacheKey key = CacheKey.builder("image.resize")
+                .input(file)
+                .param("extension", getExtension(file))
+                .param("width", width)
+                .param("height", height)
+                .build();
+        return resultCache.getOrCompute(key, () -> List.of(resize(file, width, height))).get(0);
+    }
+
+    private File resize(MultipartFile file, int width, int height) {
         try {
             File outputFile = new File(TEMP_DIR + "resized_" + UUID.randomUUID() + getExtension(file));
 
-            Thumbnails.of(file.getInputStream())
+            // Decode at reduced resolution, then finish with Thumbnailator's filtered downscale
+            BufferedImage source = ImageDecoder.readForSize(file, width, height, true).image();
+
+            Thumbnails.of(source)
                     .size(width, height)
                     .toFile(outputFile);
 
@@ -38,13 +65,25 @@ public class ImageServiceImpl implements ImageService {
 
     @Override
     public File cropImage(MultipartFile file, int x, int y, int width, int height) {
+        CacheKey key = CacheKey.builder("image.crop")
+                .input(file)
+                .param("extension", getExtension(file))
+                .param("x", x)
+                .param("y", y)
+                .param("width", width)
+                .param("height", height)
+                .build();
+        return resultCache.getOrCompute(key, () -> List.of(crop(file, x, y, width, height))).get(0);
+    }
+
+    private File crop(MultipartFile file, int x, int y, int width, int height) {
         try {
             File outputFile = new File(TEMP_DIR + "cropped_" + UUID.randomUUID() + getExtension(file));
 
-            BufferedImage originalImage = ImageIO.read(file.getInputStream());
+            // Only the requested region is decoded
+            BufferedImage region = ImageDecoder.readRegion(file, x, y, width, height, width, height).image();
 
-            Thumbnails.of(originalImage)
-                    .sourceRegion(x, y, width, height)
+            Thumbnails.of(region)
                     .size(width, height)
                     .toFile(outputFile);
 
@@ -57,13 +96,25 @@ public class ImageServiceImpl implements ImageService {
 
     @Override
     public File rotateImage(MultipartFile file, double angle) {
+        CacheKey key = CacheKey.builder("image.rotate")
+                .input(file)
+                .param("extension", getExtension(file))
+                .param("angle", angle)
+                .build();
+        return resultCache.getOrCompute(key, () -> List.of(rotate(file, angle))).get(0);
+    }
+
+    private File rotate(MultipartFile file, double angle) {
         try {
             File outputFile = new File(TEMP_DIR + "rotated_" + UUID.randomUUID() + getExtension(file));
-
-            Thumbnails.of(file.getInputStream())
-                    .scale(1.0)
-                    .rotate(angle)
-                    .toFile(outputFile);
+            if (tiledImageProcessor.shouldTile(file)) {
+                tiledImageProcessor.rotate(file, angle, getFormat(file), outputFile);
+            } else {
+                Thumbnails.of(file.getInputStream())
+                        .scale(1.0)
+                        .rotate(angle)
+                        .toFile(outputFile);
+            }
 
             logger.info("Image rotated by {} degrees", angle);
             return outputFile;
@@ -74,12 +125,23 @@ public class ImageServiceImpl implements ImageService {
 
     @Override
     public File convertFormat(MultipartFile file, String targetFormat) {
+        CacheKey key = CacheKey.builder("image.convert")
+                .input(file)
+                .param("format", targetFormat.toLowerCase())
+                .build();
+        return resultCache.getOrCompute(key, () -> List.of(convert(file, targetFormat))).get(0);
+    }
+
+    private File convert(MultipartFile file, String targetFormat) {
         try {
             String extension = "." + targetFormat.toLowerCase();
             File outputFile = new File(TEMP_DIR + "converted_" + UUID.randomUUID() + extension);
-
-            BufferedImage image = ImageIO.read(file.getInputStream());
-            ImageIO.write(image, targetFormat, outputFile);
+            if (tiledImageProcessor.shouldTile(file)) {
+                tiledImageProcessor.convert(file, targetFormat.toLowerCase(), outputFile);
+            } else {
+                BufferedImage image = ImageIO.read(file.getInputStream());
+                ImageIO.write(image, targetFormat, outputFile);
+            }
 
             logger.info("Image converted to {}", targetFormat);
             return outputFile;
@@ -90,13 +152,25 @@ public class ImageServiceImpl implements ImageService {
 
     @Override
     public File compressImage(MultipartFile file, float quality) {
+        CacheKey key = CacheKey.builder("image.compress")
+                .input(file)
+                .param("extension", getExtension(file))
+                .param("quality", quality)
+                .build();
+        return resultCache.getOrCompute(key, () -> List.of(compress(file, quality))).get(0);
+    }
+
+    private File compress(MultipartFile file, float quality) {
         try {
             File outputFile = new File(TEMP_DIR + "compressed_" + UUID.randomUUID() + getExtension(file));
-
-            Thumbnails.of(file.getInputStream())
-                    .scale(1.0)
-                    .outputQuality(quality)
-                    .toFile(outputFile);
+            if (tiledImageProcessor.shouldTile(file)) {
+                tiledImageProcessor.compress(file, quality, getFormat(file), outputFile);
+            } else {
+                Thumbnails.of(file.getInputStream())
+                        .scale(1.0)
+                        .outputQuality(quality)
+                        .toFile(outputFile);
+            }
 
             logger.info("Image compressed with quality {}", quality);
             return outputFile;
@@ -105,6 +179,23 @@ public class ImageServiceImpl implements ImageService {
         }
     }
 
+    @Override
+    public void processBatch(List<MultipartFile> files, ImagePipeline.Chain chain, ImagePipeline.ResultSink sink)
+            throws IOException {
+        imagePipeline.process(files, file -> {
+            CacheKey key = CacheKey.builder("image.batch")
+                    .input(file)
+                    .param("operations", chain.getDescription())
+                    .build();
+            return resultCache.getOrCompute(key, () -> List.of(imagePipeline.apply(file, chain))).get(0);
+        }, sink);
+        logger.info("Processed batch of {} images", files.size());
+    }
+
+    private String getFormat(MultipartFile file) {
+        return getExtension(file).substring(1).toLowerCase();
+    }
+
     private String getExtension(MultipartFile file) {
         String originalFilename = file.getOriginalFilename();
         if (originalFilename != null && originalFilename.contains(".")) {
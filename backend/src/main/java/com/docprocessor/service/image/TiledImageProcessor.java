@@ -0,0 +1,435 @@
+package com.docprocessor.service.image;
+
+import com.docprocessor.exception.InvalidFileException;
+import com.docprocessor.exception.ProcessingException;
+import net.coobird.thumbnailator.util.exif.Orientation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+
+/**
+ * Tiled Image Processor
+ *
+ * Purpose: Rotates, converts and compresses images too large to hold as one
+ * in-memory BufferedImage, so a single huge upload cannot exhaust the heap
+ *
+ * How it works:
+ * - Images whose decoded raster would exceed image.tile.threshold.bytes take
+ *   this path; smaller ones keep using the in-memory operations
+ * - Pixels are decoded into a DiskTiledImage: square tiles spilled to a
+ *   scratch file, with only about one row of tiles in memory
+ * - Readers decode straight into the tiles in a single pass: 8-bit gray or
+ *   RGB(A) as is, other layouts (indexed, 16-bit) converted pixel by pixel as
+ *   they are written. Only readers that insist on an array-backed raster are
+ *   read in horizontal bands through source regions
+ * - Rotation is done one output tile at a time, from the small source
+ *   region that maps onto it; like the in-memory path, rotate and compress
+ *   first turn JPEGs upright according to their EXIF orientation
+ * - The result is encoded from the tiled image by the regular ImageWriter,
+ *   which pulls it row by row (or tile by tile for formats that support
+ *   tiling, such as TIFF)
+ * - Output is never progressive/interlaced: the JPEG encoder would buffer
+ *   the whole image for that, and PNG interlacing reads every row seven times
+ */
+@Component
+public class TiledImageProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(TiledImageProcessor.class);
+
+    private final long thresholdBytes;
+    private final int tileSize;
+    private final Path scratchDirectory;
+
+    public TiledImageProcessor(@Value("${image.tile.threshold.bytes}") long thresholdBytes,
+                               @Value("${image.tile.size}") int tileSize,
+                               @Value("${storage.temp.location}") String tempStorageLocation) {
+        this.thresholdBytes = thresholdBytes;
+        this.tileSize = tileSize;
+        this.scratchDirectory = Paths.get(tempStorageLocation).toAbsolutePath();
+    }
+
+    /**
+     * Whether the decoded image would be larger than the threshold. Only the
+     * header is read.
+     */
+    public boolean shouldTile(MultipartFile file) {
+        if (thresholdBytes <= 0) {
+            return false;
+        }
+        try (InputStream inputStream = file.getInputStream();
+             ImageInputStream imageStream = ImageIO.createImageInputStream(inputStream)) {
+            ImageReader reader = reader(imageStream);
+            try {
+                reader.setInput(imageStream, true, true);
+                return (long) reader.getWidth(0) * reader.getHeight(0) * Integer.BYTES > thresholdBytes;
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | InvalidFileException e) {
+            // Let the regular path report unreadable images
+            return false;
+        }
+    }
+
+    public void rotate(MultipartFile file, double angle, String format, File outputFile) {
+        process(file, format, null, true, outputFile,
+                (source, orientation) -> rotate(source, orientation, angle, canEncodeAlpha(format)));
+    }
+
+    public void convert(MultipartFile file, String format, File outputFile) {
+        process(file, format, null, false, outputFile, (source, orientation) -> source);
+    }
+
+    public void compress(MultipartFile file, float quality, String format, File outputFile) {
+        process(file, format, quality, true, outputFile, (source, orientation) -> orientation == Orientation.TOP_LEFT
+                ? source : rotate(source, orientation, 0, canEncodeAlpha(format)));
+    }
+
+    @FunctionalInterface
+    private interface TileTransform {
+        DiskTiledImage apply(DiskTiledImage source, Orientation orientation) throws IOException;
+    }
+
+    private record Decoded(DiskTiledImage image, Orientation orientation) {
+    }
+
+    private void process(MultipartFile file, String format, Float quality, boolean useExifOrientation,
+                         File outputFile, TileTransform transform) {
+        DiskTiledImage source = null;
+        DiskTiledImage result = null;
+        try {
+            Decoded decoded = decode(file, useExifOrientation);
+            source = decoded.image();
+            result = transform.apply(source, decoded.orientation());
+            if (result.hasAlpha() && !canEncodeAlpha(format)) {
+                // e.g. a PNG with alpha going to JPEG
+                DiskTiledImage flat = flatten(result);
+                if (result != source) {
+                    result.close();
+                }
+                result = flat;
+            }
+            encode(result, format, quality, outputFile);
+            logger.info("Processed {}x{} image in {}px tiles", source.width(), source.height(), tileSize);
+        } catch (IOException | UncheckedIOException e) {
+            outputFile.delete();
+            throw new ProcessingException("Failed to process large image", e);
+        } finally {
+            closeQuietly(result != source ? result : null);
+            closeQuietly(source);
+        }
+    }
+
+    private Decoded decode(MultipartFile file, boolean useExifOrientation) throws IOException {
+        try (InputStream inputStream = file.getInputStream();
+             ImageInputStream imageStream = ImageIO.createImageInputStream(inputStream)) {
+            ImageReader reader = reader(imageStream);
+            try {
+                // Not seek-forward-only: the band fallback reads the image more than once.
+                // Metadata is only parsed when the EXIF orientation is needed
+                reader.setInput(imageStream, false, !useExifOrientation);
+                Orientation orientation = useExifOrientation
+                        ? ImageDecoder.orientation(reader) : Orientation.TOP_LEFT;
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                ImageTypeSpecifier type = reader.getRawImageType(0) != null
+                        ? reader.getRawImageType(0) : reader.getImageTypes(0).next();
+                boolean alpha = type.getColorModel().hasAlpha();
+                DiskTiledImage image = new DiskTiledImage(width, height, alpha, tileSize, scratchDirectory);
+                try {
+                    BufferedImage destination = destination(reader, image);
+                    if (destination == null) {
+                        readBands(reader, image);
+                    } else if (!readInto(reader, destination)) {
+                        // Start over: the failed read leaves the reader set up for the view
+                        imageStream.seek(0);
+                        reader.setInput(imageStream, false, true);
+                        readBands(reader, image);
+                    }
+                    return new Decoded(image, orientation);
+                } catch (IOException | RuntimeException e) {
+                    image.close();
+                    throw e;
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * A view of the tiled image the reader can decode into directly: packed
+     * INT_RGB/INT_ARGB or 8-bit gray/RGB(A) components if the reader offers
+     * one of those, otherwise its own layout converted pixel by pixel.
+     */
+    private static BufferedImage destination(ImageReader reader, DiskTiledImage image) throws IOException {
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        BufferedImage converted = null;
+        while (types.hasNext()) {
+            ImageTypeSpecifier type = types.next();
+            if (type.getColorModel().hasAlpha() != image.hasAlpha()) {
+                continue;
+            }
+            int bufferedImageType = type.getBufferedImageType();
+            if (bufferedImageType == BufferedImage.TYPE_INT_RGB || bufferedImageType == BufferedImage.TYPE_INT_ARGB) {
+                return image.image();
+            }
+            BufferedImage view = image.componentView(type.getColorModel());
+            if (view != null) {
+                return view;
+            }
+            if (converted == null) {
+                converted = image.convertedView(type.getColorModel());
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * Decode the whole image into destination in one pass, the reader writing
+     * each decoded row straight into the tiles.
+     *
+     * @return false if the reader cannot write into the view
+     */
+    private static boolean readInto(ImageReader reader, BufferedImage destination) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setDestination(destination);
+        try {
+            reader.read(0, param);
+            return true;
+        } catch (ClassCastException e) {
+            // Readers such as BMP and TIFF write into the raster's backing array
+            logger.debug("{} reader needs an array-backed raster, reading in bands", reader.getFormatName());
+            return false;
+        }
+    }
+
+    /**
+     * Fallback for readers that need an array-backed raster: decode one band
+     * of rows at a time and convert it to packed pixels. Those readers seek
+     * to the rows of a source region rather than decoding everything above
+     * it, so this costs little more than a single pass.
+     */
+    private void readBands(ImageReader reader, DiskTiledImage image) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        int width = image.width();
+        for (int y = 0; y < image.height(); y += tileSize) {
+            int rows = Math.min(tileSize, image.height() - y);
+            param.setSourceRegion(new Rectangle(0, y, width, rows));
+            BufferedImage band = reader.read(0, param);
+            int[] pixels = band.getRGB(0, 0, width, rows, null, 0, width);
+            image.image().getRaster().setDataElements(0, y, width, rows, pixels);
+        }
+    }
+
+    /**
+     * Turn the image upright according to its EXIF orientation, then rotate
+     * it around the centre onto a canvas that fits the whole result, the same
+     * geometry as Thumbnailator's rotate. Both happen in the same pass.
+     */
+    private DiskTiledImage rotate(DiskTiledImage source, Orientation orientation, double angle,
+                                  boolean alphaOutput) throws IOException {
+        AffineTransform upright = upright(orientation, source.width(), source.height());
+        boolean transposed = upright.getScaleX() == 0;
+        int uprightWidth = transposed ? source.height() : source.width();
+        int uprightHeight = transposed ? source.width() : source.height();
+
+        double radians = Math.toRadians(angle);
+        double sin = Math.abs(Math.sin(radians));
+        double cos = Math.abs(Math.cos(radians));
+        int width = (int) Math.round(uprightWidth * cos + uprightHeight * sin);
+        int height = (int) Math.round(uprightWidth * sin + uprightHeight * cos);
+
+        AffineTransform transform = new AffineTransform();
+        transform.translate(width / 2.0, height / 2.0);
+        transform.rotate(radians);
+        transform.translate(-uprightWidth / 2.0, -uprightHeight / 2.0);
+        transform.concatenate(upright);
+        AffineTransform inverse;
+        try {
+            inverse = transform.createInverse();
+        } catch (NoninvertibleTransformException e) {
+            throw new IllegalStateException(e);
+        }
+        boolean rightAngle = angle % 90 == 0;
+        // Uncovered corners are transparent where the format allows it, white otherwise
+        boolean alpha = alphaOutput && (source.hasAlpha() || !rightAngle);
+
+        DiskTiledImage target = new DiskTiledImage(width, height, alpha, tileSize, scratchDirectory);
+        try {
+            Rectangle bounds = new Rectangle(source.width(), source.height());
+            for (int tileY = 0; tileY < height; tileY += tileSize) {
+                for (int tileX = 0; tileX < width; tileX += tileSize) {
+                    int tileWidth = Math.min(tileSize, width - tileX);
+                    int tileHeight = Math.min(tileSize, height - tileY);
+                    BufferedImage tile = new BufferedImage(tileWidth, tileHeight,
+                            alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+                    Graphics2D graphics = tile.createGraphics();
+                    try {
+                        if (!alpha) {
+                            graphics.setColor(Color.WHITE);
+                            graphics.fillRect(0, 0, tileWidth, tileHeight);
+                        }
+                        // One pixel of margin for the interpolation neighbours
+                        Rectangle2D mapped = inverse.createTransformedShape(
+                                new Rectangle(tileX, tileY, tileWidth, tileHeight)).getBounds2D();
+                        Rectangle region = new Rectangle(
+                                (int) Math.floor(mapped.getMinX()) - 1, (int) Math.floor(mapped.getMinY()) - 1,
+                                (int) Math.ceil(mapped.getWidth()) + 3, (int) Math.ceil(mapped.getHeight()) + 3)
+                                .intersection(bounds);
+                        if (!region.isEmpty()) {
+                            BufferedImage chunk = source.copyRegion(region.x, region.y, region.width, region.height);
+                            AffineTransform placement = AffineTransform.getTranslateInstance(-tileX, -tileY);
+                            placement.concatenate(transform);
+                            placement.translate(region.x, region.y);
+                            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, rightAngle
+                                    ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+                                    : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                            graphics.drawImage(chunk, placement, null);
+                        }
+                    } finally {
+                        graphics.dispose();
+                    }
+                    target.writeRegion(tileX, tileY, tile);
+                }
+            }
+            return target;
+        } catch (RuntimeException e) {
+            target.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The flip or quarter turn that makes a width x height image stored with
+     * the given EXIF orientation upright, as Thumbnailator's ExifFilterUtils
+     * would apply it.
+     */
+    private static AffineTransform upright(Orientation orientation, int width, int height) {
+        return switch (orientation) {
+            case TOP_RIGHT -> new AffineTransform(-1, 0, 0, 1, width, 0);
+            case BOTTOM_RIGHT -> new AffineTransform(-1, 0, 0, -1, width, height);
+            case BOTTOM_LEFT -> new AffineTransform(1, 0, 0, -1, 0, height);
+            case LEFT_TOP -> new AffineTransform(0, 1, 1, 0, 0, 0);
+            case RIGHT_TOP -> new AffineTransform(0, 1, -1, 0, height, 0);
+            case RIGHT_BOTTOM -> new AffineTransform(0, -1, -1, 0, height, width);
+            case LEFT_BOTTOM -> new AffineTransform(0, -1, 1, 0, 0, width);
+            default -> new AffineTransform();
+        };
+    }
+
+    /**
+     * Composite an ARGB image onto white, one band of tiles at a time.
+     */
+    private DiskTiledImage flatten(DiskTiledImage source) throws IOException {
+        DiskTiledImage target = new DiskTiledImage(source.width(), source.height(), false, tileSize,
+                scratchDirectory);
+        try {
+            for (int y = 0; y < source.height(); y += tileSize) {
+                for (int x = 0; x < source.width(); x += tileSize) {
+                    int tileWidth = Math.min(tileSize, source.width() - x);
+                    int tileHeight = Math.min(tileSize, source.height() - y);
+                    BufferedImage tile = new BufferedImage(tileWidth, tileHeight, BufferedImage.TYPE_INT_RGB);
+                    Graphics2D graphics = tile.createGraphics();
+                    try {
+                        graphics.setColor(Color.WHITE);
+                        graphics.fillRect(0, 0, tileWidth, tileHeight);
+                        graphics.drawImage(source.copyRegion(x, y, tileWidth, tileHeight), 0, 0, null);
+                    } finally {
+                        graphics.dispose();
+                    }
+                    target.writeRegion(x, y, tile);
+                }
+            }
+            return target;
+        } catch (RuntimeException e) {
+            target.close();
+            throw e;
+        }
+    }
+
+    private void encode(DiskTiledImage image, String format, Float quality, File outputFile) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new InvalidFileException("Unsupported target format: " + format);
+        }
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(outputFile)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteProgressive()) {
+                param.setProgressiveMode(ImageWriteParam.MODE_DISABLED);
+            }
+            if (param.canWriteTiles()) {
+                param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setTiling(tileSize, tileSize, 0, 0);
+            }
+            if (quality != null && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionType() == null && param.getCompressionTypes() != null) {
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                }
+                param.setCompressionQuality(quality);
+            }
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image.image(), null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static boolean canEncodeAlpha(String format) {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            return false;
+        }
+        ImageTypeSpecifier argb = ImageTypeSpecifier.createFromBufferedImageType(BufferedImage.TYPE_INT_ARGB);
+        return writers.next().getOriginatingProvider().canEncodeImage(argb);
+    }
+
+    private static ImageReader reader(ImageInputStream imageStream) {
+        Iterator<ImageReader> readers = imageStream != null ? ImageIO.getImageReaders(imageStream) : null;
+        if (readers == null || !readers.hasNext()) {
+            throw new InvalidFileException("Unsupported or corrupt image");
+        }
+        return readers.next();
+    }
+
+    private static void closeQuietly(DiskTiledImage image) {
+        if (image == null) {
+            return;
+        }
+        try {
+            image.close();
+        } catch (IOException e) {
+            logger.warn("Failed to delete tile scratch file", e);
+        }
+    }
+}
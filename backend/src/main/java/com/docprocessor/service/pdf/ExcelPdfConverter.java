@@ -0,0 +1,361 @@
+package com.docprocessor.service.pdf;
+
+import com.docprocessor.exception.InvalidFileException;
+import com.docprocessor.exception.ProcessingException;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.poi.ooxml.POIXMLException;
+import org.apache.poi.openxml4j.exceptions.NotOfficeXmlFileException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Streaming Excel to PDF Converter
+ *
+ * Purpose: Converts .xlsx workbooks of any length without building the
+ * XSSFWorkbook object model, which costs tens of bytes of heap per byte of file
+ *
+ * How it works:
+ * - The upload is opened as a zip on disk (OPCPackage, read-only) and the
+ *   shared strings table is parsed once into a compact read-only list
+ * - Every sheet is streamed through POI's SAX sheet handler on its own thread
+ *   with its own package handle; rows are written to the PDF as they are
+ *   parsed, so heap use doesn't grow with the number of rows
+ * - Each sheet is laid out in its own scratch document (PDFBox documents are
+ *   not thread-safe) with as many pages as it needs; pages are then added to
+ *   the output in sheet order and the scratch documents closed after saving
+ * - All sheets draw with the output document's cached fonts (PdfResourceCache),
+ *   so the file holds one object per font rather than one per sheet
+ */
+@Component
+public class ExcelPdfConverter {
+
+    private static final float FONT_SIZE = 10;
+    private static final float HEADER_FONT_SIZE = 12;
+    private static final float LINE_HEIGHT = 15;
+    private static final float MARGIN = 50;
+    private static final float HEADER_Y = PDRectangle.A4.getHeight() - MARGIN;
+    private static final float FIRST_ROW_Y = HEADER_Y - 2 * LINE_HEIGHT;
+    private static final int ROWS_PER_PAGE = (int) ((FIRST_ROW_Y - MARGIN) / LINE_HEIGHT) + 1;
+    private static final float TEXT_WIDTH = PDRectangle.A4.getWidth() - 2 * MARGIN;
+    private static final String CELL_SEPARATOR = " | ";
+    /** Rows are cut to the page width anyway; stop collecting cells well before that */
+    private static final int MAX_ROW_CHARS = 400;
+
+    private final PdfDocumentLoader documentLoader;
+    private final ExecutorService sheetPool;
+
+    public ExcelPdfConverter(PdfDocumentLoader documentLoader,
+                             @Value("${pdf.excel.threads}") int threads) {
+        this.documentLoader = documentLoader;
+        this.sheetPool = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("pdf-excel-"));
+    }
+
+    /**
+     * Convert the workbook and save it to outputFile.
+     *
+     * @return the number of pages written
+     */
+    public int convert(MultipartFile file, File outputFile) throws IOException {
+        try (PdfSource source = documentLoader.openSource(file)) {
+            Path path = source.getPath();
+            ReadOnlySharedStringsTable strings;
+            List<String> sheetNames = new ArrayList<>();
+            OPCPackage workbook = open(path);
+            try {
+                strings = new ReadOnlySharedStringsTable(workbook, false);
+                XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) new XSSFReader(workbook).getSheetsData();
+                while (sheets.hasNext()) {
+                    sheets.next().close();
+                    sheetNames.add(sheets.getSheetName());
+                }
+            } catch (OpenXML4JException | SAXException | POIXMLException e) {
+                throw new InvalidFileException("Not a readable .xlsx workbook");
+            } finally {
+                workbook.revert();
+            }
+            if (sheetNames.isEmpty()) {
+                throw new InvalidFileException("Workbook has no sheets");
+            }
+
+            // Sheets draw with the output document's fonts, so all pages share one font object
+            try (PDDocument document = documentLoader.createDocument()) {
+                PdfResourceCache resources = new PdfResourceCache(document);
+                SheetFonts fonts = new SheetFonts(resources);
+                List<Future<PDDocument>> futures = new ArrayList<>();
+                for (int i = 0; i < sheetNames.size(); i++) {
+                    int sheetIndex = i;
+                    String sheetName = sheetNames.get(i);
+                    futures.add(sheetPool.submit(() -> renderSheet(path, sheetIndex, sheetName, strings, fonts)));
+                }
+                List<PDDocument> sheetDocuments = collect(futures);
+
+                // Sheet documents hold the page content and must stay open until the save
+                try {
+                    for (PDDocument sheetDocument : sheetDocuments) {
+                        for (PDPage page : sheetDocument.getPages()) {
+                            document.addPage(page);
+                        }
+                    }
+                    document.save(outputFile);
+                    return document.getNumberOfPages();
+                } finally {
+                    closeAll(sheetDocuments);
+                }
+            }
+        }
+    }
+
+    private PDDocument renderSheet(Path path, int sheetIndex, String sheetName,
+                                   ReadOnlySharedStringsTable strings, SheetFonts fonts) throws IOException {
+        OPCPackage workbook = open(path);
+        try {
+            XSSFReader reader = new XSSFReader(workbook);
+            StylesTable styles = reader.getStylesTable();
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            for (int i = 0; i < sheetIndex; i++) {
+                sheets.next().close();
+            }
+
+            PDDocument document = documentLoader.createDocument();
+            try (InputStream sheet = sheets.next()) {
+                SheetWriter writer = new SheetWriter(document, sheetName, fonts);
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings, writer, new DataFormatter(), false));
+                parser.parse(new InputSource(sheet));
+                writer.finish();
+                return document;
+            } catch (SAXException e) {
+                document.close();
+                throw new InvalidFileException("Sheet '" + sheetName + "' could not be read");
+            } catch (UncheckedIOException e) {
+                document.close();
+                throw e.getCause();
+            } catch (IOException | RuntimeException e) {
+                document.close();
+                throw e;
+            }
+        } catch (OpenXML4JException | POIXMLException e) {
+            throw new InvalidFileException("Not a readable .xlsx workbook");
+        } catch (ParserConfigurationException e) {
+            throw new ProcessingException("XML parser not available", e);
+        } finally {
+            workbook.revert();
+        }
+    }
+
+    private static OPCPackage open(Path path) {
+        try {
+            return OPCPackage.open(path.toFile(), PackageAccess.READ);
+        } catch (OpenXML4JException | NotOfficeXmlFileException e) {
+            throw new InvalidFileException("Not a readable .xlsx workbook");
+        }
+    }
+
+    /**
+     * Wait for every sheet, even after a failure, so no scratch document is left open.
+     */
+    private static List<PDDocument> collect(List<Future<PDDocument>> futures) throws IOException {
+        List<PDDocument> documents = new ArrayList<>();
+        Throwable failure = null;
+        for (Future<PDDocument> future : futures) {
+            try {
+                documents.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(pending -> pending.cancel(true));
+                failure = failure != null ? failure : e;
+            } catch (ExecutionException e) {
+                failure = failure != null ? failure : e.getCause();
+            }
+        }
+        if (failure != null) {
+            closeAll(documents);
+            if (failure instanceof IOException io) {
+                throw io;
+            }
+            if (failure instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(failure);
+        }
+        return documents;
+    }
+
+    private static void closeAll(List<PDDocument> documents) throws IOException {
+        IOException failure = null;
+        for (PDDocument document : documents) {
+            try {
+                document.close();
+            } catch (IOException e) {
+                failure = failure != null ? failure : e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Fonts and widths taken from the output document's resource cache on the
+     * calling thread, before any sheet is submitted; workers only read them.
+     */
+    private record SheetFonts(PdfResourceCache resources, float[] widths, float[] headerWidths) {
+        SheetFonts(PdfResourceCache resources) throws IOException {
+            this(resources, resources.widths(Standard14Fonts.FontName.HELVETICA),
+                    resources.widths(Standard14Fonts.FontName.HELVETICA_BOLD));
+        }
+    }
+
+    /**
+     * Lays out the rows of one sheet as they arrive, one text line per row,
+     * starting a new page whenever the current one is full.
+     */
+    private static class SheetWriter implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final PDDocument document;
+        private final String sheetName;
+        private final PDType1Font font;
+        private final PDType1Font headerFont;
+        private final float[] widths;
+        private final float[] headerWidths;
+        private final StringBuilder row = new StringBuilder();
+
+        private PDPageContentStream contentStream;
+        private int linesOnPage;
+        private int nextColumn;
+
+        SheetWriter(PDDocument document, String sheetName, SheetFonts fonts) throws IOException {
+            this.document = document;
+            this.sheetName = sheetName;
+            this.font = fonts.resources().sharedFont(Standard14Fonts.FontName.HELVETICA);
+            this.headerFont = fonts.resources().sharedFont(Standard14Fonts.FontName.HELVETICA_BOLD);
+            this.widths = fonts.widths();
+            this.headerWidths = fonts.headerWidths();
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            row.setLength(0);
+            nextColumn = 0;
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = cellReference != null ? new CellReference(cellReference).getCol() : nextColumn;
+            // Keep columns aligned across missing cells
+            for (; nextColumn < column && row.length() < MAX_ROW_CHARS; nextColumn++) {
+                row.append(CELL_SEPARATOR);
+            }
+            if (row.length() < MAX_ROW_CHARS) {
+                row.append(formattedValue != null ? formattedValue : "").append(CELL_SEPARATOR);
+            }
+            nextColumn = column + 1;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            try {
+                if (contentStream == null || linesOnPage == ROWS_PER_PAGE) {
+                    endPage();
+                    startPage();
+                }
+                contentStream.showText(fit(row, widths, FONT_SIZE));
+                contentStream.newLineAtOffset(0, -LINE_HEIGHT);
+                linesOnPage++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void finish() throws IOException {
+            // An empty sheet still gets a page with its name
+            if (contentStream == null) {
+                startPage();
+            }
+            endPage();
+        }
+
+        private void startPage() throws IOException {
+            PDPage page = new PDPage(PDRectangle.A4);
+            document.addPage(page);
+            contentStream = new PDPageContentStream(document, page);
+            contentStream.beginText();
+            contentStream.setFont(headerFont, HEADER_FONT_SIZE);
+            contentStream.newLineAtOffset(MARGIN, HEADER_Y);
+            contentStream.showText(fit(sheetName, headerWidths, HEADER_FONT_SIZE));
+            contentStream.endText();
+
+            contentStream.beginText();
+            contentStream.setFont(font, FONT_SIZE);
+            contentStream.newLineAtOffset(MARGIN, FIRST_ROW_Y);
+            linesOnPage = 0;
+        }
+
+        private void endPage() throws IOException {
+            if (contentStream != null) {
+                contentStream.endText();
+                contentStream.close();
+                contentStream = null;
+            }
+        }
+
+        /**
+         * Replace what the font can't show and cut the text at the page width.
+         */
+        private static String fit(CharSequence text, float[] widths, float fontSize) {
+            float maxWidth = TEXT_WIDTH * 1000 / fontSize;
+            float width = 0;
+            StringBuilder fitted = new StringBuilder(Math.min(text.length(), MAX_ROW_CHARS));
+            for (int i = 0; i < text.length(); i++) {
+                char c = PdfResourceCache.encodable(text.charAt(i));
+                width += widths[c];
+                if (width > maxWidth) {
+                    break;
+                }
+                fitted.append(c);
+            }
+            return fitted.toString();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sheetPool.shutdownNow();
+    }
+}
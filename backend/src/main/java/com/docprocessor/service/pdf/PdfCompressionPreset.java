@@ -0,0 +1,51 @@
+package com.docprocessor.service.pdf;
+
+import com.docprocessor.exception.InvalidFileException;
+
+import java.util.Locale;
+
+/**
+ * Compression presets for PdfOptimizer, named after their Ghostscript
+ * counterparts. Every preset deduplicates streams, drops unused resources and
+ * writes object/xref streams; the lossy ones also downsample and recompress
+ * images to the given resolution and JPEG quality.
+ */
+public enum PdfCompressionPreset {
+    /** No image changes, structure only */
+    LOSSLESS(0, 0f),
+    /** 300 dpi, high quality JPEG */
+    PRINTER(300, 0.85f),
+    /** 150 dpi, medium quality JPEG */
+    EBOOK(150, 0.75f),
+    /** 72 dpi, low quality JPEG */
+    SCREEN(72, 0.5f);
+
+    private final int dpi;
+    private final float quality;
+
+    PdfCompressionPreset(int dpi, float quality) {
+        this.dpi = dpi;
+        this.quality = quality;
+    }
+
+    public boolean isLossy() {
+        return dpi > 0;
+    }
+
+    public int getDpi() {
+        return dpi;
+    }
+
+    public float getQuality() {
+        return quality;
+    }
+
+    public static PdfCompressionPreset from(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidFileException("Unknown compression preset: " + name
+                    + " (expected lossless, printer, ebook or screen)");
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.docprocessor.service.pdf;
+
+import com.docprocessor.job.SpooledMultipartFile;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.io.RandomAccessStreamCache.StreamCacheCreateFunction;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+
+/**
+ * PDF Document Loader
+ *
+ * Purpose: Opens uploaded PDFs without pulling the whole file onto the heap
+ *
+ * - Uploads are read from disk through a small sliding buffer
+ *   (RandomAccessReadBufferedFile) instead of MultipartFile.getBytes()
+ * - Uploads already spooled by the job engine are opened in place
+ * - Decoded streams and new documents use a scratch policy that spills
+ *   to the temp directory once the in-memory budget is used up
+ */
+@Component
+public class PdfDocumentLoader {
+
+    private final Path tempLocation;
+    private final MemoryUsageSetting memoryUsageSetting;
+
+    public PdfDocumentLoader(@Value("${storage.temp.location}") String tempStorageLocation,
+                             @Value("${pdf.memory.mode}") String memoryMode,
+                             @Value("${pdf.memory.max.main.bytes}") long maxMainMemoryBytes) {
+        this.tempLocation = Paths.get(tempStorageLocation).toAbsolutePath();
+        this.memoryUsageSetting = createMemoryUsageSetting(memoryMode, maxMainMemoryBytes)
+                .setTempDir(tempLocation.toFile());
+    }
+
+    private static MemoryUsageSetting createMemoryUsageSetting(String mode, long maxMainMemoryBytes) {
+        return switch (mode.toLowerCase()) {
+            case "memory" -> MemoryUsageSetting.setupMainMemoryOnly();
+            case "file" -> MemoryUsageSetting.setupTempFileOnly();
+            case "mixed" -> MemoryUsageSetting.setupMixed(maxMainMemoryBytes);
+            default -> throw new IllegalArgumentException("Unknown pdf.memory.mode: " + mode);
+        };
+    }
+
+    /**
+     * Open an uploaded PDF. The returned document owns the underlying file handle
+     * and must be closed by the caller.
+     */
+    public PDDocument load(MultipartFile file) throws IOException {
+        RandomAccessRead source;
+        if (file instanceof SpooledMultipartFile spooled) {
+            source = new RandomAccessReadBufferedFile(spooled.getPath());
+        } else {
+            Files.createDirectories(tempLocation);
+            Path target = tempLocation.resolve("pdfsrc_" + UUID.randomUUID() + ".pdf");
+            file.transferTo(target.toFile());
+            source = new DeleteOnCloseFile(target);
+        }
+
+        try {
+            return Loader.loadPDF(source, "", null, null, getStreamCache());
+        } catch (IOException e) {
+            source.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Make the upload available as a file that workers can open independently.
+     * Closing the returned source removes any private copy.
+     */
+    public PdfSource openSource(MultipartFile file) throws IOException {
+        if (file instanceof SpooledMultipartFile spooled) {
+            return new PdfSource(spooled.getPath(), false, getStreamCache());
+        }
+        Files.createDirectories(tempLocation);
+        Path target = tempLocation.resolve("pdfsrc_" + UUID.randomUUID() + ".pdf");
+        file.transferTo(target.toFile());
+        return new PdfSource(target, true, getStreamCache());
+    }
+
+    /**
+     * Create an empty output document using the configured scratch policy.
+     */
+    public PDDocument createDocument() {
+        return new PDDocument(getStreamCache());
+    }
+
+    public StreamCacheCreateFunction getStreamCache() {
+        return memoryUsageSetting.streamCache;
+    }
+
+    /**
+     * Buffered reader over a private copy of the upload that removes the copy
+     * once PDFBox closes the document.
+     */
+    private static class DeleteOnCloseFile extends RandomAccessReadBufferedFile {
+
+        private final Path path;
+
+        DeleteOnCloseFile(Path path) throws IOException {
+            super(path);
+            this.path = path;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.docprocessor.service.pdf;
+
+import com.docprocessor.exception.InvalidFileException;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * PDF Image Importer
+ *
+ * Purpose: Turns uploaded images into PDF image XObjects without a decode /
+ * PNG re-encode / re-read round trip through the temp directory
+ *
+ * How it works:
+ * - JPEGs are embedded as they are (DCTDecode), so they are neither decoded
+ *   nor recompressed
+ * - Other formats are decoded once and Flate-encoded in memory by LosslessFactory
+ * - Images are prepared in parallel; PDFBox documents are not thread-safe, so
+ *   every image is built in its own scratch document, which the caller keeps
+ *   open until the output document has been saved (as with merge sources)
+ * - Results come back in upload order, so pages can be assembled sequentially
+ * - On failure every scratch document already built is closed; if the request
+ *   is interrupted the remaining tasks are cancelled and close their own
+ */
+@Component
+public class PdfImageImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfImageImporter.class);
+
+    private final PdfDocumentLoader documentLoader;
+    private final ExecutorService importPool;
+
+    public PdfImageImporter(PdfDocumentLoader documentLoader,
+                            @Value("${pdf.images.threads}") int threads) {
+        this.documentLoader = documentLoader;
+        this.importPool = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("pdf-image-"));
+    }
+
+    /**
+     * Image XObjects of one request, in upload order. Closing releases the
+     * scratch documents, so only close after the output has been saved.
+     */
+    public static class ImportedImages implements Closeable {
+        private final List<PDImageXObject> images = new ArrayList<>();
+        private final List<PDDocument> owners = new ArrayList<>();
+
+        public List<PDImageXObject> getImages() {
+            return images;
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (PDDocument owner : owners) {
+                try {
+                    owner.close();
+                } catch (IOException e) {
+                    failure = failure != null ? failure : e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private record Imported(PDImageXObject image, PDDocument owner) {
+    }
+
+    public ImportedImages importImages(List<MultipartFile> files) throws IOException {
+        List<Future<Imported>> futures = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            futures.add(importPool.submit(() -> importImage(file)));
+        }
+
+        // Collect every task, even after a failure, so all scratch documents get closed.
+        // Once interrupted, the tasks still running are cancelled and close their own
+        ImportedImages result = new ImportedImages();
+        boolean collected = false;
+        try {
+            Throwable failure = null;
+            for (Future<Imported> future : futures) {
+                try {
+                    Imported imported = future.get();
+                    result.images.add(imported.image());
+                    result.owners.add(imported.owner());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    futures.forEach(pending -> pending.cancel(true));
+                    failure = failure != null ? failure : e;
+                } catch (CancellationException e) {
+                    failure = failure != null ? failure : e;
+                } catch (ExecutionException e) {
+                    failure = failure != null ? failure : e.getCause();
+                }
+            }
+            if (failure != null) {
+                if (failure instanceof IOException io) {
+                    throw io;
+                }
+                if (failure instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw new IOException(failure);
+            }
+            collected = true;
+            return result;
+        } finally {
+            if (!collected) {
+                closeQuietly(result);
+            }
+        }
+    }
+
+    private static void closeQuietly(ImportedImages images) {
+        try {
+            images.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close scratch document", e);
+        }
+    }
+
+    private Imported importImage(MultipartFile file) throws IOException {
+        PDDocument owner = documentLoader.createDocument();
+        try (InputStream in = new BufferedInputStream(file.getInputStream())) {
+            PDImageXObject image;
+            if (isJpeg(in)) {
+                image = JPEGFactory.createFromStream(owner, in);
+            } else {
+                BufferedImage decoded = ImageIO.read(in);
+                if (decoded == null) {
+                    throw new InvalidFileException("Unsupported image format: " + file.getOriginalFilename());
+                }
+                image = LosslessFactory.createFromImage(owner, decoded);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                // Cancelled: nobody will collect the result, so don't leave it open
+                throw new InterruptedIOException("Image import cancelled");
+            }
+            return new Imported(image, owner);
+        } catch (IOException | RuntimeException e) {
+            owner.close();
+            throw e;
+        }
+    }
+
+    /**
+     * JPEG files start with an SOI marker followed by another marker (FF D8 FF).
+     */
+    private static boolean isJpeg(InputStream in) throws IOException {
+        in.mark(3);
+        byte[] header = in.readNBytes(3);
+        in.reset();
+        return header.length == 3 && (header[0] & 0xFF) == 0xFF
+                && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        importPool.shutdownNow();
+    }
+}
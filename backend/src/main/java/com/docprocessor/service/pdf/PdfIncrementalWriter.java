@@ -0,0 +1,120 @@
+package com.docprocessor.service.pdf;
+
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadView;
+import org.apache.pdfbox.pdfwriter.COSWriter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * PDF Incremental Writer
+ *
+ * Purpose: Saves a modified document as an incremental update of the file it
+ * was loaded from, so unchanged objects (page images above all) are neither
+ * re-read through PDFBox nor rewritten
+ *
+ * How it works:
+ * - The original file is copied to the output verbatim with
+ *   FileChannel.transferTo, which lets the kernel move the bytes
+ * - PDFBox's COSWriter then writes only the objects that were added or changed
+ *   since loading, plus a new xref section and trailer pointing back at the
+ *   original one
+ * - COSWriter normally copies the original itself; it is handed an
+ *   AlreadyCopied source instead, which reports the original length (so
+ *   offsets in the new xref section are right) but has nothing left to read
+ *
+ * Subset-embedded fonts are not finished here (PDDocument.saveIncremental
+ * does that), so only use it with standard 14 fonts or fully embedded ones.
+ */
+final class PdfIncrementalWriter {
+
+    private PdfIncrementalWriter() {
+    }
+
+    /**
+     * Write original followed by the changes made to document, which must have
+     * been loaded from original.
+     */
+    static void save(PDDocument document, Path original, File output) throws IOException {
+        try (FileChannel in = FileChannel.open(original, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long length = in.size();
+            for (long position = 0; position < length; ) {
+                position += in.transferTo(position, length - position, out);
+            }
+
+            // COSWriter buffers the increment and writes it in one go at the end. It is
+            // not Closeable in PDFBox 3.0, so the stream it wrote to is flushed and closed here
+            try (OutputStream increment = Channels.newOutputStream(out)) {
+                new COSWriter(increment, new AlreadyCopied(length)).write(document);
+                increment.flush();
+            }
+        }
+    }
+
+    /**
+     * Stands in for the original file once its bytes are already in the output:
+     * it has the original's length but is positioned at its end.
+     */
+    private static final class AlreadyCopied implements RandomAccessRead {
+        private final long length;
+        private boolean closed;
+
+        AlreadyCopied(long length) {
+            this.length = length;
+        }
+
+        @Override
+        public int read() {
+            return -1;
+        }
+
+        @Override
+        public int read(byte[] b, int offset, int length) {
+            return -1;
+        }
+
+        @Override
+        public long getPosition() {
+            return length;
+        }
+
+        @Override
+        public void seek(long position) {
+            // Always at the end: there is nothing to read
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public boolean isEOF() {
+            return true;
+        }
+
+        @Override
+        public RandomAccessReadView createView(long startPosition, long streamLength) {
+            throw new UnsupportedOperationException("The original has already been copied");
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,643 @@
+package com.docprocessor.service.pdf;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
+import org.apache.pdfbox.pdmodel.PDDocumentNameDictionary;
+import org.apache.pdfbox.pdmodel.PDDocumentNameDestinationDictionary;
+import org.apache.pdfbox.pdmodel.PDDestinationNameTreeNode;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDNameTreeNode;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * PDF Merger
+ *
+ * Purpose: Merges any number of PDFs with only a handful of sources open at a
+ * time, instead of keeping every source document alive until the final save
+ *
+ * How it works:
+ * - Sources are opened from disk and parsed ahead on a small pool, at most
+ *   pdf.merge.threads at once; parsing includes hashing every stream the
+ *   pages reach (SHA-256 of its dictionary and encoded bytes)
+ * - In upload order, each source's pages are deep-copied into the output
+ *   document, whose stream data lives in the scratch-backed stream cache, and
+ *   the source is closed straight away
+ * - Fonts are hashed the same way, by their entries; a stream or font whose hash
+ *   was seen before (the same font or logo in every invoice) is not copied
+ *   again, the existing copy is referenced instead
+ * - Top-level bookmarks of every source are appended to the output outline and
+ *   named destinations are kept; a name already used by an earlier source is
+ *   renamed, along with the links and bookmarks that use it
+ *
+ * The output document (not thread-safe) is only touched by the calling thread.
+ */
+@Component
+public class PdfMerger {
+
+    /** Objects nested deeper than this are hashed by identity, so they are never merged */
+    private static final int MAX_DIGEST_DEPTH = 4;
+
+    private final PdfDocumentLoader documentLoader;
+    private final ExecutorService parsePool;
+    private final int threads;
+
+    public PdfMerger(PdfDocumentLoader documentLoader,
+                     @Value("${pdf.merge.threads}") int threads) {
+        this.documentLoader = documentLoader;
+        this.parsePool = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("pdf-merge-"));
+        this.threads = threads;
+    }
+
+    /**
+     * Merge the files in order and save the result to outputFile.
+     *
+     * @return the number of pages written
+     */
+    public int merge(List<MultipartFile> files, File outputFile) throws IOException {
+        try (PDDocument destination = documentLoader.createDocument()) {
+            MergeTarget target = new MergeTarget(destination);
+            Deque<Future<ParsedSource>> window = new ArrayDeque<>();
+            int submitted = 0;
+            try {
+                for (int i = 0; i < files.size(); i++) {
+                    // Keep the pool busy parsing the next sources while this one is copied
+                    while (submitted < files.size() && window.size() < threads) {
+                        MultipartFile file = files.get(submitted++);
+                        window.add(parsePool.submit(() -> parse(file)));
+                    }
+                    try (ParsedSource source = await(window.poll())) {
+                        target.append(source, i);
+                    }
+                }
+            } finally {
+                discard(window);
+            }
+            target.finish();
+            destination.save(outputFile);
+            return destination.getNumberOfPages();
+        }
+    }
+
+    // ---- Parsing (pool threads) ----
+
+    private ParsedSource parse(MultipartFile file) throws IOException {
+        PDDocument document = documentLoader.load(file);
+        try {
+            StreamDigester digester = new StreamDigester();
+            for (PDPage page : document.getPages()) {
+                digester.digestReachable(page);
+            }
+            return new ParsedSource(document, digester.digests);
+        } catch (IOException | RuntimeException e) {
+            document.close();
+            throw e;
+        }
+    }
+
+    /**
+     * An open source document and the hashes of the streams its pages use.
+     */
+    private record ParsedSource(PDDocument document, Map<COSDictionary, String> digests) implements Closeable {
+        @Override
+        public void close() throws IOException {
+            document.close();
+        }
+    }
+
+    /**
+     * Hashes streams and font dictionaries by content. Dictionaries are described
+     * by their sorted entries, nested streams and fonts by their own hash; pages,
+     * cycles and anything deeper than MAX_DIGEST_DEPTH are described by an
+     * identity that is unique per source, so they never match anything.
+     */
+    private static class StreamDigester {
+        private final Map<COSDictionary, String> digests = new IdentityHashMap<>();
+        private final Set<COSDictionary> inProgress = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Map<COSBase, Integer> identities = new IdentityHashMap<>();
+        private final String sourceId = UUID.randomUUID().toString();
+        private final byte[] buffer = new byte[64 * 1024];
+
+        /** Shared by all pages, so inherited resources are walked once per document */
+        private final Set<COSBase> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        void digestReachable(PDPage page) throws IOException {
+            Deque<COSBase> pending = new ArrayDeque<>();
+            pending.push(page.getCOSObject());
+            PDResources resources = page.getResources();
+            if (resources != null) {
+                pending.push(resources.getCOSObject());
+            }
+            while (!pending.isEmpty()) {
+                COSBase object = resolve(pending.pop());
+                if (object == null || (object instanceof COSDictionary dictionary
+                        && object != page.getCOSObject() && isPage(dictionary)) || !seen.add(object)) {
+                    continue;
+                }
+                if (object instanceof COSDictionary dictionary) {
+                    if (isShareable(dictionary)) {
+                        digest(dictionary);
+                    }
+                    for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet()) {
+                        if (!COSName.PARENT.equals(entry.getKey()) && !COSName.P.equals(entry.getKey())) {
+                            pending.push(entry.getValue());
+                        }
+                    }
+                } else if (object instanceof COSArray array) {
+                    for (COSBase element : array) {
+                        pending.push(element);
+                    }
+                }
+            }
+        }
+
+        private String digest(COSDictionary dictionary) throws IOException {
+            String cached = digests.get(dictionary);
+            if (cached != null) {
+                return cached;
+            }
+            inProgress.add(dictionary);
+            MessageDigest sha256 = sha256();
+            StringBuilder description = new StringBuilder();
+            describeEntries(dictionary, 0, description);
+            sha256.update(description.toString().getBytes(StandardCharsets.UTF_8));
+            if (dictionary instanceof COSStream stream) {
+                sha256.update((byte) 0);
+                try (InputStream in = stream.createRawInputStream()) {
+                    for (int read; (read = in.read(buffer)) != -1; ) {
+                        sha256.update(buffer, 0, read);
+                    }
+                }
+            }
+            inProgress.remove(dictionary);
+            String digest = HexFormat.of().formatHex(sha256.digest());
+            digests.put(dictionary, digest);
+            return digest;
+        }
+
+        private void describe(COSBase base, int depth, StringBuilder out) throws IOException {
+            COSBase object = resolve(base);
+            if (object == null || object instanceof COSNull) {
+                out.append("null");
+            } else if (object instanceof COSName name) {
+                out.append('/').append(name.getName());
+            } else if (object instanceof COSString string) {
+                out.append('(').append(HexFormat.of().formatHex(string.getBytes())).append(')');
+            } else if (object instanceof COSInteger number) {
+                out.append(number.longValue());
+            } else if (object instanceof COSNumber number) {
+                out.append('f').append(number.floatValue());
+            } else if (object instanceof COSDictionary dictionary && isShareable(dictionary)) {
+                if (inProgress.contains(dictionary)) {
+                    identity(object, out);
+                } else {
+                    out.append("#").append(digest(dictionary));
+                }
+            } else if (object instanceof COSDictionary dictionary) {
+                if (depth >= MAX_DIGEST_DEPTH || isPage(dictionary) || dictionary.containsKey(COSName.PARENT)) {
+                    identity(object, out);
+                } else {
+                    out.append("<<");
+                    describeEntries(dictionary, depth + 1, out);
+                    out.append(">>");
+                }
+            } else if (object instanceof COSArray array) {
+                if (depth >= MAX_DIGEST_DEPTH) {
+                    identity(object, out);
+                } else {
+                    out.append('[');
+                    for (COSBase element : array) {
+                        describe(element, depth + 1, out);
+                        out.append(' ');
+                    }
+                    out.append(']');
+                }
+            } else {
+                out.append(object);
+            }
+        }
+
+        private void describeEntries(COSDictionary dictionary, int depth, StringBuilder out) throws IOException {
+            Map<String, COSBase> sorted = new TreeMap<>();
+            for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet()) {
+                if (!COSName.LENGTH.equals(entry.getKey())) {
+                    sorted.put(entry.getKey().getName(), entry.getValue());
+                }
+            }
+            for (Map.Entry<String, COSBase> entry : sorted.entrySet()) {
+                out.append('/').append(entry.getKey()).append(' ');
+                describe(entry.getValue(), depth, out);
+                out.append(' ');
+            }
+        }
+
+        private void identity(COSBase object, StringBuilder out) {
+            out.append('@').append(sourceId).append(':')
+                    .append(identities.computeIfAbsent(object, o -> identities.size()));
+        }
+    }
+
+    // ---- Copying (calling thread) ----
+
+    /**
+     * The output document plus what is shared across sources: stream copies by
+     * hash, the outline and the named destinations.
+     */
+    private static class MergeTarget {
+        private final PDDocument destination;
+        private final Map<String, COSDictionary> sharedByDigest = new HashMap<>();
+        private final PDDocumentOutline outline = new PDDocumentOutline();
+        private final Map<String, COSArray> namedDestinations = new TreeMap<>();
+
+        MergeTarget(PDDocument destination) {
+            this.destination = destination;
+        }
+
+        void append(ParsedSource source, int sourceIndex) throws IOException {
+            PDDocument document = source.document();
+            PDDocumentCatalog catalog = document.getDocumentCatalog();
+            Map<String, COSBase> names = namedDestinations(catalog);
+            Map<String, String> renames = new HashMap<>();
+            for (String name : names.keySet()) {
+                if (namedDestinations.containsKey(name)) {
+                    String renamed = name + "_" + (sourceIndex + 1);
+                    for (int n = 2; namedDestinations.containsKey(renamed) || names.containsKey(renamed); n++) {
+                        renamed = name + "_" + (sourceIndex + 1) + "_" + n;
+                    }
+                    renames.put(name, renamed);
+                }
+            }
+            Copier copier = new Copier(source.digests(), renames);
+
+            // Register every page first, so links and bookmarks to later pages resolve
+            List<PDPage> pages = new ArrayList<>();
+            List<COSDictionary> copies = new ArrayList<>();
+            for (PDPage page : document.getPages()) {
+                COSDictionary copy = new COSDictionary();
+                copier.copies.put(page.getCOSObject(), copy);
+                pages.add(page);
+                copies.add(copy);
+            }
+            for (int i = 0; i < pages.size(); i++) {
+                PDPage page = pages.get(i);
+                COSDictionary copy = copies.get(i);
+                copier.fill(page.getCOSObject(), copy);
+                // Inherited attributes are lost with the parent, so set them on the page itself
+                PDPage target = new PDPage(copy);
+                PDResources resources = page.getResources();
+                if (resources != null) {
+                    copy.setItem(COSName.RESOURCES, copier.copy(resources.getCOSObject()));
+                }
+                target.setMediaBox(new PDRectangle((COSArray) copier.copy(page.getMediaBox().getCOSArray())));
+                target.setCropBox(new PDRectangle((COSArray) copier.copy(page.getCropBox().getCOSArray())));
+                target.setRotation(page.getRotation());
+                destination.getPages().add(target);
+            }
+
+            appendOutline(catalog.getDocumentOutline(), copier);
+            for (Map.Entry<String, COSBase> entry : names.entrySet()) {
+                if (copier.copy(entry.getValue()) instanceof COSArray copied
+                        && copied.size() > 0 && copied.getObject(0) instanceof COSDictionary) {
+                    namedDestinations.put(renames.getOrDefault(entry.getKey(), entry.getKey()), copied);
+                }
+            }
+        }
+
+        /**
+         * Append the source's top-level bookmarks (with their children) to the output outline.
+         */
+        private void appendOutline(PDDocumentOutline sourceOutline, Copier copier) throws IOException {
+            if (sourceOutline == null) {
+                return;
+            }
+            List<COSDictionary> items = new ArrayList<>();
+            copier.registerOutline(sourceOutline, outline.getCOSObject(), items);
+            for (COSDictionary item : items) {
+                copier.fill(copier.original(item), item);
+            }
+            List<COSDictionary> topLevel = new ArrayList<>();
+            for (PDOutlineItem item : sourceOutline.children()) {
+                topLevel.add((COSDictionary) copier.copies.get(item.getCOSObject()));
+            }
+            for (COSDictionary item : topLevel) {
+                item.removeItem(COSName.PREV);
+                item.removeItem(COSName.NEXT);
+                item.removeItem(COSName.PARENT);
+                outline.addLast(new PDOutlineItem(item));
+            }
+        }
+
+        void finish() throws IOException {
+            PDDocumentCatalog catalog = destination.getDocumentCatalog();
+            if (outline.hasChildren()) {
+                catalog.setDocumentOutline(outline);
+            }
+            if (!namedDestinations.isEmpty()) {
+                Map<String, PDPageDestination> destinations = new TreeMap<>();
+                for (Map.Entry<String, COSArray> entry : namedDestinations.entrySet()) {
+                    if (PDDestination.create(entry.getValue()) instanceof PDPageDestination destination) {
+                        destinations.put(entry.getKey(), destination);
+                    }
+                }
+                PDDestinationNameTreeNode tree = new PDDestinationNameTreeNode();
+                tree.setNames(destinations);
+                PDDocumentNameDictionary names = new PDDocumentNameDictionary(catalog);
+                names.setDests(tree);
+                catalog.setNames(names);
+            }
+        }
+
+        /**
+         * Named destinations from the name tree and the older /Dests dictionary,
+         * as explicit destination arrays of the source.
+         */
+        private static Map<String, COSBase> namedDestinations(PDDocumentCatalog catalog) throws IOException {
+            Map<String, COSBase> names = new TreeMap<>();
+            PDDocumentNameDestinationDictionary dests = catalog.getDests();
+            if (dests != null) {
+                for (COSName name : dests.getCOSObject().keySet()) {
+                    COSBase value = resolve(dests.getCOSObject().getDictionaryObject(name));
+                    if (value instanceof COSDictionary dictionary) {
+                        value = dictionary.getDictionaryObject(COSName.D);
+                    }
+                    names.put(name.getName(), value);
+                }
+            }
+            PDDocumentNameDictionary nameDictionary = catalog.getNames();
+            if (nameDictionary != null && nameDictionary.getDests() != null) {
+                Deque<PDNameTreeNode<PDPageDestination>> pending = new ArrayDeque<>();
+                pending.push(nameDictionary.getDests());
+                while (!pending.isEmpty()) {
+                    PDNameTreeNode<PDPageDestination> node = pending.pop();
+                    Map<String, PDPageDestination> leaves = node.getNames();
+                    if (leaves != null) {
+                        leaves.forEach((name, destination) -> names.put(name, destination.getCOSObject()));
+                    }
+                    if (node.getKids() != null) {
+                        node.getKids().forEach(pending::push);
+                    }
+                }
+            }
+            return names;
+        }
+
+        /**
+         * Deep-copies one source's objects into the output document.
+         */
+        private class Copier {
+            private final Map<COSBase, COSBase> copies = new IdentityHashMap<>();
+            private final Map<COSDictionary, COSDictionary> originals = new IdentityHashMap<>();
+            private final Map<COSDictionary, String> digests;
+            private final Map<String, String> renames;
+
+            Copier(Map<COSDictionary, String> digests, Map<String, String> renames) {
+                this.digests = digests;
+                this.renames = renames;
+            }
+
+            /**
+             * Register placeholders for every outline item up front (iteratively), so
+             * that long sibling chains don't turn into deep recursion.
+             */
+            void registerOutline(PDOutlineNode root, COSDictionary targetRoot, List<COSDictionary> items) {
+                copies.put(root.getCOSObject(), targetRoot);
+                Deque<PDOutlineNode> pending = new ArrayDeque<>();
+                pending.push(root);
+                while (!pending.isEmpty()) {
+                    for (PDOutlineItem child : pending.pop().children()) {
+                        if (copies.containsKey(child.getCOSObject())) {
+                            continue;
+                        }
+                        COSDictionary copy = new COSDictionary();
+                        copies.put(child.getCOSObject(), copy);
+                        originals.put(copy, child.getCOSObject());
+                        items.add(copy);
+                        pending.push(child);
+                    }
+                }
+            }
+
+            COSDictionary original(COSDictionary copy) {
+                return originals.get(copy);
+            }
+
+            void fill(COSDictionary source, COSDictionary target) throws IOException {
+                boolean goTo = "GoTo".equals(source.getNameAsString(COSName.S));
+                for (Map.Entry<COSName, COSBase> entry : source.entrySet()) {
+                    COSName key = entry.getKey();
+                    if (COSName.PARENT.equals(key) && isPage(source)) {
+                        continue;
+                    }
+                    COSBase value = entry.getValue();
+                    if (COSName.DEST.equals(key) || (goTo && COSName.D.equals(key))) {
+                        value = rename(resolve(value));
+                    }
+                    COSBase copy = copy(value);
+                    if (copy != null) {
+                        target.setItem(key, copy);
+                    }
+                }
+            }
+
+            COSBase copy(COSBase base) throws IOException {
+                COSBase object = resolve(base);
+                if (object == null) {
+                    return null;
+                }
+                COSBase existing = copies.get(object);
+                if (existing != null) {
+                    return existing;
+                }
+                if (object instanceof COSDictionary dictionary) {
+                    String digest = digests.get(dictionary);
+                    COSDictionary shared = digest != null ? sharedByDigest.get(digest) : null;
+                    if (shared != null) {
+                        copies.put(dictionary, shared);
+                        return shared;
+                    }
+                    // A page outside the page tree would drag the whole source along
+                    if (isPage(dictionary)) {
+                        return null;
+                    }
+                    COSDictionary copy = dictionary instanceof COSStream stream ? copyStream(stream) : copyDictionary(dictionary);
+                    if (digest != null) {
+                        sharedByDigest.put(digest, copy);
+                    }
+                    return copy;
+                }
+                if (object instanceof COSArray array) {
+                    COSArray copy = new COSArray();
+                    copies.put(object, copy);
+                    for (COSBase element : array) {
+                        COSBase copied = copy(element);
+                        copy.add(copied != null ? copied : COSNull.NULL);
+                    }
+                    return copy;
+                }
+                // Indirect simple objects carry the source's object key, which must not leak
+                if (object.getKey() == null) {
+                    return object;
+                }
+                if (object instanceof COSString string) {
+                    return new COSString(string.getBytes());
+                }
+                if (object instanceof COSInteger integer) {
+                    return COSInteger.get(integer.longValue());
+                }
+                if (object instanceof COSFloat number) {
+                    return new COSFloat(number.floatValue());
+                }
+                return object;
+            }
+
+            private COSDictionary copyDictionary(COSDictionary dictionary) throws IOException {
+                COSDictionary copy = new COSDictionary();
+                copies.put(dictionary, copy);
+                fill(dictionary, copy);
+                return copy;
+            }
+
+            private COSStream copyStream(COSStream stream) throws IOException {
+                COSStream copy = destination.getDocument().createCOSStream();
+                copies.put(stream, copy);
+                for (Map.Entry<COSName, COSBase> entry : stream.entrySet()) {
+                    if (!COSName.LENGTH.equals(entry.getKey())) {
+                        COSBase value = copy(entry.getValue());
+                        if (value != null) {
+                            copy.setItem(entry.getKey(), value);
+                        }
+                    }
+                }
+                try (InputStream in = stream.createRawInputStream();
+                     OutputStream out = copy.createRawOutputStream()) {
+                    in.transferTo(out);
+                }
+                return copy;
+            }
+
+            private COSBase rename(COSBase destination) {
+                if (destination instanceof COSString string && renames.containsKey(string.getString())) {
+                    return new COSString(renames.get(string.getString()));
+                }
+                if (destination instanceof COSName name && renames.containsKey(name.getName())) {
+                    return COSName.getPDFName(renames.get(name.getName()));
+                }
+                return destination;
+            }
+        }
+    }
+
+    // ---- Helpers ----
+
+    private static COSBase resolve(COSBase base) {
+        return base instanceof COSObject reference ? reference.getObject() : base;
+    }
+
+    /**
+     * Streams and fonts are the objects worth sharing between sources; both are
+     * interchangeable with any other object of the same content.
+     */
+    private static boolean isShareable(COSDictionary dictionary) {
+        return dictionary instanceof COSStream || COSName.FONT.equals(dictionary.getCOSName(COSName.TYPE));
+    }
+
+    private static boolean isPage(COSDictionary dictionary) {
+        return COSName.PAGE.equals(dictionary.getCOSName(COSName.TYPE));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static ParsedSource await(Future<ParsedSource> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing merge sources", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Wait for sources still being parsed after a failure and close them.
+     */
+    private static void discard(Deque<Future<ParsedSource>> window) {
+        for (Future<ParsedSource> future : window) {
+            try {
+                future.get().close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+            } catch (ExecutionException | IOException e) {
+                // The merge has already failed; this source is being thrown away
+            }
+        }
+        window.clear();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        parsePool.shutdownNow();
+    }
+}
@@ -0,0 +1,648 @@
+package com.docprocessor.service.pdf;
+
+import net.coobird.thumbnailator.Thumbnails;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceN;
+import org.apache.pdfbox.pdmodel.graphics.color.PDIndexed;
+import org.apache.pdfbox.pdmodel.graphics.color.PDSeparation;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.util.Matrix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * PDF Optimizer
+ *
+ * Purpose: Actually makes a loaded document smaller, instead of re-saving its pages
+ *
+ * How it works:
+ * - Every content stream (pages, forms, annotation appearances, tiling patterns,
+ *   Type3 glyphs, soft mask groups) is tokenised once to find which XObjects,
+ *   fonts and graphics states each resource dictionary really uses, and at what
+ *   size each image is drawn
+ * - Unused XObjects, fonts and graphics states are removed from their resource
+ *   dictionaries; unreachable objects are then simply not written on save
+ * - Image and embedded font streams with identical content are collapsed into
+ *   one object (typical after merging documents that share a logo or font)
+ * - For lossy presets, images drawn at more than 1.5x the preset resolution are
+ *   downsampled and every eligible image is re-encoded as JPEG; a new encoding
+ *   is only kept when it is smaller
+ * - Streams stored without a filter are Flate-compressed; object and xref
+ *   stream compression happens when the caller saves
+ *
+ * Optimizes the document in place; one instance per document.
+ */
+final class PdfOptimizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfOptimizer.class);
+
+    /** Images are only downsampled when drawn at more than this multiple of the target resolution */
+    private static final double DOWNSAMPLE_THRESHOLD = 1.5;
+    /** Re-encoding at the same resolution must save at least 10% to be worth the generation loss */
+    private static final double MIN_RECOMPRESS_GAIN = 0.9;
+    private static final long MIN_IMAGE_BYTES = 4096;
+    private static final long MIN_FLATE_BYTES = 64;
+    /** Guards against form XObjects that (indirectly) draw themselves */
+    private static final int MAX_NESTING = 32;
+    /** Objects referenced deeper than this are compared by identity instead of content */
+    private static final int MAX_DIGEST_DEPTH = 4;
+
+    private static final Set<COSName> KEPT_FILTERS = Set.of(
+            COSName.JPX_DECODE, COSName.JBIG2_DECODE, COSName.CCITTFAX_DECODE);
+
+    record Result(int imagesRecompressed, int duplicatesMerged, int resourcesRemoved) {
+    }
+
+    /**
+     * Names a resource dictionary's users refer to, per category.
+     */
+    private static class Usage {
+        final Set<COSName> xObjects = new HashSet<>();
+        final Set<COSName> fonts = new HashSet<>();
+        final Set<COSName> extGStates = new HashSet<>();
+    }
+
+    private final PDDocument document;
+    private final PdfCompressionPreset preset;
+
+    private final Map<COSDictionary, Usage> usages = new IdentityHashMap<>();
+    private final Set<COSDictionary> unprunable = identitySet();
+    private final Set<COSDictionary> fonts = identitySet();
+    /** Largest size, in points, each image is drawn at */
+    private final Map<COSStream, double[]> imageSizes = new IdentityHashMap<>();
+    /** Images also drawn where the scale isn't tracked (patterns, glyphs, annotations) */
+    private final Set<COSStream> unknownScale = identitySet();
+    private final Set<COSStream> streams = identitySet();
+    private final Map<COSStream, Set<COSDictionary>> scannedUnscaled = new IdentityHashMap<>();
+    private final Set<COSStream> inProgress = identitySet();
+
+    private final Map<COSStream, String> digests = new IdentityHashMap<>();
+    private final Map<COSBase, Integer> objectIds = new IdentityHashMap<>();
+
+    PdfOptimizer(PDDocument document, PdfCompressionPreset preset) {
+        this.document = document;
+        this.preset = preset;
+    }
+
+    Result optimize() throws IOException {
+        for (PDPage page : document.getPages()) {
+            scanPage(page);
+        }
+        int removed = removeUnused();
+        int merged = mergeDuplicates();
+        int recompressed = preset.isLossy() ? recompressImages() : 0;
+        for (COSStream stream : streams) {
+            flate(stream);
+        }
+        return new Result(recompressed, merged, removed);
+    }
+
+    /**
+     * Only remove unused entries, and only from the given resource dictionaries.
+     * Used for split parts, whose pages get private copies of resources that may
+     * list everything the whole source document uses; every other dictionary is
+     * still shared with the source and left alone.
+     *
+     * @return the number of entries removed
+     */
+    int removeUnused(Set<COSDictionary> prunable) throws IOException {
+        for (PDPage page : document.getPages()) {
+            scanPage(page);
+        }
+        usages.keySet().retainAll(prunable);
+        return removeUnused();
+    }
+
+    // ---- Scanning ----
+
+    private void scanPage(PDPage page) throws IOException {
+        PDResources pageResources = page.getResources();
+        COSDictionary resources = pageResources != null ? pageResources.getCOSObject() : null;
+        for (Iterator<PDStream> it = page.getContentStreams(); it.hasNext(); ) {
+            streams.add(it.next().getCOSObject());
+        }
+        try {
+            scanTokens(new PDFStreamParser(page).parse(), resources, new Matrix(), 0);
+        } catch (IOException e) {
+            markUnprunable(resources, e);
+        }
+
+        for (PDAnnotation annotation : page.getAnnotations()) {
+            COSDictionary appearance = annotation.getCOSObject().getCOSDictionary(COSName.AP);
+            if (appearance == null) {
+                continue;
+            }
+            for (COSName type : List.of(COSName.N, COSName.R, COSName.D)) {
+                COSBase entry = appearance.getDictionaryObject(type);
+                if (entry instanceof COSStream stream) {
+                    scanUnscaled(stream, resources, 0);
+                } else if (entry instanceof COSDictionary states) {
+                    for (COSName state : states.keySet()) {
+                        if (states.getDictionaryObject(state) instanceof COSStream stream) {
+                            scanUnscaled(stream, resources, 0);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Scan a content stream that inherits the caller's resources when it has none.
+     * ctm is null where the drawing scale isn't tracked.
+     */
+    private void scanStream(COSStream stream, COSDictionary inherited, Matrix ctm, int depth) {
+        if (depth > MAX_NESTING || !inProgress.add(stream)) {
+            return;
+        }
+        COSDictionary own = stream.getCOSDictionary(COSName.RESOURCES);
+        COSDictionary resources = own != null ? own : inherited;
+        streams.add(stream);
+        try (InputStream in = stream.createInputStream()) {
+            scanTokens(new PDFStreamParser(in.readAllBytes()).parse(), resources, ctm, depth);
+        } catch (IOException e) {
+            markUnprunable(resources, e);
+        } finally {
+            inProgress.remove(stream);
+        }
+    }
+
+    /**
+     * Streams without a tracked scale only need scanning once per resource dictionary.
+     */
+    private void scanUnscaled(COSStream stream, COSDictionary inherited, int depth) {
+        Set<COSDictionary> scannedWith = scannedUnscaled.computeIfAbsent(stream, s -> identitySet());
+        if (scannedWith.add(inherited)) {
+            scanStream(stream, inherited, null, depth);
+        }
+    }
+
+    private void scanTokens(List<Object> tokens, COSDictionary resources, Matrix initialCtm, int depth) {
+        Deque<Matrix> saved = new ArrayDeque<>();
+        Matrix ctm = initialCtm;
+        List<COSBase> operands = new ArrayList<>();
+        for (Object token : tokens) {
+            if (token instanceof COSBase operand) {
+                operands.add(operand);
+                continue;
+            }
+            if (!(token instanceof Operator operator)) {
+                continue;
+            }
+            switch (operator.getName()) {
+                case "q" -> saved.push(ctm != null ? ctm.clone() : null);
+                case "Q" -> {
+                    if (!saved.isEmpty()) {
+                        ctm = saved.pop();
+                    }
+                }
+                case "cm" -> ctm = concatenate(ctm, operands);
+                case "Do" -> {
+                    if (firstName(operands) instanceof COSName name) {
+                        usage(resources).xObjects.add(name);
+                        drawXObject(resources, name, ctm, depth);
+                    }
+                }
+                case "Tf" -> {
+                    if (firstName(operands) instanceof COSName name) {
+                        usage(resources).fonts.add(name);
+                        useFont(resources, name, depth);
+                    }
+                }
+                case "gs" -> {
+                    if (firstName(operands) instanceof COSName name) {
+                        usage(resources).extGStates.add(name);
+                        useExtGState(resources, name, depth);
+                    }
+                }
+                case "scn", "SCN" -> {
+                    if (!operands.isEmpty() && operands.get(operands.size() - 1) instanceof COSName name) {
+                        usePattern(resources, name, depth);
+                    }
+                }
+                default -> {
+                }
+            }
+            operands.clear();
+        }
+    }
+
+    private void drawXObject(COSDictionary resources, COSName name, Matrix ctm, int depth) {
+        if (!(lookup(resources, COSName.XOBJECT, name) instanceof COSStream xObject)) {
+            return;
+        }
+        COSName subtype = xObject.getCOSName(COSName.SUBTYPE);
+        if (COSName.IMAGE.equals(subtype)) {
+            streams.add(xObject);
+            if (ctm == null) {
+                unknownScale.add(xObject);
+            } else {
+                double[] size = imageSizes.computeIfAbsent(xObject, s -> new double[2]);
+                // An image fills the unit square, so the CTM's basis vectors give its drawn size
+                size[0] = Math.max(size[0], Math.hypot(ctm.getScaleX(), ctm.getShearY()));
+                size[1] = Math.max(size[1], Math.hypot(ctm.getShearX(), ctm.getScaleY()));
+            }
+        } else if (COSName.FORM.equals(subtype)) {
+            if (ctm == null) {
+                scanUnscaled(xObject, resources, depth + 1);
+            } else {
+                Matrix formCtm = Matrix.createMatrix(xObject.getDictionaryObject(COSName.MATRIX)).multiply(ctm);
+                scanStream(xObject, resources, formCtm, depth + 1);
+            }
+        }
+    }
+
+    private void useFont(COSDictionary resources, COSName name, int depth) {
+        if (!(lookup(resources, COSName.FONT, name) instanceof COSDictionary font) || !fonts.add(font)) {
+            return;
+        }
+        if (COSName.TYPE3.equals(font.getCOSName(COSName.SUBTYPE))) {
+            COSDictionary glyphResources = font.getCOSDictionary(COSName.RESOURCES);
+            COSDictionary charProcs = font.getCOSDictionary(COSName.CHAR_PROCS);
+            if (charProcs != null) {
+                for (COSName glyph : charProcs.keySet()) {
+                    if (charProcs.getDictionaryObject(glyph) instanceof COSStream proc) {
+                        scanUnscaled(proc, glyphResources != null ? glyphResources : resources, depth + 1);
+                    }
+                }
+            }
+        }
+    }
+
+    private void useExtGState(COSDictionary resources, COSName name, int depth) {
+        if (lookup(resources, COSName.EXT_G_STATE, name) instanceof COSDictionary extGState
+                && extGState.getDictionaryObject(COSName.SMASK) instanceof COSDictionary softMask
+                && softMask.getDictionaryObject(COSName.G) instanceof COSStream group) {
+            scanUnscaled(group, resources, depth + 1);
+        }
+    }
+
+    private void usePattern(COSDictionary resources, COSName name, int depth) {
+        // Tiling patterns are streams with their own content; shading patterns are plain dictionaries
+        if (lookup(resources, COSName.PATTERN, name) instanceof COSStream pattern) {
+            scanUnscaled(pattern, resources, depth + 1);
+        }
+    }
+
+    private Usage usage(COSDictionary resources) {
+        return resources != null ? usages.computeIfAbsent(resources, r -> new Usage()) : new Usage();
+    }
+
+    private void markUnprunable(COSDictionary resources, IOException cause) {
+        logger.debug("Could not parse content stream, keeping its resources: {}", cause.getMessage());
+        if (resources != null) {
+            unprunable.add(resources);
+        }
+    }
+
+    private static COSBase lookup(COSDictionary resources, COSName category, COSName name) {
+        if (resources == null) {
+            return null;
+        }
+        COSDictionary entries = resources.getCOSDictionary(category);
+        return entries != null ? entries.getDictionaryObject(name) : null;
+    }
+
+    private static COSBase firstName(List<COSBase> operands) {
+        return operands.isEmpty() ? null : operands.get(0);
+    }
+
+    private static Matrix concatenate(Matrix ctm, List<COSBase> operands) {
+        if (ctm == null || operands.size() < 6) {
+            return ctm;
+        }
+        float[] values = new float[6];
+        for (int i = 0; i < 6; i++) {
+            if (!(operands.get(i) instanceof COSNumber number)) {
+                return ctm;
+            }
+            values[i] = number.floatValue();
+        }
+        Matrix matrix = new Matrix(values[0], values[1], values[2], values[3], values[4], values[5]);
+        return matrix.multiply(ctm);
+    }
+
+    // ---- Unused resources ----
+
+    private int removeUnused() {
+        PDAcroForm acroForm = document.getDocumentCatalog().getAcroForm(null);
+        if (acroForm != null && acroForm.getDefaultResources() != null) {
+            unprunable.add(acroForm.getDefaultResources().getCOSObject());
+        }
+
+        int removed = 0;
+        for (Map.Entry<COSDictionary, Usage> entry : usages.entrySet()) {
+            COSDictionary resources = entry.getKey();
+            if (unprunable.contains(resources)) {
+                continue;
+            }
+            Usage usage = entry.getValue();
+            removed += prune(resources.getCOSDictionary(COSName.XOBJECT), usage.xObjects);
+            removed += prune(resources.getCOSDictionary(COSName.FONT), usage.fonts);
+            removed += prune(resources.getCOSDictionary(COSName.EXT_G_STATE), usage.extGStates);
+        }
+        return removed;
+    }
+
+    private static int prune(COSDictionary entries, Set<COSName> used) {
+        if (entries == null) {
+            return 0;
+        }
+        int removed = 0;
+        for (COSName name : new ArrayList<>(entries.keySet())) {
+            if (!used.contains(name)) {
+                entries.removeItem(name);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    // ---- Duplicate streams ----
+
+    private int mergeDuplicates() throws IOException {
+        Map<String, COSStream> canonical = new HashMap<>();
+        int merged = 0;
+
+        for (COSDictionary resources : usages.keySet()) {
+            COSDictionary xObjects = resources.getCOSDictionary(COSName.XOBJECT);
+            if (xObjects == null) {
+                continue;
+            }
+            for (COSName name : new ArrayList<>(xObjects.keySet())) {
+                if (xObjects.getDictionaryObject(name) instanceof COSStream stream
+                        && COSName.IMAGE.equals(stream.getCOSName(COSName.SUBTYPE))) {
+                    COSStream kept = canonical.computeIfAbsent(digest(stream, 0), d -> stream);
+                    if (kept != stream) {
+                        xObjects.setItem(name, kept);
+                        mergeImageUse(stream, kept);
+                        merged++;
+                    }
+                }
+            }
+        }
+
+        for (COSDictionary font : new ArrayList<>(fonts)) {
+            List<COSDictionary> descriptors = new ArrayList<>();
+            descriptors.add(font.getCOSDictionary(COSName.FONT_DESC));
+            COSArray descendants = font.getCOSArray(COSName.DESCENDANT_FONTS);
+            if (descendants != null) {
+                for (int i = 0; i < descendants.size(); i++) {
+                    if (descendants.getObject(i) instanceof COSDictionary descendant) {
+                        descriptors.add(descendant.getCOSDictionary(COSName.FONT_DESC));
+                    }
+                }
+            }
+            for (COSDictionary descriptor : descriptors) {
+                if (descriptor == null) {
+                    continue;
+                }
+                for (COSName key : List.of(COSName.FONT_FILE, COSName.FONT_FILE2, COSName.FONT_FILE3)) {
+                    COSStream fontFile = descriptor.getCOSStream(key);
+                    if (fontFile == null) {
+                        continue;
+                    }
+                    COSStream kept = canonical.computeIfAbsent(digest(fontFile, 0), d -> fontFile);
+                    if (kept != fontFile) {
+                        descriptor.setItem(key, kept);
+                        merged++;
+                    }
+                    streams.add(kept);
+                }
+            }
+        }
+        return merged;
+    }
+
+    private void mergeImageUse(COSStream duplicate, COSStream kept) {
+        streams.remove(duplicate);
+        if (unknownScale.remove(duplicate)) {
+            unknownScale.add(kept);
+        }
+        double[] size = imageSizes.remove(duplicate);
+        if (size != null) {
+            double[] keptSize = imageSizes.computeIfAbsent(kept, s -> new double[2]);
+            keptSize[0] = Math.max(keptSize[0], size[0]);
+            keptSize[1] = Math.max(keptSize[1], size[1]);
+        }
+    }
+
+    /**
+     * Content hash of a stream: its encoded bytes plus its dictionary, where
+     * referenced objects are described by their content (so equal images with
+     * equal soft masks or decode parameters match even if those are separate objects).
+     */
+    private String digest(COSStream stream, int depth) throws IOException {
+        String known = digests.get(stream);
+        if (known != null) {
+            return known;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        digest.update(describeEntries(stream, depth).getBytes(StandardCharsets.UTF_8));
+        try (InputStream in = stream.createRawInputStream()) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        String result = HexFormat.of().formatHex(digest.digest());
+        digests.put(stream, result);
+        return result;
+    }
+
+    private String describe(COSBase value, int depth) throws IOException {
+        if (value instanceof COSObject reference) {
+            COSBase target = reference.getObject();
+            if (depth >= MAX_DIGEST_DEPTH) {
+                return "ref:" + objectIds.computeIfAbsent(target, v -> objectIds.size());
+            }
+            return target instanceof COSStream stream
+                    ? "stream:" + digest(stream, depth + 1)
+                    : describe(target, depth + 1);
+        }
+        if (value instanceof COSDictionary dictionary) {
+            return describeEntries(dictionary, depth);
+        }
+        if (value instanceof COSArray array) {
+            StringBuilder description = new StringBuilder("[");
+            for (int i = 0; i < array.size(); i++) {
+                description.append(describe(array.get(i), depth)).append(',');
+            }
+            return description.append(']').toString();
+        }
+        return String.valueOf(value);
+    }
+
+    private String describeEntries(COSDictionary dictionary, int depth) throws IOException {
+        StringBuilder description = new StringBuilder("<<");
+        List<COSName> keys = new ArrayList<>(dictionary.keySet());
+        keys.sort(null);
+        for (COSName key : keys) {
+            if (!COSName.LENGTH.equals(key)) {
+                description.append(key.getName()).append('=')
+                        .append(describe(dictionary.getItem(key), depth)).append(';');
+            }
+        }
+        return description.append(">>").toString();
+    }
+
+    // ---- Images ----
+
+    private int recompressImages() {
+        int recompressed = 0;
+        for (Map.Entry<COSStream, double[]> entry : imageSizes.entrySet()) {
+            COSStream stream = entry.getKey();
+            if (unknownScale.contains(stream)) {
+                continue;
+            }
+            try {
+                if (recompress(stream, entry.getValue())) {
+                    recompressed++;
+                }
+            } catch (IOException | RuntimeException e) {
+                // Exotic encodings or color spaces PDFBox can't decode are left as they are
+                logger.debug("Keeping image as is: {}", e.getMessage());
+            }
+        }
+        return recompressed;
+    }
+
+    private boolean recompress(COSStream stream, double[] drawnSize) throws IOException {
+        PDImageXObject image = new PDImageXObject(new PDStream(stream), null);
+        if (!isRecompressible(image, stream)) {
+            return false;
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double targetDpi = preset.getDpi();
+        // Fraction of the pixels needed to keep the target resolution at the largest drawn size
+        double scale = Math.max(drawnSize[0] / 72 * targetDpi / width, drawnSize[1] / 72 * targetDpi / height);
+        boolean downsample = scale * DOWNSAMPLE_THRESHOLD < 1;
+        int targetWidth = downsample ? Math.max(1, (int) Math.round(width * scale)) : width;
+        int targetHeight = downsample ? Math.max(1, (int) Math.round(height * scale)) : height;
+
+        // Decode subsampled but at least twice the target size, then downscale with filtering
+        int subsampling = Math.max(1, Math.min(width / targetWidth, height / targetHeight) / 2);
+        BufferedImage pixels = image.getOpaqueImage(null, subsampling);
+        if (pixels.getWidth() != targetWidth || pixels.getHeight() != targetHeight) {
+            pixels = Thumbnails.of(pixels).forceSize(targetWidth, targetHeight).asBufferedImage();
+        }
+        if (image.getColorSpace().getNumberOfComponents() == 1) {
+            pixels = toGray(pixels);
+        }
+
+        PDImageXObject jpeg = JPEGFactory.createFromImage(document, pixels, preset.getQuality());
+        COSStream encoded = jpeg.getCOSObject();
+        double limit = downsample ? stream.getLength() : stream.getLength() * MIN_RECOMPRESS_GAIN;
+        if (encoded.getLength() >= limit) {
+            return false;
+        }
+
+        // Rewrite the existing object so every reference to it sees the new image
+        try (InputStream in = encoded.createRawInputStream();
+             OutputStream out = stream.createRawOutputStream()) {
+            in.transferTo(out);
+        }
+        stream.setItem(COSName.FILTER, COSName.DCT_DECODE);
+        stream.removeItem(COSName.DECODE_PARMS);
+        stream.removeItem(COSName.DECODE);
+        stream.setInt(COSName.WIDTH, targetWidth);
+        stream.setInt(COSName.HEIGHT, targetHeight);
+        stream.setInt(COSName.BITS_PER_COMPONENT, 8);
+        stream.setItem(COSName.COLORSPACE, encoded.getItem(COSName.COLORSPACE));
+        return true;
+    }
+
+    private static boolean isRecompressible(PDImageXObject image, COSStream stream) throws IOException {
+        if (image.isStencil() || image.getBitsPerComponent() < 8
+                || stream.getItem(COSName.MASK) != null || stream.getLength() < MIN_IMAGE_BYTES) {
+            return false;
+        }
+        if (!Collections.disjoint(image.getStream().getFilters(), KEPT_FILTERS)) {
+            return false;
+        }
+        // Premultiplied soft masks assume the exact base colors
+        COSStream softMask = stream.getCOSStream(COSName.SMASK);
+        if (softMask != null && softMask.getItem(COSName.MATTE) != null) {
+            return false;
+        }
+        // Palettes and spot colors lose their meaning when converted to RGB
+        PDColorSpace colorSpace = image.getColorSpace();
+        return !(colorSpace instanceof PDIndexed || colorSpace instanceof PDSeparation
+                || colorSpace instanceof PDDeviceN);
+    }
+
+    private static BufferedImage toGray(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            return image;
+        }
+        BufferedImage gray = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = gray.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return gray;
+    }
+
+    // ---- Unfiltered streams ----
+
+    private static void flate(COSStream stream) throws IOException {
+        if (stream.getFilters() != null || stream.getLength() < MIN_FLATE_BYTES) {
+            return;
+        }
+        byte[] data;
+        try (InputStream in = stream.createRawInputStream()) {
+            data = in.readAllBytes();
+        }
+        try (OutputStream out = stream.createOutputStream(COSName.FLATE_DECODE)) {
+            out.write(data);
+        }
+    }
+
+    private static <T> Set<T> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+}
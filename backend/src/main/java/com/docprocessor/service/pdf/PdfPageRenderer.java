@@ -0,0 +1,257 @@
+package com.docprocessor.service.pdf;
+
+import com.docprocessor.exception.InvalidFileException;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parallel PDF Page Renderer
+ *
+ * Purpose: Spreads page rendering across cores instead of one PDFRenderer on one thread
+ *
+ * How it works:
+ * - The calling thread and up to (parallelism - 1) helpers each open their own
+ *   PDDocument/PDFRenderer, since neither is thread-safe
+ * - Workers pull the next page number from a shared counter, so slow pages
+ *   don't leave other workers idle
+ * - Rendered images are handed to a separate encode pool, so encoding and
+ *   writing overlap with rendering of the next page
+ * - A semaphore bounds how many rendered rasters are in memory at once
+ */
+@Component
+public class PdfPageRenderer {
+
+    /**
+     * Receives each rendered page. Called from encode threads, possibly
+     * concurrently and not in page order.
+     */
+    @FunctionalInterface
+    public interface PageSink {
+        void accept(int pageIndex, BufferedImage image) throws IOException;
+    }
+
+    private final ExecutorService renderPool;
+    private final ExecutorService encodePool;
+    private final int maxParallelism;
+    private final float maxDpi;
+
+    public PdfPageRenderer(@Value("${pdf.render.threads}") int threads,
+                           @Value("${pdf.render.max.parallelism}") int maxParallelism,
+                           @Value("${pdf.render.max.dpi}") float maxDpi) {
+        this.renderPool = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("pdf-render-"));
+        this.encodePool = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("pdf-encode-"));
+        this.maxParallelism = maxParallelism;
+        this.maxDpi = maxDpi;
+    }
+
+    /**
+     * Render the requested page range, passing every page (0-based index) to the sink.
+     */
+    public void render(PdfSource source, RenderOptions options, PageSink sink) throws IOException {
+        options.validate(maxDpi);
+
+        try (PDDocument document = source.open()) {
+            int pageCount = document.getNumberOfPages();
+            int first = options.getFirstPage() != null ? options.getFirstPage() - 1 : 0;
+            int last = options.getLastPage() != null ? options.getLastPage() - 1 : pageCount - 1;
+            if (first < 0 || last >= pageCount || first > last) {
+                throw new InvalidFileException("Invalid page range for a document with " + pageCount + " pages");
+            }
+
+            int requested = options.getParallelism() != null ? options.getParallelism() : maxParallelism;
+            int parallelism = Math.max(1, Math.min(Math.min(requested, maxParallelism), last - first + 1));
+
+            RenderRun run = new RenderRun(first, last, options.getDpi(), parallelism, sink);
+            List<Helper> helpers = new ArrayList<>();
+            for (int i = 1; i < parallelism; i++) {
+                Helper helper = new Helper(run, source);
+                helper.future = renderPool.submit(helper);
+                helpers.add(helper);
+            }
+
+            Throwable failure = null;
+            try {
+                run.renderPages(document);
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+            }
+            // Always wait for every worker and encode, even after a failure,
+            // so nothing still touches the source or the output files
+            failure = run.finishHelpers(helpers, failure);
+            failure = run.awaitEncodes(failure);
+            if (failure != null) {
+                throw toIOException(failure);
+            }
+        }
+    }
+
+    /**
+     * Shared state of one render request.
+     */
+    private class RenderRun {
+        private final AtomicInteger nextPage;
+        private final int last;
+        private final float dpi;
+        private final PageSink sink;
+        private final Semaphore inFlight;
+        private final AtomicBoolean failed = new AtomicBoolean();
+        private final List<CompletableFuture<Void>> encodes = new ArrayList<>();
+
+        RenderRun(int first, int last, float dpi, int parallelism, PageSink sink) {
+            this.nextPage = new AtomicInteger(first);
+            this.last = last;
+            this.dpi = dpi;
+            this.sink = sink;
+            // One raster being rendered plus one being encoded per worker
+            this.inFlight = new Semaphore(parallelism * 2);
+        }
+
+        boolean hasWork() {
+            return !failed.get() && nextPage.get() <= last;
+        }
+
+        void renderPages(PDDocument document) throws IOException {
+            PDFRenderer renderer = new PDFRenderer(document);
+            int pageIndex;
+            try {
+                while (!failed.get() && (pageIndex = nextPage.getAndIncrement()) <= last) {
+                    inFlight.acquireUninterruptibly();
+                    BufferedImage image;
+                    try {
+                        image = renderer.renderImageWithDPI(pageIndex, dpi, ImageType.RGB);
+                    } catch (IOException | RuntimeException e) {
+                        inFlight.release();
+                        throw e;
+                    }
+                    submitEncode(pageIndex, image);
+                }
+            } catch (IOException | RuntimeException e) {
+                failed.set(true);
+                throw e;
+            }
+        }
+
+        private void submitEncode(int pageIndex, BufferedImage image) {
+            CompletableFuture<Void> encode = CompletableFuture.runAsync(() -> {
+                try {
+                    if (!failed.get()) {
+                        sink.accept(pageIndex, image);
+                    }
+                } catch (IOException e) {
+                    failed.set(true);
+                    throw new UncheckedIOException(e);
+                } finally {
+                    inFlight.release();
+                }
+            }, encodePool);
+            synchronized (encodes) {
+                encodes.add(encode);
+            }
+        }
+
+        /**
+         * Helpers that never got a thread are claimed here and skipped;
+         * running helpers are waited for so no worker outlives the request.
+         */
+        Throwable finishHelpers(List<Helper> helpers, Throwable failure) {
+            for (Helper helper : helpers) {
+                if (helper.claimed.compareAndSet(false, true)) {
+                    continue;
+                }
+                try {
+                    helper.future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failed.set(true);
+                    failure = failure != null ? failure : e;
+                } catch (ExecutionException e) {
+                    failure = failure != null ? failure : e.getCause();
+                }
+            }
+            return failure;
+        }
+
+        Throwable awaitEncodes(Throwable failure) {
+            List<CompletableFuture<Void>> pending;
+            synchronized (encodes) {
+                pending = new ArrayList<>(encodes);
+            }
+            try {
+                CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.set(true);
+                return failure != null ? failure : e;
+            } catch (ExecutionException e) {
+                return failure != null ? failure : e.getCause();
+            }
+            return failure;
+        }
+    }
+
+    private class Helper implements Runnable {
+        private final RenderRun run;
+        private final PdfSource source;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private Future<?> future;
+
+        Helper(RenderRun run, PdfSource source) {
+            this.run = run;
+            this.source = source;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true) || !run.hasWork()) {
+                return;
+            }
+            try (PDDocument document = source.open()) {
+                run.renderPages(document);
+            } catch (IOException e) {
+                run.failed.set(true);
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static IOException toIOException(Throwable failure) {
+        if (failure instanceof UncheckedIOException unchecked) {
+            return unchecked.getCause();
+        }
+        if (failure instanceof IOException io) {
+            return io;
+        }
+        if (failure instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        if (failure instanceof InterruptedException) {
+            return new IOException("Interrupted while rendering", failure);
+        }
+        return new IOException(failure);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renderPool.shutdownNow();
+        encodePool.shutdownNow();
+    }
+}
@@ -0,0 +1,148 @@
+package com.docprocessor.service.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.font.encoding.GlyphList;
+import org.apache.pdfbox.pdmodel.font.encoding.WinAnsiEncoding;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.state.PDExtendedGraphicsState;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * PDF Resource Cache
+ *
+ * Purpose: Lets page-level operations share one font, graphics state or form
+ * XObject per document instead of creating a new one on every page
+ *
+ * How it works:
+ * - PDResources reuses the existing name when the same object is added again,
+ *   so handing every page the same instance leaves one indirect object in the
+ *   file, however many pages refer to it
+ * - Fonts, their glyph widths, opacity graphics states and form XObjects
+ *   (built by the caller on first use) are created once and kept by key
+ * - Text helpers replace what the standard 14 fonts can't encode, so user
+ *   text never makes showText throw
+ *
+ * Not thread-safe, like the document it belongs to. To draw with a cached font
+ * from other threads, cache it first and give each thread its own sharedFont().
+ */
+final class PdfResourceCache {
+
+    /** Characters the standard 14 fonts can show (WinAnsiEncoding) */
+    private static final BitSet ENCODABLE = new BitSet();
+
+    static {
+        GlyphList glyphs = GlyphList.getAdobeGlyphList();
+        for (String name : WinAnsiEncoding.INSTANCE.getCodeToNameMap().values()) {
+            String unicode = glyphs.toUnicode(name);
+            if (unicode != null && unicode.length() == 1) {
+                ENCODABLE.set(unicode.charAt(0));
+            }
+        }
+    }
+
+    /**
+     * Builds a form XObject for the document on first use.
+     */
+    @FunctionalInterface
+    interface FormFactory {
+        PDFormXObject create(PDDocument document) throws IOException;
+    }
+
+    private final PDDocument document;
+    private final Map<Standard14Fonts.FontName, PDType1Font> fonts = new EnumMap<>(Standard14Fonts.FontName.class);
+    private final Map<Standard14Fonts.FontName, float[]> widths = new EnumMap<>(Standard14Fonts.FontName.class);
+    private final Map<Float, PDExtendedGraphicsState> opacities = new HashMap<>();
+    private final Map<String, PDFormXObject> forms = new HashMap<>();
+
+    PdfResourceCache(PDDocument document) {
+        this.document = document;
+    }
+
+    PDType1Font font(Standard14Fonts.FontName name) {
+        return fonts.computeIfAbsent(name, PDType1Font::new);
+    }
+
+    /**
+     * A new wrapper around the cached font's dictionary. PDFont instances keep
+     * unsynchronised encoding caches, so each thread needs its own, but they can
+     * all write the same font object into their pages.
+     */
+    PDType1Font sharedFont(Standard14Fonts.FontName name) throws IOException {
+        return new PDType1Font(font(name).getCOSObject());
+    }
+
+    /**
+     * Glyph widths (1/1000 em) of every encodable character, indexed by char.
+     * The array is never modified, so it may be read from any thread.
+     */
+    float[] widths(Standard14Fonts.FontName name) throws IOException {
+        float[] cached = widths.get(name);
+        if (cached == null) {
+            PDType1Font font = font(name);
+            cached = new float[ENCODABLE.length()];
+            for (int c = ENCODABLE.nextSetBit(0); c >= 0; c = ENCODABLE.nextSetBit(c + 1)) {
+                cached[c] = font.getStringWidth(String.valueOf((char) c));
+            }
+            widths.put(name, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Graphics state that sets both stroking and non-stroking opacity.
+     */
+    PDExtendedGraphicsState opacity(float alpha) {
+        return opacities.computeIfAbsent(alpha, key -> {
+            PDExtendedGraphicsState state = new PDExtendedGraphicsState();
+            state.setNonStrokingAlphaConstant(key);
+            state.setStrokingAlphaConstant(key);
+            return state;
+        });
+    }
+
+    PDFormXObject form(String key, FormFactory factory) throws IOException {
+        PDFormXObject form = forms.get(key);
+        if (form == null) {
+            form = factory.create(document);
+            forms.put(key, form);
+        }
+        return form;
+    }
+
+    /**
+     * The character as the standard 14 fonts will show it: control characters
+     * become spaces and anything outside WinAnsiEncoding becomes '?'.
+     */
+    static char encodable(char c) {
+        if (Character.isISOControl(c)) {
+            return ' ';
+        }
+        return ENCODABLE.get(c) ? c : '?';
+    }
+
+    static String encodable(CharSequence text) {
+        StringBuilder result = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            result.append(encodable(text.charAt(i)));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Width in points of encodable text, using widths from {@link #widths}.
+     */
+    static float width(CharSequence text, float[] widths, float fontSize) {
+        float width = 0;
+        for (int i = 0; i < text.length(); i++) {
+            width += widths[text.charAt(i)];
+        }
+        return width * fontSize / 1000;
+    }
+}
@@ -3,16 +3,24 @@ package com.docprocessor.service.pdf;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
+import java.io.OutputStream;
 import java.util.List;
 
 public interface PdfService {
     File mergePdfs(List<MultipartFile> files);
     List<File> splitPdf(MultipartFile file, int pageCount);
-    File compressPdf(MultipartFile file);
+    List<File> splitPdf(MultipartFile file, SplitOptions options);
+    void splitPdfZip(MultipartFile file, SplitOptions options, OutputStream outputStream);
+    File compressPdf(MultipartFile file, PdfCompressionPreset preset);
     File protectPdf(MultipartFile file, String password);
     File addPageNumbers(MultipartFile file);
+    File addPageNumbers(MultipartFile file, boolean incremental);
+    File stampPdf(MultipartFile file, StampOptions options);
     List<File> pdfToJpg(MultipartFile file);
+    List<File> pdfToJpg(MultipartFile file, RenderOptions options);
     List<File> pdfToPng(MultipartFile file);
+    List<File> pdfToPng(MultipartFile file, RenderOptions options);
+    void pdfToImagesZip(MultipartFile file, String format, RenderOptions options, OutputStream outputStream);
     File imageToPdf(List<MultipartFile> images);
     File excelToPdf(MultipartFile file);
 }
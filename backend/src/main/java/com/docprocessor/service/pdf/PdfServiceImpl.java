@@ -1,139 +1,227 @@
 package com.docprocessor.service.pdf;
 
+import com.docprocessor.cache.CacheKey;
+import com.docprocessor.cache.ResultCache;
+import com.docprocessor.exception.InvalidFileException;
 import com.docprocessor.exception.ProcessingException;
-import org.apache.pdfbox.Loader;
+import com.docprocessor.metrics.OperationMetrics;
+import org.apache.pdfbox.pdfwriter.compress.CompressParameters;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.encryption.AccessPermission;
 import org.apache.pdfbox.pdmodel.encryption.StandardProtectionPolicy;
-import org.apache.pdfbox.pdmodel.font.PDType1Font;
-import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
-import org.apache.pdfbox.rendering.PDFRenderer;
-import org.apache.pdfbox.rendering.ImageType;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @Service
 public class PdfServiceImpl implements PdfService {
 
     private static final Logger logger = LoggerFactory.getLogger(PdfServiceImpl.class);
     private static final String TEMP_DIR = "./temp/";
+    private static final int MAX_STAMP_FONT_SIZE = 72;
+
+    private final PdfDocumentLoader documentLoader;
+    private final PdfPageRenderer pageRenderer;
+    private final PdfImageImporter imageImporter;
+    private final ExcelPdfConverter excelConverter;
+    private final PdfSplitter splitter;
+    private final PdfMerger merger;
+    private final ResultCache resultCache;
+
+    public PdfServiceImpl(PdfDocumentLoader documentLoader, PdfPageRenderer pageRenderer,
+                          PdfImageImporter imageImporter, ExcelPdfConverter excelConverter,
+                          PdfSplitter splitter, PdfMerger merger, ResultCache resultCache) {
+        this.documentLoader = documentLoader;
+        this.pageRenderer = pageRenderer;
+        this.imageImporter = imageImporter;
+        this.excelConverter = excelConverter;
+        this.splitter = splitter;
+        this.merger = merger;
+        this.resultCache = resultCache;
+    }
 
     @Override
     public File mergePdfs(List<MultipartFile> files) {
-        List<PDDocument> documentsToClose = new ArrayList<>();
-        try {
-            PDDocument mergedDocument = new PDDocument();
-
-            // Load each PDF and import all its pages into the merged document
-            for (MultipartFile file : files) {
-                PDDocument sourceDoc = Loader.loadPDF(file.getBytes());
-                documentsToClose.add(sourceDoc);
-
-                for (int i = 0; i < sourceDoc.getNumberOfPages(); i++) {
-                    mergedDocument.importPage(sourceDoc.getPage(i));
-                }
-            }
-
-            File outputFile = new File(TEMP_DIR + "merged_" + UUID.randomUUID() + ".pdf");
-            mergedDocument.save(outputFile);
-            mergedDocument.close();
-
-            // Close all source documents after saving
-            for (PDDocument doc : documentsToClose) {
-                doc.close();
-            }
+        CacheKey key = CacheKey.builder("pdf.merge")
+                .inputs(files)
+                .build();
+        return resultCache.getOrCompute(key, () -> List.of(merge(files))).get(0);
+    }
 
-            logger.info("PDFs merged successfully");
+    private File merge(List<MultipartFile> files) {
+        File outputFile = new File(TEMP_DIR + "merged_" + UUID.randomUUID() + ".pdf");
+        try {
+            int pages = merger.merge(files, outputFile);
+            OperationMetrics.recordPages(pages);
+            logger.info("PDFs merged successfully: {} files, {} pages", files.size(), pages);
             return outputFile;
         } catch (IOException e) {
-            // Clean up on error
-            for (PDDocument doc : documentsToClose) {
-                try {
-                    doc.close();
-                } catch (IOException ignored) {}
-            }
+            outputFile.delete();
             throw new ProcessingException("Failed to merge PDFs", e);
         }
     }
 
     @Override
     public List<File> splitPdf(MultipartFile file, int pageCount) {
-        try {
-            PDDocument document = Loader.loadPDF(file.getBytes());
-            List<File> splitFiles = new ArrayList<>();
+        return splitPdf(file, SplitOptions.everyPages(pageCount));
+    }
 
-            int totalPages = document.getNumberOfPages();
-            int currentPage = 0;
+    @Override
+    public List<File> splitPdf(MultipartFile file, SplitOptions options) {
+        options.validate();
+        CacheKey key = CacheKey.builder("pdf.split")
+                .input(file)
+                .param("pageCount", options.getPageCount())
+                .param("ranges", options.getRanges())
+                .param("byOutline", options.isByOutline())
+                .param("maxPartBytes", options.getMaxPartBytes())
+                .build();
+        return resultCache.getOrCompute(key, () -> split(file, options));
+    }
 
-            while (currentPage < totalPages) {
-                PDDocument splitDoc = new PDDocument();
-                int endPage = Math.min(currentPage + pageCount, totalPages);
+    private List<File> split(MultipartFile file, SplitOptions options) {
+        Map<Integer, File> splitFiles = new ConcurrentSkipListMap<>();
+        boolean succeeded = false;
+        try (PdfSource source = documentLoader.openSource(file)) {
+            List<PdfSplitter.Part> parts = splitter.split(source, options, (partIndex, part) -> {
+                File outputFile = new File(TEMP_DIR + "split_" + UUID.randomUUID() + ".pdf");
+                // Tracked before saving, so a part that fails halfway is removed too
+                splitFiles.put(partIndex, outputFile);
+                part.save(outputFile);
+            });
+
+            OperationMetrics.recordPages(countPages(parts));
+            logger.info("PDF split into {} parts", parts.size());
+            succeeded = true;
+            return new ArrayList<>(splitFiles.values());
+        } catch (IOException e) {
+            throw new ProcessingException("Failed to split PDF", e);
+        } finally {
+            // Any failure, not only I/O (an invalid page range, a failed part task)
+            if (!succeeded) {
+                splitFiles.values().forEach(File::delete);
+            }
+        }
+    }
 
-                for (int i = currentPage; i < endPage; i++) {
-                    splitDoc.addPage(document.getPage(i));
-                }
+    /**
+     * Split straight into a ZIP on the given stream. Each part is saved to a scratch
+     * file (checksummed on the way) and copied in as a STORED entry, since PDF
+     * streams are compressed already; parts appear in the order they finish.
+     */
+    @Override
+    public void splitPdfZip(MultipartFile file, SplitOptions options, OutputStream outputStream) {
+        options.validate();
+        try (PdfSource source = documentLoader.openSource(file)) {
+            ZipOutputStream zip = new ZipOutputStream(outputStream);
+            List<PdfSplitter.Part> parts = splitter.split(source, options, (partIndex, part) -> {
+                Path scratch = Path.of(TEMP_DIR, "split_part_" + UUID.randomUUID() + ".pdf");
+                try {
+                    CRC32 crc = new CRC32();
+                    try (OutputStream out = new CheckedOutputStream(
+                            new BufferedOutputStream(Files.newOutputStream(scratch)), crc)) {
+                        part.save(out);
+                    }
 
-                File outputFile = new File(TEMP_DIR + "split_" + UUID.randomUUID() + ".pdf");
-                splitDoc.save(outputFile);
-                splitDoc.close();
-                splitFiles.add(outputFile);
+                    ZipEntry entry = new ZipEntry(String.format("part_%03d.pdf", partIndex + 1));
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(Files.size(scratch));
+                    entry.setCompressedSize(entry.getSize());
+                    entry.setCrc(crc.getValue());
 
-                currentPage = endPage;
-            }
+                    synchronized (zip) {
+                        zip.putNextEntry(entry);
+                        Files.copy(scratch, zip);
+                        zip.closeEntry();
+                    }
+                } finally {
+                    Files.deleteIfExists(scratch);
+                }
+            });
+            // Finish rather than close: the servlet container owns the response stream
+            zip.finish();
+            OperationMetrics.recordPages(countPages(parts));
 
-            document.close();
-            logger.info("PDF split into {} parts", splitFiles.size());
-            return splitFiles;
+            logger.info("PDF split into {} parts streamed as ZIP", parts.size());
         } catch (IOException e) {
-            throw new ProcessingException("Failed to split PDF", e);
+            throw new ProcessingException("Failed to stream PDF parts", e);
         }
     }
 
+    private static int countPages(List<PdfSplitter.Part> parts) {
+        return parts.stream().mapToInt(PdfSplitter.Part::pageCount).sum();
+    }
+
     @Override
-    public File compressPdf(MultipartFile file) {
-        try {
-            PDDocument document = Loader.loadPDF(file.getBytes());
+    public File compressPdf(MultipartFile file, PdfCompressionPreset preset) {
+        CacheKey key = CacheKey.builder("pdf.compress")
+                .input(file)
+                .param("preset", preset.name())
+                .build();
+        return resultCache.getOrCompute(key, () -> List.of(compress(file, preset))).get(0);
+    }
 
-            // Basic compression by optimizing images
-            PDDocument compressedDoc = new PDDocument();
-            for (PDPage page : document.getPages()) {
-                compressedDoc.addPage(page);
-            }
+    private File compress(MultipartFile file, PdfCompressionPreset preset) {
+        File outputFile = new File(TEMP_DIR + "compressed_" + UUID.randomUUID() + ".pdf");
+        boolean succeeded = false;
+        try (PDDocument document = documentLoader.load(file)) {
+            PdfOptimizer.Result result = new PdfOptimizer(document, preset).optimize();
 
-            File outputFile = new File(TEMP_DIR + "compressed_" + UUID.randomUUID() + ".pdf");
-            compressedDoc.save(outputFile);
+            document.save(outputFile, CompressParameters.DEFAULT_COMPRESSION);
+            OperationMetrics.recordPages(document.getNumberOfPages());
 
-            document.close();
-            compressedDoc.close();
+            // Never hand back something bigger than the upload
+            if (outputFile.length() >= file.getSize()) {
+                try (InputStream in = file.getInputStream()) {
+                    Files.copy(in, outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
 
-            logger.info("PDF compressed successfully");
+            logger.info("PDF compressed ({}): {} -> {} bytes, {} images recompressed, "
+                            + "{} duplicate streams merged, {} unused resources removed",
+                    preset, file.getSize(), outputFile.length(), result.imagesRecompressed(),
+                    result.duplicatesMerged(), result.resourcesRemoved());
+            succeeded = true;
             return outputFile;
         } catch (IOException e) {
             throw new ProcessingException("Failed to compress PDF", e);
+        } finally {
+            // Also covers a save or fallback copy that fails halfway
+            if (!succeeded) {
+                outputFile.delete();
+            }
         }
     }
 
     @Override
     public File protectPdf(MultipartFile file, String password) {
-        try {
-            PDDocument document = Loader.loadPDF(file.getBytes());
-
+        try (PDDocument document = documentLoader.load(file)) {
             AccessPermission ap = new AccessPermission();
             StandardProtectionPolicy spp = new StandardProtectionPolicy(password, password, ap);
             spp.setEncryptionKeyLength(128);
@@ -143,7 +231,7 @@ public class PdfServiceImpl implements PdfService {
 
             File outputFile = new File(TEMP_DIR + "protected_" + UUID.randomUUID() + ".pdf");
             document.save(outputFile);
-            document.close();
+            OperationMetrics.recordPages(document.getNumberOfPages());
 
             logger.info("PDF password protected successfully");
             return outputFile;
@@ -154,98 +242,188 @@ public class PdfServiceImpl implements PdfService {
 
     @Override
     public File addPageNumbers(MultipartFile file) {
-        try {
-            PDDocument document = Loader.loadPDF(file.getBytes());
-            int pageNumber = 1;
-
-            for (PDPage page : document.getPages()) {
-                PDPageContentStream contentStream = new PDPageContentStream(
-                        document, page, PDPageContentStream.AppendMode.APPEND, true, true);
-
-                contentStream.beginText();
-                contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 12);
+        return addPageNumbers(file, false);
+    }
 
-                PDRectangle pageSize = page.getMediaBox();
-                float x = pageSize.getWidth() / 2;
-                float y = 30;
+    @Override
+    public File addPageNumbers(MultipartFile file, boolean incremental) {
+        return stampPdf(file, StampOptions.builder().pageNumbers(true).incremental(incremental).build());
+    }
 
-                contentStream.newLineAtOffset(x, y);
-                contentStream.showText(String.valueOf(pageNumber));
-                contentStream.endText();
-                contentStream.close();
+    @Override
+    public File stampPdf(MultipartFile file, StampOptions options) {
+        if (!options.hasOverlays()) {
+            throw new InvalidFileException("Nothing to stamp: ask for page numbers, a header, a footer or a watermark");
+        }
+        if (!(options.getFontSize() > 0 && options.getFontSize() <= MAX_STAMP_FONT_SIZE)) {
+            throw new InvalidFileException("Font size must be between 0 and " + MAX_STAMP_FONT_SIZE);
+        }
+        if (!(options.getWatermarkOpacity() > 0 && options.getWatermarkOpacity() <= 1)) {
+            throw new InvalidFileException("Watermark opacity must be between 0 and 1");
+        }
+        CacheKey key = CacheKey.builder("pdf.stamp")
+                .input(file)
+                .param("pageNumbers", options.isPageNumbers())
+                .param("pageNumberFormat", options.getPageNumberFormat())
+                .param("header", options.getHeader())
+                .param("footer", options.getFooter())
+                .param("watermark", options.getWatermark())
+                .param("watermarkOpacity", options.getWatermarkOpacity())
+                .param("fontSize", options.getFontSize())
+                .param("incremental", options.isIncremental())
+                .build();
+        return resultCache.getOrCompute(key, () -> List.of(stamp(file, options))).get(0);
+    }
 
-                pageNumber++;
+    private File stamp(MultipartFile file, StampOptions options) {
+        try (PdfSource source = documentLoader.openSource(file);
+             PDDocument document = source.open()) {
+            int pages = new PdfStamper(document, options).stamp();
+
+            File outputFile = new File(TEMP_DIR + "stamped_" + UUID.randomUUID() + ".pdf");
+            // An encrypted increment would have to be encrypted with the original's keys
+            boolean incremental = options.isIncremental() && !document.isEncrypted();
+            if (incremental) {
+                PdfIncrementalWriter.save(document, source.getPath(), outputFile);
+            } else {
+                document.save(outputFile);
             }
+            OperationMetrics.recordPages(pages);
 
-            File outputFile = new File(TEMP_DIR + "numbered_" + UUID.randomUUID() + ".pdf");
-            document.save(outputFile);
-            document.close();
-
-            logger.info("Page numbers added successfully");
+            logger.info("Stamped {} pages ({})", pages, incremental ? "incremental update" : "full rewrite");
             return outputFile;
         } catch (IOException e) {
-            throw new ProcessingException("Failed to add page numbers", e);
+            throw new ProcessingException("Failed to stamp PDF", e);
         }
     }
 
     @Override
     public List<File> pdfToJpg(MultipartFile file) {
-        return pdfToImage(file, "jpg");
+        return pdfToImage(file, "jpg", RenderOptions.builder().build());
+    }
+
+    @Override
+    public List<File> pdfToJpg(MultipartFile file, RenderOptions options) {
+        return pdfToImage(file, "jpg", options);
     }
 
     @Override
     public List<File> pdfToPng(MultipartFile file) {
-        return pdfToImage(file, "png");
+        return pdfToImage(file, "png", RenderOptions.builder().build());
     }
 
-    private List<File> pdfToImage(MultipartFile file, String format) {
-        try {
-            PDDocument document = Loader.loadPDF(file.getBytes());
-            PDFRenderer renderer = new PDFRenderer(document);
-            List<File> imageFiles = new ArrayList<>();
+    @Override
+    public List<File> pdfToPng(MultipartFile file, RenderOptions options) {
+        return pdfToImage(file, "png", options);
+    }
 
-            for (int i = 0; i < document.getNumberOfPages(); i++) {
-                BufferedImage image = renderer.renderImageWithDPI(i, 300, ImageType.RGB);
-                File outputFile = new File(TEMP_DIR + "page_" + (i + 1) + "_" + UUID.randomUUID() + "." + format);
+    private List<File> pdfToImage(MultipartFile file, String format, RenderOptions options) {
+        // Parallelism only changes how fast the pages come out, not what they look like
+        CacheKey key = CacheKey.builder("pdf.to-" + format)
+                .input(file)
+                .param("dpi", options.getDpi())
+                .param("firstPage", options.getFirstPage())
+                .param("lastPage", options.getLastPage())
+                .build();
+        return resultCache.getOrCompute(key, () -> renderPages(file, format, options));
+    }
+
+    private List<File> renderPages(MultipartFile file, String format, RenderOptions options) {
+        String batchId = UUID.randomUUID().toString();
+        Map<Integer, File> imageFiles = new ConcurrentSkipListMap<>();
+        boolean succeeded = false;
+        try (PdfSource source = documentLoader.openSource(file)) {
+            pageRenderer.render(source, options, (pageIndex, image) -> {
+                File outputFile = new File(TEMP_DIR + "page_" + (pageIndex + 1) + "_" + batchId + "." + format);
+                // Tracked before writing, so a page that fails halfway is removed too
+                imageFiles.put(pageIndex, outputFile);
                 ImageIO.write(image, format, outputFile);
-                imageFiles.add(outputFile);
-            }
+            });
 
-            document.close();
+            OperationMetrics.recordPages(imageFiles.size());
             logger.info("PDF converted to {} images", imageFiles.size());
-            return imageFiles;
+            succeeded = true;
+            return new ArrayList<>(imageFiles.values());
         } catch (IOException e) {
             throw new ProcessingException("Failed to convert PDF to images", e);
+        } finally {
+            // Any failure, not only I/O (a bad page range, a failed render worker)
+            if (!succeeded) {
+                imageFiles.values().forEach(File::delete);
+            }
+        }
+    }
+
+    /**
+     * Render pages straight into a ZIP on the given stream. Each page is encoded in
+     * memory and written as a STORED entry (JPEG/PNG don't deflate any further), so
+     * nothing touches the temp directory and memory is bounded by the renderer's
+     * in-flight limit rather than the page count.
+     */
+    @Override
+    public void pdfToImagesZip(MultipartFile file, String format, RenderOptions options, OutputStream outputStream) {
+        if (!"jpg".equals(format) && !"png".equals(format)) {
+            throw new IllegalArgumentException("Unsupported image format: " + format);
+        }
+
+        try (PdfSource source = documentLoader.openSource(file)) {
+            ZipOutputStream zip = new ZipOutputStream(outputStream);
+            AtomicInteger pages = new AtomicInteger();
+            pageRenderer.render(source, options, (pageIndex, image) -> {
+                ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+                CheckedOutputStream checked = new CheckedOutputStream(encoded, new CRC32());
+                ImageIO.write(image, format, checked);
+
+                ZipEntry entry = new ZipEntry(String.format("page_%04d.%s", pageIndex + 1, format));
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(encoded.size());
+                entry.setCompressedSize(encoded.size());
+                entry.setCrc(checked.getChecksum().getValue());
+
+                synchronized (zip) {
+                    zip.putNextEntry(entry);
+                    encoded.writeTo(zip);
+                    zip.closeEntry();
+                }
+                pages.incrementAndGet();
+            });
+            // Finish rather than close: the servlet container owns the response stream
+            zip.finish();
+            OperationMetrics.recordPages(pages.get());
+
+            logger.info("PDF pages streamed as {} ZIP", format);
+        } catch (IOException e) {
+            throw new ProcessingException("Failed to stream PDF pages", e);
         }
     }
 
     @Override
     public File imageToPdf(List<MultipartFile> images) {
-        try {
-            PDDocument document = new PDDocument();
+        CacheKey key = CacheKey.builder("pdf.from-images")
+                .inputs(images)
+                .build();
+        return resultCache.getOrCompute(key, () -> List.of(imagesToPdf(images))).get(0);
+    }
 
-            for (MultipartFile imageFile : images) {
-                BufferedImage bim = ImageIO.read(imageFile.getInputStream());
-                float width = bim.getWidth();
-                float height = bim.getHeight();
+    private File imagesToPdf(List<MultipartFile> images) {
+        // Scratch documents holding the image streams must outlive the save
+        try (PdfImageImporter.ImportedImages imported = imageImporter.importImages(images);
+             PDDocument document = documentLoader.createDocument()) {
+            for (PDImageXObject pdImage : imported.getImages()) {
+                float width = pdImage.getWidth();
+                float height = pdImage.getHeight();
 
                 PDPage page = new PDPage(new PDRectangle(width, height));
                 document.addPage(page);
 
-                File tempImage = new File(TEMP_DIR + UUID.randomUUID() + "_temp.png");
-                ImageIO.write(bim, "png", tempImage);
-
-                PDImageXObject pdImage = PDImageXObject.createFromFile(tempImage.getAbsolutePath(), document);
-                PDPageContentStream contentStream = new PDPageContentStream(document, page);
-                contentStream.drawImage(pdImage, 0, 0, width, height);
-                contentStream.close();
-
-                tempImage.delete();
+                try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+                    contentStream.drawImage(pdImage, 0, 0, width, height);
+                }
             }
 
             File outputFile = new File(TEMP_DIR + "images_to_pdf_" + UUID.randomUUID() + ".pdf");
             document.save(outputFile);
-            document.close();
+            OperationMetrics.recordPages(document.getNumberOfPages());
 
             logger.info("Images converted to PDF successfully");
             return outputFile;
@@ -256,56 +434,28 @@ public class PdfServiceImpl implements PdfService {
 
     @Override
     public File excelToPdf(MultipartFile file) {
-        try {
-            Workbook workbook = new XSSFWorkbook(file.getInputStream());
-            PDDocument document = new PDDocument();
-
-            for (int sheetIndex = 0; sheetIndex < workbook.getNumberOfSheets(); sheetIndex++) {
-                Sheet sheet = workbook.getSheetAt(sheetIndex);
-                PDPage page = new PDPage(PDRectangle.A4);
-                document.addPage(page);
-
-                PDPageContentStream contentStream = new PDPageContentStream(document, page);
-                contentStream.beginText();
-                contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 10);
-                contentStream.newLineAtOffset(50, 750);
-
-                int rowNum = 0;
-                for (Row row : sheet) {
-                    if (rowNum > 50) break; // Limit rows per page
-
-                    StringBuilder rowText = new StringBuilder();
-                    for (Cell cell : row) {
-                        switch (cell.getCellType()) {
-                            case STRING:
-                                rowText.append(cell.getStringCellValue()).append(" | ");
-                                break;
-                            case NUMERIC:
-                                rowText.append(cell.getNumericCellValue()).append(" | ");
-                                break;
-                            default:
-                                rowText.append(" | ");
-                        }
-                    }
-
-                    contentStream.showText(rowText.toString());
-                    contentStream.newLineAtOffset(0, -15);
-                    rowNum++;
-                }
-
-                contentStream.endText();
-                contentStream.close();
-            }
+        CacheKey key = CacheKey.builder("pdf.from-excel")
+                .input(file)
+                .build();
+        return resultCache.getOrCompute(key, () -> List.of(convertExcel(file))).get(0);
+    }
 
-            File outputFile = new File(TEMP_DIR + "excel_to_pdf_" + UUID.randomUUID() + ".pdf");
-            document.save(outputFile);
-            document.close();
-            workbook.close();
+    private File convertExcel(MultipartFile file) {
+        File outputFile = new File(TEMP_DIR + "excel_to_pdf_" + UUID.randomUUID() + ".pdf");
+        boolean succeeded = false;
+        try {
+            OperationMetrics.recordPages(excelConverter.convert(file, outputFile));
 
             logger.info("Excel converted to PDF successfully");
+            succeeded = true;
             return outputFile;
         } catch (IOException e) {
             throw new ProcessingException("Failed to convert Excel to PDF", e);
+        } finally {
+            // Any failure, including a bad workbook rejected mid-write
+            if (!succeeded) {
+                outputFile.delete();
+            }
         }
     }
 }
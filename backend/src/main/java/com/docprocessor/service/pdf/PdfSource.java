@@ -0,0 +1,52 @@
+package com.docprocessor.service.pdf;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.io.RandomAccessStreamCache.StreamCacheCreateFunction;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A PDF on local disk that can be opened any number of times.
+ *
+ * PDDocument and PDFRenderer are not thread-safe, so parallel workers each
+ * open their own document from the same file. Closing the source removes the
+ * file if it was a private copy of the upload.
+ */
+public class PdfSource implements Closeable {
+
+    private final Path path;
+    private final boolean temporary;
+    private final StreamCacheCreateFunction streamCache;
+
+    PdfSource(Path path, boolean temporary, StreamCacheCreateFunction streamCache) {
+        this.path = path;
+        this.temporary = temporary;
+        this.streamCache = streamCache;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public PDDocument open() throws IOException {
+        RandomAccessReadBufferedFile source = new RandomAccessReadBufferedFile(path);
+        try {
+            return Loader.loadPDF(source, "", null, null, streamCache);
+        } catch (IOException e) {
+            source.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (temporary) {
+            Files.deleteIfExists(path);
+        }
+    }
+}
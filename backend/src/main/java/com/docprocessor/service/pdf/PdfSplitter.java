@@ -0,0 +1,535 @@
+package com.docprocessor.service.pdf;
+
+import com.docprocessor.exception.InvalidFileException;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PDF Splitter
+ *
+ * Purpose: Cuts a PDF into parts by page count, explicit ranges, top-level
+ * bookmarks or an estimated size per part, writing the parts in parallel
+ *
+ * How it works:
+ * - Parts are planned up front on the calling thread; for the size mode every
+ *   page is costed by the streams it actually uses, counting objects shared
+ *   with earlier pages of the same part only once
+ * - The calling thread and up to (threads - 1) helpers each open their own
+ *   PDDocument, since it isn't thread-safe, and pull the next part from a
+ *   shared counter
+ * - Pages are shallow copies, so the source page tree is never modified and
+ *   nothing leads back to it: each copy gets its own resource dictionary,
+ *   pruned to what its content uses (PdfOptimizer), and annotations lose links
+ *   to pages and form fields outside the part
+ * - Finished parts go to a sink on the worker thread (a file per part, or an
+ *   entry in a streamed ZIP)
+ */
+@Component
+public class PdfSplitter {
+
+    /**
+     * Receives each finished part, from worker threads and not in part order.
+     * The part document is closed once the sink returns.
+     */
+    @FunctionalInterface
+    public interface PartSink {
+        void accept(int partIndex, PDDocument part) throws IOException;
+    }
+
+    /**
+     * Pages of one part, 0-based and inclusive.
+     */
+    public record Part(int firstPage, int lastPage) {
+        public int pageCount() {
+            return lastPage - firstPage + 1;
+        }
+    }
+
+    /** Entries that lead to other pages, the page tree or form fields rather than page content */
+    private static final Set<COSName> NOT_FOLLOWED = Set.of(COSName.PARENT, COSName.P, COSName.B,
+            COSName.DEST, COSName.A, COSName.POPUP, COSName.IRT);
+    /** Rough cost of an object header and its cross-reference entry */
+    private static final long OBJECT_OVERHEAD = 40;
+
+    private final PdfDocumentLoader documentLoader;
+    private final ExecutorService splitPool;
+    private final int threads;
+
+    public PdfSplitter(PdfDocumentLoader documentLoader,
+                       @Value("${pdf.split.threads}") int threads) {
+        this.documentLoader = documentLoader;
+        this.splitPool = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("pdf-split-"));
+        this.threads = threads;
+    }
+
+    /**
+     * Split the source and hand every part to the sink.
+     *
+     * @return the parts, in order
+     */
+    public List<Part> split(PdfSource source, SplitOptions options, PartSink sink) throws IOException {
+        options.validate();
+        try (PDDocument document = source.open()) {
+            List<Part> parts = plan(document, options);
+
+            SplitRun run = new SplitRun(parts, sink);
+            List<Helper> helpers = new ArrayList<>();
+            for (int i = 1; i < Math.min(threads, parts.size()); i++) {
+                Helper helper = new Helper(run, source);
+                helper.future = splitPool.submit(helper);
+                helpers.add(helper);
+            }
+
+            Throwable failure = null;
+            try {
+                run.writeParts(document);
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+            }
+            // Wait for every helper, even after a failure, so none still reads the source
+            failure = run.finishHelpers(helpers, failure);
+            if (failure != null) {
+                throw toIOException(failure);
+            }
+            return parts;
+        }
+    }
+
+    // ---- Planning ----
+
+    private List<Part> plan(PDDocument document, SplitOptions options) throws IOException {
+        int pageCount = document.getNumberOfPages();
+        if (pageCount == 0) {
+            throw new InvalidFileException("PDF has no pages");
+        }
+        if (options.getPageCount() != null) {
+            List<Part> parts = new ArrayList<>();
+            for (int first = 0; first < pageCount; first += options.getPageCount()) {
+                parts.add(new Part(first, Math.min(first + options.getPageCount(), pageCount) - 1));
+            }
+            return parts;
+        }
+        if (options.getRanges() != null) {
+            return planRanges(options.parseRanges(), pageCount);
+        }
+        if (options.isByOutline()) {
+            return planOutline(document);
+        }
+        return planSize(document, options.getMaxPartBytes());
+    }
+
+    private static List<Part> planRanges(List<int[]> ranges, int pageCount) {
+        List<Part> parts = new ArrayList<>();
+        for (int[] range : ranges) {
+            int last = range[1] == -1 ? pageCount : range[1];
+            if (range[0] > pageCount || last > pageCount) {
+                throw new InvalidFileException("Page range " + range[0] + "-" + last
+                        + " is outside the document's " + pageCount + " pages");
+            }
+            parts.add(new Part(range[0] - 1, last - 1));
+        }
+        return parts;
+    }
+
+    /**
+     * A part starts at every top-level bookmark; pages before the first one get their own part.
+     */
+    private static List<Part> planOutline(PDDocument document) throws IOException {
+        PDDocumentOutline outline = document.getDocumentCatalog().getDocumentOutline();
+        if (outline == null || !outline.hasChildren()) {
+            throw new InvalidFileException("PDF has no bookmarks to split on");
+        }
+        TreeSet<Integer> starts = new TreeSet<>();
+        for (PDOutlineItem item : outline.children()) {
+            PDPage target = item.findDestinationPage(document);
+            int index = target != null ? document.getPages().indexOf(target) : -1;
+            if (index >= 0) {
+                starts.add(index);
+            }
+        }
+        if (starts.isEmpty()) {
+            throw new InvalidFileException("None of the bookmarks point to a page in this document");
+        }
+        starts.add(0);
+
+        List<Part> parts = new ArrayList<>();
+        Integer first = starts.first();
+        for (Integer next = starts.higher(first); next != null; first = next, next = starts.higher(next)) {
+            parts.add(new Part(first, next - 1));
+        }
+        parts.add(new Part(first, document.getNumberOfPages() - 1));
+        return parts;
+    }
+
+    /**
+     * Fill parts greedily up to maxBytes, costing each page as it will be written:
+     * a pruned copy, plus whatever it uses that the part doesn't contain yet.
+     */
+    private List<Part> planSize(PDDocument document, long maxBytes) throws IOException {
+        List<Part> parts = new ArrayList<>();
+        Set<COSBase> inPart = identitySet();
+        long partBytes = 0;
+        int first = 0;
+        int index = 0;
+        try (PDDocument probe = documentLoader.createDocument()) {
+            for (PDPage page : document.getPages()) {
+                Set<COSDictionary> prunable = identitySet();
+                PDPage copy = copyPage(page, prunable);
+                // The probe is never saved, so skip addPage()'s object number walk
+                probe.getPages().add(copy);
+                new PdfOptimizer(probe, PdfCompressionPreset.LOSSLESS).removeUnused(prunable);
+                probe.getPages().remove(copy);
+
+                Set<COSBase> added = identitySet();
+                long bytes = cost(page, copy, inPart, added);
+                if (index > first && partBytes + bytes > maxBytes) {
+                    parts.add(new Part(first, index - 1));
+                    first = index;
+                    inPart = identitySet();
+                    added = identitySet();
+                    bytes = cost(page, copy, inPart, added);
+                    partBytes = 0;
+                }
+                inPart.addAll(added);
+                partBytes += bytes;
+                index++;
+            }
+        }
+        parts.add(new Part(first, index - 1));
+        return parts;
+    }
+
+    /**
+     * Approximate bytes the page adds to a part that already holds inPart:
+     * encoded stream data plus a fixed overhead per object. New objects go to added.
+     */
+    private static long cost(PDPage original, PDPage copy, Set<COSBase> inPart, Set<COSBase> added) {
+        Deque<COSBase> pending = new ArrayDeque<>();
+        pending.push(copy.getCOSObject());
+        COSArray annotations = original.getCOSObject().getCOSArray(COSName.ANNOTS);
+        if (annotations != null) {
+            pending.push(annotations);
+        }
+
+        long bytes = 0;
+        while (!pending.isEmpty()) {
+            COSBase object = pending.pop();
+            if (object instanceof COSObject reference) {
+                object = reference.getObject();
+            }
+            if (object == null || inPart.contains(object) || !added.add(object)) {
+                continue;
+            }
+            if (object instanceof COSDictionary dictionary) {
+                if (dictionary != copy.getCOSObject() && COSName.PAGE.equals(dictionary.getCOSName(COSName.TYPE))) {
+                    continue;
+                }
+                bytes += OBJECT_OVERHEAD;
+                if (dictionary instanceof COSStream stream) {
+                    bytes += stream.getLength();
+                }
+                for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet()) {
+                    if (!NOT_FOLLOWED.contains(entry.getKey())) {
+                        pending.push(entry.getValue());
+                    }
+                }
+            } else if (object instanceof COSArray array) {
+                for (COSBase element : array) {
+                    pending.push(element);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    // ---- Writing ----
+
+    /**
+     * Build a part from shallow copies of its pages.
+     */
+    private PDDocument buildPart(PDDocument document, Part part) throws IOException {
+        PDDocument result = documentLoader.createDocument();
+        try {
+            // addPage() would walk everything each page refers to, unpruned resources
+            // included, to find the highest imported object number; every object here
+            // comes from the source, so its highest number is a safe bound
+            result.getDocument().setHighestXRefObjectNumber(Math.max(
+                    result.getDocument().getHighestXRefObjectNumber(),
+                    document.getDocument().getHighestXRefObjectNumber()));
+            Map<COSDictionary, PDPage> copies = new IdentityHashMap<>();
+            Set<COSDictionary> prunable = identitySet();
+            for (int i = part.firstPage(); i <= part.lastPage(); i++) {
+                PDPage page = document.getPage(i);
+                PDPage copy = copyPage(page, prunable);
+                result.getPages().add(copy);
+                copies.put(page.getCOSObject(), copy);
+            }
+            for (Map.Entry<COSDictionary, PDPage> entry : copies.entrySet()) {
+                copyAnnotations(entry.getKey(), entry.getValue(), copies);
+            }
+            new PdfOptimizer(result, PdfCompressionPreset.LOSSLESS).removeUnused(prunable);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            result.close();
+            throw e;
+        }
+    }
+
+    /**
+     * A copy of the page that shares its content and resources with the source
+     * but not its parent, inherited attributes, annotations or resource dictionary.
+     * The new resource dictionary (and its XObject, Font and ExtGState
+     * dictionaries) is added to prunable.
+     */
+    private static PDPage copyPage(PDPage page, Set<COSDictionary> prunable) {
+        COSDictionary dictionary = new COSDictionary(page.getCOSObject());
+        dictionary.removeItem(COSName.PARENT);
+        // Article beads belong to threads spanning other pages
+        dictionary.removeItem(COSName.B);
+        dictionary.removeItem(COSName.ANNOTS);
+
+        PDPage copy = new PDPage(dictionary);
+        PDRectangle mediaBox = page.getMediaBox();
+        copy.setMediaBox(mediaBox);
+        PDRectangle cropBox = page.getCropBox();
+        if (!sameBox(cropBox, mediaBox)) {
+            copy.setCropBox(cropBox);
+        }
+        copy.setRotation(page.getRotation());
+
+        PDResources resources = page.getResources();
+        if (resources != null) {
+            COSDictionary own = new COSDictionary(resources.getCOSObject());
+            for (COSName category : List.of(COSName.XOBJECT, COSName.FONT, COSName.EXT_G_STATE)) {
+                COSDictionary entries = own.getCOSDictionary(category);
+                if (entries != null) {
+                    own.setItem(category, new COSDictionary(entries));
+                }
+            }
+            dictionary.setItem(COSName.RESOURCES, own);
+            prunable.add(own);
+        }
+        return copy;
+    }
+
+    private static boolean sameBox(PDRectangle a, PDRectangle b) {
+        return a.getLowerLeftX() == b.getLowerLeftX() && a.getLowerLeftY() == b.getLowerLeftY()
+                && a.getUpperRightX() == b.getUpperRightX() && a.getUpperRightY() == b.getUpperRightY();
+    }
+
+    /**
+     * Copy the page's annotations, pointing them at the copied pages. References
+     * to anything outside the part (other pages, the form field tree, annotations
+     * on other pages) are dropped, so they can't pull the rest of the source in.
+     */
+    private static void copyAnnotations(COSDictionary original, PDPage copy, Map<COSDictionary, PDPage> pages) {
+        COSArray annotations = original.getCOSArray(COSName.ANNOTS);
+        if (annotations == null) {
+            return;
+        }
+        Map<COSDictionary, COSDictionary> copied = new IdentityHashMap<>();
+        List<COSDictionary> ordered = new ArrayList<>();
+        for (int i = 0; i < annotations.size(); i++) {
+            if (annotations.getObject(i) instanceof COSDictionary annotation && !copied.containsKey(annotation)) {
+                COSDictionary annotationCopy = new COSDictionary(annotation);
+                copied.put(annotation, annotationCopy);
+                ordered.add(annotationCopy);
+            }
+        }
+
+        COSArray result = new COSArray();
+        for (COSDictionary annotation : ordered) {
+            if (annotation.containsKey(COSName.P)) {
+                annotation.setItem(COSName.P, copy);
+            }
+            // Popups and their markup, replies; a widget's parent is a form field
+            for (COSName key : List.of(COSName.POPUP, COSName.PARENT, COSName.IRT)) {
+                if (annotation.getDictionaryObject(key) instanceof COSDictionary target) {
+                    relink(annotation, key, copied.get(target));
+                }
+            }
+            if (annotation.containsKey(COSName.DEST)) {
+                relink(annotation, COSName.DEST, retarget(annotation.getDictionaryObject(COSName.DEST), pages));
+            }
+            if (annotation.getDictionaryObject(COSName.A) instanceof COSDictionary action
+                    && "GoTo".equals(action.getNameAsString(COSName.S))) {
+                COSBase destination = retarget(action.getDictionaryObject(COSName.D), pages);
+                COSDictionary actionCopy = null;
+                if (destination != null) {
+                    actionCopy = new COSDictionary(action);
+                    actionCopy.setItem(COSName.D, destination);
+                    actionCopy.removeItem(COSName.NEXT);
+                }
+                relink(annotation, COSName.A, actionCopy);
+            }
+            result.add(annotation);
+        }
+        copy.getCOSObject().setItem(COSName.ANNOTS, result);
+    }
+
+    private static void relink(COSDictionary dictionary, COSName key, COSBase target) {
+        if (target != null) {
+            dictionary.setItem(key, target);
+        } else {
+            dictionary.removeItem(key);
+        }
+    }
+
+    /**
+     * An explicit destination on a copied page, or null when its page isn't in
+     * the part. Named and remote destinations are kept as they are.
+     */
+    private static COSBase retarget(COSBase destination, Map<COSDictionary, PDPage> pages) {
+        if (!(destination instanceof COSArray array) || array.size() == 0
+                || !(array.getObject(0) instanceof COSDictionary target)) {
+            return destination;
+        }
+        PDPage page = pages.get(target);
+        if (page == null) {
+            return null;
+        }
+        COSArray result = new COSArray();
+        result.add(page);
+        for (int i = 1; i < array.size(); i++) {
+            result.add(array.get(i));
+        }
+        return result;
+    }
+
+    private static <T> Set<T> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Shared state of one split request.
+     */
+    private class SplitRun {
+        private final List<Part> parts;
+        private final PartSink sink;
+        private final AtomicInteger nextPart = new AtomicInteger();
+        private final AtomicBoolean failed = new AtomicBoolean();
+
+        SplitRun(List<Part> parts, PartSink sink) {
+            this.parts = parts;
+            this.sink = sink;
+        }
+
+        boolean hasWork() {
+            return !failed.get() && nextPart.get() < parts.size();
+        }
+
+        void writeParts(PDDocument document) throws IOException {
+            int partIndex;
+            try {
+                while (!failed.get() && (partIndex = nextPart.getAndIncrement()) < parts.size()) {
+                    try (PDDocument part = buildPart(document, parts.get(partIndex))) {
+                        sink.accept(partIndex, part);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                failed.set(true);
+                throw e;
+            }
+        }
+
+        /**
+         * Helpers that never got a thread are claimed here and skipped;
+         * running helpers are waited for so no worker outlives the request.
+         */
+        Throwable finishHelpers(List<Helper> helpers, Throwable failure) {
+            for (Helper helper : helpers) {
+                if (helper.claimed.compareAndSet(false, true)) {
+                    continue;
+                }
+                try {
+                    helper.future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failed.set(true);
+                    failure = failure != null ? failure : e;
+                } catch (ExecutionException e) {
+                    failure = failure != null ? failure : e.getCause();
+                }
+            }
+            return failure;
+        }
+    }
+
+    private static class Helper implements Runnable {
+        private final SplitRun run;
+        private final PdfSource source;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private Future<?> future;
+
+        Helper(SplitRun run, PdfSource source) {
+            this.run = run;
+            this.source = source;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true) || !run.hasWork()) {
+                return;
+            }
+            try (PDDocument document = source.open()) {
+                run.writeParts(document);
+            } catch (IOException e) {
+                run.failed.set(true);
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static IOException toIOException(Throwable failure) {
+        if (failure instanceof UncheckedIOException unchecked) {
+            return unchecked.getCause();
+        }
+        if (failure instanceof IOException io) {
+            return io;
+        }
+        if (failure instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        if (failure instanceof InterruptedException) {
+            return new IOException("Interrupted while splitting", failure);
+        }
+        return new IOException(failure);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        splitPool.shutdownNow();
+    }
+}
@@ -0,0 +1,167 @@
+package com.docprocessor.service.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDFormContentStream;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.util.Matrix;
+
+import java.io.IOException;
+
+/**
+ * PDF Stamper
+ *
+ * Purpose: Draws page numbers, headers, footers and a watermark on every page
+ * of a document in a single pass over the page tree
+ *
+ * How it works:
+ * - Each page gets exactly one appended content stream holding all of its
+ *   overlays, with the existing content wrapped in q/Q so its graphics state
+ *   can't leak into them
+ * - Fonts and the watermark's opacity state come from a PdfResourceCache, so
+ *   every page refers to the same objects
+ * - The watermark is laid out once as a form XObject and only placed per page
+ *   (centred, along the diagonal, shrunk to fit)
+ * - Positions are relative to the crop box as displayed, so stamps stay upright
+ *   on pages with a /Rotate entry
+ *
+ * Stamps the document in place; one instance per document.
+ */
+final class PdfStamper {
+
+    private static final Standard14Fonts.FontName TEXT_FONT = Standard14Fonts.FontName.HELVETICA;
+    private static final Standard14Fonts.FontName WATERMARK_FONT = Standard14Fonts.FontName.HELVETICA_BOLD;
+    private static final float WATERMARK_FONT_SIZE = 72;
+    /** The watermark may take up this much of the page diagonal */
+    private static final float WATERMARK_SPAN = 0.8f;
+    private static final float WATERMARK_GRAY = 0.5f;
+    private static final float MARGIN = 40;
+    /** Baseline of the page number and footer, as in the original page numbering */
+    private static final float FOOTER_Y = 30;
+
+    private final PDDocument document;
+    private final StampOptions options;
+    private final PdfResourceCache resources;
+
+    PdfStamper(PDDocument document, StampOptions options) {
+        this.document = document;
+        this.options = options;
+        this.resources = new PdfResourceCache(document);
+    }
+
+    /**
+     * @return the number of pages stamped
+     */
+    int stamp() throws IOException {
+        PDType1Font font = resources.font(TEXT_FONT);
+        float[] widths = resources.widths(TEXT_FONT);
+        PDFormXObject watermark = StampOptions.hasText(options.getWatermark())
+                ? resources.form("watermark", this::createWatermark)
+                : null;
+
+        String total = String.valueOf(document.getNumberOfPages());
+        int pageNumber = 0;
+        for (PDPage page : document.getPages()) {
+            pageNumber++;
+            String number = String.valueOf(pageNumber);
+            PDRectangle box = page.getCropBox();
+            int rotation = Math.floorMod(page.getRotation(), 360);
+            boolean sideways = rotation == 90 || rotation == 270;
+            float width = sideways ? box.getHeight() : box.getWidth();
+            float height = sideways ? box.getWidth() : box.getHeight();
+
+            try (PDPageContentStream contentStream = new PDPageContentStream(
+                    document, page, PDPageContentStream.AppendMode.APPEND, true, true)) {
+                contentStream.transform(displayMatrix(box, rotation));
+
+                if (watermark != null) {
+                    drawWatermark(contentStream, watermark, width, height);
+                }
+
+                contentStream.beginText();
+                contentStream.setFont(font, options.getFontSize());
+                if (StampOptions.hasText(options.getHeader())) {
+                    String header = resolve(options.getHeader(), number, total);
+                    float x = (width - PdfResourceCache.width(header, widths, options.getFontSize())) / 2;
+                    showText(contentStream, header, x, height - MARGIN);
+                }
+                if (StampOptions.hasText(options.getFooter())) {
+                    showText(contentStream, resolve(options.getFooter(), number, total), MARGIN, FOOTER_Y);
+                }
+                if (options.isPageNumbers()) {
+                    String label = resolve(options.getPageNumberFormat(), number, total);
+                    float x = (width - PdfResourceCache.width(label, widths, options.getFontSize())) / 2;
+                    showText(contentStream, label, x, FOOTER_Y);
+                }
+                contentStream.endText();
+            }
+        }
+        return pageNumber;
+    }
+
+    private void drawWatermark(PDPageContentStream contentStream, PDFormXObject watermark,
+                               float width, float height) throws IOException {
+        PDRectangle bounds = watermark.getBBox();
+        double diagonal = Math.hypot(width, height);
+        float scale = (float) Math.min(1, WATERMARK_SPAN * diagonal / bounds.getWidth());
+
+        contentStream.saveGraphicsState();
+        contentStream.setGraphicsStateParameters(resources.opacity(options.getWatermarkOpacity()));
+        contentStream.transform(Matrix.getRotateInstance(Math.atan2(height, width), width / 2, height / 2));
+        contentStream.transform(Matrix.getScaleInstance(scale, scale));
+        contentStream.drawForm(watermark);
+        contentStream.restoreGraphicsState();
+    }
+
+    /**
+     * The watermark text centred on the form's origin.
+     */
+    private PDFormXObject createWatermark(PDDocument document) throws IOException {
+        String text = PdfResourceCache.encodable(options.getWatermark().strip());
+        float textWidth = PdfResourceCache.width(text, resources.widths(WATERMARK_FONT), WATERMARK_FONT_SIZE);
+        float capHeight = resources.font(WATERMARK_FONT).getFontDescriptor().getCapHeight()
+                * WATERMARK_FONT_SIZE / 1000;
+
+        PDFormXObject form = new PDFormXObject(document);
+        form.setResources(new PDResources());
+        form.setBBox(new PDRectangle(-textWidth / 2, -WATERMARK_FONT_SIZE / 2, textWidth, WATERMARK_FONT_SIZE));
+        try (PDFormContentStream contentStream = new PDFormContentStream(form)) {
+            contentStream.setNonStrokingColor(WATERMARK_GRAY);
+            contentStream.beginText();
+            contentStream.setFont(resources.font(WATERMARK_FONT), WATERMARK_FONT_SIZE);
+            contentStream.newLineAtOffset(-textWidth / 2, -capHeight / 2);
+            contentStream.showText(text);
+            contentStream.endText();
+        }
+        return form;
+    }
+
+    private static void showText(PDPageContentStream contentStream, String text, float x, float y)
+            throws IOException {
+        contentStream.setTextMatrix(Matrix.getTranslateInstance(x, y));
+        contentStream.showText(text);
+    }
+
+    private static String resolve(String template, String page, String total) {
+        return PdfResourceCache.encodable(template.replace("{page}", page).replace("{total}", total));
+    }
+
+    /**
+     * Maps the displayed page (origin bottom left, after /Rotate) to user space.
+     */
+    private static Matrix displayMatrix(PDRectangle box, int rotation) {
+        float x = box.getLowerLeftX();
+        float y = box.getLowerLeftY();
+        return switch (rotation) {
+            case 90 -> new Matrix(0, 1, -1, 0, x + box.getWidth(), y);
+            case 180 -> new Matrix(-1, 0, 0, -1, x + box.getWidth(), y + box.getHeight());
+            case 270 -> new Matrix(0, -1, 1, 0, x, y + box.getHeight());
+            default -> Matrix.getTranslateInstance(x, y);
+        };
+    }
+}
@@ -0,0 +1,36 @@
+package com.docprocessor.service.pdf;
+
+import com.docprocessor.exception.InvalidFileException;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Per-request options for rendering PDF pages to images.
+ * Page numbers are 1-based and inclusive; null means "from the start" / "to the end".
+ */
+@Data
+@Builder
+public class RenderOptions {
+    @Builder.Default
+    private float dpi = 300;
+    private Integer firstPage;
+    private Integer lastPage;
+    /** Upper bound on worker threads for this request; capped by the server setting */
+    private Integer parallelism;
+
+    /**
+     * Check the DPI against the server's limit and that the page range is
+     * well formed. Whether it fits the document is only known once it is open.
+     */
+    public void validate(float maxDpi) {
+        if (dpi <= 0 || dpi > maxDpi) {
+            throw new InvalidFileException("DPI must be between 1 and " + (int) maxDpi);
+        }
+        if ((firstPage != null && firstPage < 1) || (lastPage != null && lastPage < 1)) {
+            throw new InvalidFileException("Page numbers start at 1");
+        }
+        if (firstPage != null && lastPage != null && firstPage > lastPage) {
+            throw new InvalidFileException("firstPage must not be after lastPage");
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.docprocessor.service.pdf;
+
+import com.docprocessor.exception.InvalidFileException;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How to cut a PDF into parts; exactly one mode must be set.
+ * Page numbers are 1-based and inclusive.
+ */
+@Data
+@Builder
+public class SplitOptions {
+    /** Fixed number of pages per part */
+    private Integer pageCount;
+    /** Explicit ranges such as "1-3,5,8-" (open end = last page); ranges may overlap */
+    private String ranges;
+    /** One part per top-level bookmark; pages before the first one form their own part */
+    private boolean byOutline;
+    /** Estimated upper bound on the size of each part; a single bigger page gets a part of its own */
+    private Long maxPartBytes;
+
+    public static SplitOptions everyPages(int pageCount) {
+        return SplitOptions.builder().pageCount(pageCount).build();
+    }
+
+    /**
+     * Check that exactly one mode is set and its value is usable.
+     */
+    public void validate() {
+        int modes = (pageCount != null ? 1 : 0) + (ranges != null ? 1 : 0)
+                + (byOutline ? 1 : 0) + (maxPartBytes != null ? 1 : 0);
+        if (modes != 1) {
+            throw new InvalidFileException("Choose one split mode: pageCount, ranges, outline or maxPartSize");
+        }
+        if (pageCount != null && pageCount < 1) {
+            throw new InvalidFileException("pageCount must be at least 1");
+        }
+        if (maxPartBytes != null && maxPartBytes < 1) {
+            throw new InvalidFileException("maxPartSize must be at least 1 byte");
+        }
+        if (ranges != null) {
+            parseRanges();
+        }
+    }
+
+    /**
+     * The ranges as {first, last} pairs; last is -1 for an open end.
+     */
+    List<int[]> parseRanges() {
+        List<int[]> parsed = new ArrayList<>();
+        for (String part : ranges.split(",")) {
+            String range = part.strip();
+            try {
+                int dash = range.indexOf('-');
+                int first = Integer.parseInt((dash < 0 ? range : range.substring(0, dash)).strip());
+                int last = dash < 0 ? first
+                        : range.substring(dash + 1).isBlank() ? -1
+                        : Integer.parseInt(range.substring(dash + 1).strip());
+                if (first < 1 || (last != -1 && last < first)) {
+                    throw new InvalidFileException("Invalid page range: " + range);
+                }
+                parsed.add(new int[]{first, last});
+            } catch (NumberFormatException e) {
+                throw new InvalidFileException("Invalid page range: " + range);
+            }
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,39 @@
+package com.docprocessor.service.pdf;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Overlays to draw on every page in one stamping pass.
+ * Page number format, header and footer may use the {page} and {total} placeholders;
+ * null or blank text means "no such overlay".
+ */
+@Data
+@Builder
+public class StampOptions {
+    private boolean pageNumbers;
+    @Builder.Default
+    private String pageNumberFormat = "{page}";
+    private String header;
+    private String footer;
+    /** Large diagonal text across the middle of each page */
+    private String watermark;
+    @Builder.Default
+    private float watermarkOpacity = 0.2f;
+    @Builder.Default
+    private float fontSize = 12;
+    /**
+     * Append the stamps to the original file as an incremental update instead of
+     * rewriting it: much faster on image-heavy PDFs, at the cost of a slightly
+     * bigger output (the original plus a few KB per page)
+     */
+    private boolean incremental;
+
+    public boolean hasOverlays() {
+        return pageNumbers || hasText(header) || hasText(footer) || hasText(watermark);
+    }
+
+    static boolean hasText(String text) {
+        return text != null && !text.isBlank();
+    }
+}
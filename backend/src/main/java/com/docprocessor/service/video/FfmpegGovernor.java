@@ -0,0 +1,392 @@
+package com.docprocessor.service.video;
+
+import com.docprocessor.exception.JobCancelledException;
+import com.docprocessor.exception.ProcessingException;
+import com.docprocessor.job.Job;
+import com.docprocessor.job.JobContext;
+import com.docprocessor.metrics.OperationMetrics;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * FFmpeg Governor
+ *
+ * Purpose: Keeps concurrent transcodes from oversubscribing the CPU
+ *
+ * How it works:
+ * - At most ffmpeg.max.processes FFmpeg processes run at once; each gets an
+ *   equal share of the cores through -threads
+ * - Callers beyond the limit wait in per-user queues that are served
+ *   round-robin, so one user's batch cannot starve everyone else
+ * - The timeout grows with the input duration instead of a fixed 120s
+ * - Output is drained on a separate thread and only the last lines are kept
+ *   for error reporting
+ * - -progress output is parsed into progress updates on the current job, and
+ *   cancelling the job kills the process tree or drops its place in the queue
+ * - Time spent queued for a slot, process wall time (by outcome) and frames
+ *   written are recorded as ffmpeg.queue.wait, ffmpeg.execution and ffmpeg.frames
+ */
+@Component
+public class FfmpegGovernor {
+
+    private static final Logger logger = LoggerFactory.getLogger(FfmpegGovernor.class);
+    private static final int OUTPUT_TAIL_LINES = 20;
+
+    private final String ffmpegPath;
+    private final int maxProcesses;
+    private final int threadsPerProcess;
+    private final long baseTimeoutSeconds;
+    private final double timeoutPerInputSecond;
+    private final long maxTimeoutSeconds;
+    private final ExecutorService outputPool =
+            Executors.newCachedThreadPool(new CustomizableThreadFactory("ffmpeg-output-"));
+    private final MeterRegistry meterRegistry;
+    private final Timer queueWait;
+    private final DistributionSummary framesWritten;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Waiting callers by user; iteration order is the round-robin order
+    private final LinkedHashMap<String, Deque<Waiter>> waiting = new LinkedHashMap<>();
+    private int availableSlots;
+    private int queued;
+
+    public FfmpegGovernor(@Value("${ffmpeg.path}") String ffmpegPath,
+                          @Value("${ffmpeg.max.processes}") int maxProcesses,
+                          @Value("${ffmpeg.threads.per.process}") int threadsPerProcess,
+                          @Value("${ffmpeg.timeout.base}") long baseTimeoutSeconds,
+                          @Value("${ffmpeg.timeout.per.input.second}") double timeoutPerInputSecond,
+                          @Value("${ffmpeg.timeout.max}") long maxTimeoutSeconds,
+                          MeterRegistry meterRegistry) {
+        this.ffmpegPath = ffmpegPath;
+        this.maxProcesses = Math.max(1, maxProcesses);
+        // 0 means an equal share of the available cores
+        this.threadsPerProcess = threadsPerProcess > 0 ? threadsPerProcess
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / this.maxProcesses);
+        this.baseTimeoutSeconds = baseTimeoutSeconds;
+        this.timeoutPerInputSecond = timeoutPerInputSecond;
+        this.maxTimeoutSeconds = maxTimeoutSeconds;
+        this.availableSlots = this.maxProcesses;
+
+        this.meterRegistry = meterRegistry;
+        this.queueWait = Timer.builder("ffmpeg.queue.wait")
+                .description("Time spent waiting for an FFmpeg slot")
+                .register(meterRegistry);
+        this.framesWritten = DistributionSummary.builder("ffmpeg.frames")
+                .description("Frames written per FFmpeg process")
+                .baseUnit("frames")
+                .register(meterRegistry);
+        Gauge.builder("ffmpeg.processes.running", this, FfmpegGovernor::getRunningProcesses)
+                .register(meterRegistry);
+        Gauge.builder("ffmpeg.processes.queued", this, FfmpegGovernor::getQueuedProcesses)
+                .register(meterRegistry);
+        Gauge.builder("ffmpeg.processes.max", this, FfmpegGovernor::getMaxProcesses)
+                .register(meterRegistry);
+    }
+
+    private static final class Waiter {
+        private final Condition ready;
+        private boolean granted;
+        private boolean cancelled;
+
+        Waiter(Condition ready) {
+            this.ready = ready;
+        }
+    }
+
+    /**
+     * Run FFmpeg with the given arguments (without the binary). The last argument
+     * must be the output file. inputDurationSeconds scales the timeout; pass a
+     * value of zero or less when the duration is unknown.
+     */
+    public void execute(List<String> arguments, double inputDurationSeconds) throws IOException, InterruptedException {
+        Job job = JobContext.current();
+        long waitStart = System.nanoTime();
+        acquire(JobContext.currentOwner(), job);
+        queueWait.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+        try {
+            run(buildCommand(arguments), timeoutFor(inputDurationSeconds), inputDurationSeconds, job);
+        } finally {
+            release();
+        }
+    }
+
+    private List<String> buildCommand(List<String> arguments) {
+        List<String> command = new ArrayList<>(arguments.size() + 6);
+        command.add(ffmpegPath);
+        command.add("-hide_banner");
+        command.add("-nostdin");
+        command.add("-nostats");
+        command.add("-progress");
+        command.add("pipe:1");
+        command.addAll(arguments.subList(0, arguments.size() - 1));
+        // Output option, so it limits the encoder rather than one input's decoder
+        command.add("-threads");
+        command.add(String.valueOf(threadsPerProcess));
+        command.add(arguments.get(arguments.size() - 1));
+        return command;
+    }
+
+    private long timeoutFor(double inputDurationSeconds) {
+        if (inputDurationSeconds <= 0) {
+            return maxTimeoutSeconds;
+        }
+        long scaled = baseTimeoutSeconds + (long) Math.ceil(inputDurationSeconds * timeoutPerInputSecond);
+        return Math.min(scaled, maxTimeoutSeconds);
+    }
+
+    private void run(List<String> command, long timeoutSeconds, double inputDurationSeconds, Job job)
+            throws IOException, InterruptedException {
+        logger.info("Executing FFmpeg (timeout {}s): {}", timeoutSeconds, String.join(" ", command));
+
+        long start = System.nanoTime();
+        String outcome = "failure";
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectErrorStream(true);
+        Process process = pb.start();
+        try {
+            Runnable cancelHook = () -> destroy(process);
+            if (job != null && !job.addCancelHook(cancelHook)) {
+                destroy(process);
+                outcome = "cancelled";
+                throw cancelled();
+            }
+
+            Deque<String> tail = new ArrayDeque<>(OUTPUT_TAIL_LINES);
+            FfmpegProgressParser progress = new FfmpegProgressParser(inputDurationSeconds,
+                    job != null ? job::updateProgress : update -> { });
+            Future<?> drain = outputPool.submit(() -> drainOutput(process, tail, progress));
+            try {
+                if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+                    destroy(process);
+                    outcome = "timeout";
+                    throw new ProcessingException("FFmpeg process timed out after " + timeoutSeconds + " seconds");
+                }
+                awaitDrain(drain);
+            } catch (InterruptedException e) {
+                destroy(process);
+                throw e;
+            } finally {
+                if (job != null) {
+                    job.removeCancelHook(cancelHook);
+                }
+            }
+
+            if (job != null && job.isCancelled()) {
+                outcome = "cancelled";
+                throw cancelled();
+            }
+
+            int exitCode = process.exitValue();
+            if (exitCode != 0) {
+                String output;
+                synchronized (tail) {
+                    output = String.join("\n", tail);
+                }
+                logger.error("FFmpeg exited with code {}: {}", exitCode, output);
+                // The last lines carry the actual error
+                throw new ProcessingException("FFmpeg failed: " + output.substring(Math.max(0, output.length() - 200)));
+            }
+
+            outcome = "success";
+            framesWritten.record(progress.getFrames());
+            OperationMetrics.recordFrames(progress.getFrames());
+        } finally {
+            Timer.builder("ffmpeg.execution")
+                    .description("Wall time of FFmpeg processes")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static void drainOutput(Process process, Deque<String> tail, FfmpegProgressParser progress) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (progress.accept(line)) {
+                    continue;
+                }
+                synchronized (tail) {
+                    if (tail.size() == OUTPUT_TAIL_LINES) {
+                        tail.removeFirst();
+                    }
+                    tail.addLast(line);
+                }
+            }
+        } catch (IOException e) {
+            // Stream closed because the process was destroyed
+        }
+    }
+
+    private static void awaitDrain(Future<?> drain) throws InterruptedException {
+        try {
+            // The process has exited, so the pipe is at EOF unless a child still holds it
+            drain.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            drain.cancel(true);
+        }
+    }
+
+    private static JobCancelledException cancelled() {
+        return new JobCancelledException("Job was cancelled");
+    }
+
+    private static void destroy(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    private void acquire(String owner, Job job) throws InterruptedException {
+        Waiter waiter;
+        lock.lock();
+        try {
+            if (availableSlots > 0 && waiting.isEmpty()) {
+                availableSlots--;
+                return;
+            }
+            waiter = new Waiter(lock.newCondition());
+            waiting.computeIfAbsent(owner, key -> new ArrayDeque<>()).addLast(waiter);
+            queued++;
+            logger.info("FFmpeg slots busy, {} queued (user {})", queued, owner);
+        } finally {
+            lock.unlock();
+        }
+
+        // Registered outside the lock: it may run right away if the job is already cancelled
+        Runnable cancelHook = () -> cancelWaiter(owner, waiter);
+        if (job != null && !job.addCancelHook(cancelHook)) {
+            cancelWaiter(owner, waiter);
+        }
+
+        lock.lock();
+        try {
+            while (!waiter.granted && !waiter.cancelled) {
+                waiter.ready.await();
+            }
+            if (waiter.cancelled) {
+                throw cancelled();
+            }
+        } catch (InterruptedException e) {
+            if (waiter.granted) {
+                // Slot was handed over just as we were interrupted; pass it on
+                releaseLocked();
+            } else {
+                dequeue(owner, waiter);
+            }
+            throw e;
+        } finally {
+            lock.unlock();
+            if (job != null) {
+                job.removeCancelHook(cancelHook);
+            }
+        }
+    }
+
+    private void cancelWaiter(String owner, Waiter waiter) {
+        lock.lock();
+        try {
+            if (!waiter.granted && !waiter.cancelled) {
+                dequeue(owner, waiter);
+                waiter.cancelled = true;
+                waiter.ready.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            releaseLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller must hold the lock
+    private void releaseLocked() {
+        Iterator<Map.Entry<String, Deque<Waiter>>> iterator = waiting.entrySet().iterator();
+        if (!iterator.hasNext()) {
+            availableSlots++;
+            return;
+        }
+        Map.Entry<String, Deque<Waiter>> next = iterator.next();
+        iterator.remove();
+        Waiter waiter = next.getValue().removeFirst();
+        if (!next.getValue().isEmpty()) {
+            // Move this user to the back of the rotation
+            waiting.put(next.getKey(), next.getValue());
+        }
+        queued--;
+        waiter.granted = true;
+        waiter.ready.signal();
+    }
+
+    // Caller must hold the lock
+    private void dequeue(String owner, Waiter waiter) {
+        Deque<Waiter> queue = waiting.get(owner);
+        if (queue != null && queue.remove(waiter)) {
+            queued--;
+            if (queue.isEmpty()) {
+                waiting.remove(owner);
+            }
+        }
+    }
+
+    public int getMaxProcesses() {
+        return maxProcesses;
+    }
+
+    public int getRunningProcesses() {
+        lock.lock();
+        try {
+            return maxProcesses - availableSlots;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueuedProcesses() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        outputPool.shutdownNow();
+    }
+}
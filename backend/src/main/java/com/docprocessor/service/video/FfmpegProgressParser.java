@@ -0,0 +1,94 @@
+package com.docprocessor.service.video;
+
+import com.docprocessor.job.JobProgress;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Turns the key=value blocks FFmpeg writes with -progress into JobProgress
+ * updates. Each block ends with a progress=continue|end line.
+ */
+class FfmpegProgressParser {
+
+    private final double durationSeconds;
+    private final Consumer<JobProgress> listener;
+    private final Map<String, String> block = new HashMap<>();
+    private long frames;
+
+    FfmpegProgressParser(double durationSeconds, Consumer<JobProgress> listener) {
+        this.durationSeconds = durationSeconds;
+        this.listener = listener;
+    }
+
+    /**
+     * Consume one output line. Returns false if it is not progress output,
+     * so the caller can treat it as a log line.
+     */
+    boolean accept(String line) {
+        int separator = line.indexOf('=');
+        if (separator <= 0 || !isKey(line, separator)) {
+            return false;
+        }
+        String key = line.substring(0, separator);
+        String value = line.substring(separator + 1).trim();
+        if (!"progress".equals(key)) {
+            block.put(key, value);
+            return true;
+        }
+
+        double outTime = parseOutTime(block.get("out_time_us"));
+        Double percent = null;
+        if (durationSeconds > 0 && outTime >= 0) {
+            percent = Math.min(100.0, outTime * 100 / durationSeconds);
+        }
+        if ("end".equals(value) && durationSeconds > 0) {
+            percent = 100.0;
+        }
+        frames = Math.max(parseLong(block.get("frame")), frames);
+        listener.accept(new JobProgress(
+                frames,
+                Math.max(outTime, 0),
+                block.get("speed"),
+                block.get("bitrate"),
+                percent));
+        block.clear();
+        return true;
+    }
+
+    /**
+     * Frames written so far, according to the last complete block.
+     */
+    long getFrames() {
+        return frames;
+    }
+
+    // Progress keys are lowercase identifiers like out_time_us or stream_0_0_q
+    private static boolean isKey(String line, int separator) {
+        for (int i = 0; i < separator; i++) {
+            char c = line.charAt(i);
+            if (!(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9') && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double parseOutTime(String microseconds) {
+        long value = parseLong(microseconds);
+        return value >= 0 ? value / 1_000_000.0 : -1;
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            // "N/A" before the first frame is written
+            return -1;
+        }
+    }
+}
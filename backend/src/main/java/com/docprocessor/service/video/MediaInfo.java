@@ -0,0 +1,8 @@
+package com.docprocessor.service.video;
+
+/**
+ * Result of probing a media file: its duration and the format of its first
+ * video and audio streams.
+ */
+public record MediaInfo(double durationSeconds, StreamFormat format) {
+}
@@ -0,0 +1,34 @@
+package com.docprocessor.service.video;
+
+/**
+ * The stream parameters that must be identical for the concat demuxer to join
+ * files with -c copy. audioCodec is null when the file has no audio stream.
+ * level and extradataHash identify the codec parameter sets (SPS/PPS for H.264):
+ * the concat demuxer keeps only the first file's, so they must match too.
+ */
+public record StreamFormat(String videoCodec,
+                           String videoProfile,
+                           int videoLevel,
+                           String extradataHash,
+                           int width,
+                           int height,
+                           String pixelFormat,
+                           String frameRate,
+                           String timeBase,
+                           String audioCodec,
+                           int sampleRate,
+                           int channels) {
+
+    public boolean hasAudio() {
+        return audioCodec != null;
+    }
+
+    /**
+     * The same format without the encoder-specific parameter sets: what inputs
+     * re-encoded with the same settings will have in common.
+     */
+    public StreamFormat withoutParameterSets() {
+        return new StreamFormat(videoCodec, videoProfile, 0, null, width, height, pixelFormat, frameRate,
+                timeBase, audioCodec, sampleRate, channels);
+    }
+}
@@ -0,0 +1,117 @@
+package com.docprocessor.service.video;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads media metadata with ffprobe. Probing only touches the container
+ * headers, so it runs outside the FFmpeg governor.
+ */
+@Component
+public class VideoProbe {
+
+    private static final Logger logger = LoggerFactory.getLogger(VideoProbe.class);
+    private static final long PROBE_TIMEOUT_SECONDS = 30;
+
+    private final String ffprobePath;
+    private final ObjectMapper objectMapper;
+
+    public VideoProbe(@Value("${ffprobe.path}") String ffprobePath, ObjectMapper objectMapper) {
+        this.ffprobePath = ffprobePath;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Duration of the file in seconds, or -1 if it cannot be determined.
+     */
+    public double getDurationSeconds(File file) {
+        MediaInfo info = probe(file);
+        return info != null ? info.durationSeconds() : -1;
+    }
+
+    /**
+     * Duration and stream format of the file, or null if ffprobe cannot read it
+     * or it has no video stream.
+     */
+    public MediaInfo probe(File file) {
+        List<String> command = List.of(ffprobePath, "-v", "error",
+                "-show_data_hash", "SHA256",
+                "-show_entries", "format=duration:stream=codec_type,codec_name,profile,level,extradata_hash,"
+                        + "width,height,pix_fmt,r_frame_rate,time_base,sample_rate,channels",
+                "-of", "json",
+                file.getAbsolutePath());
+        Path output = null;
+        try {
+            // Output goes to a file so the timeout still applies if ffprobe stalls
+            output = Files.createTempFile("ffprobe_", ".json");
+            Process process = new ProcessBuilder(command)
+                    .redirectOutput(output.toFile())
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!process.waitFor(PROBE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                logger.warn("ffprobe timed out on {}", file.getName());
+                return null;
+            }
+            if (process.exitValue() != 0) {
+                logger.warn("ffprobe failed on {} with exit code {}", file.getName(), process.exitValue());
+                return null;
+            }
+            return parse(objectMapper.readTree(output.toFile()));
+        } catch (IOException e) {
+            logger.warn("Could not probe {}: {}", file.getName(), e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            if (output != null) {
+                output.toFile().delete();
+            }
+        }
+    }
+
+    private static MediaInfo parse(JsonNode root) {
+        JsonNode video = null;
+        JsonNode audio = null;
+        for (JsonNode stream : root.path("streams")) {
+            String type = stream.path("codec_type").asText();
+            if (video == null && "video".equals(type)) {
+                video = stream;
+            } else if (audio == null && "audio".equals(type)) {
+                audio = stream;
+            }
+        }
+        if (video == null) {
+            return null;
+        }
+
+        StreamFormat format = new StreamFormat(
+                video.path("codec_name").asText(),
+                video.path("profile").asText(null),
+                video.path("level").asInt(0),
+                video.path("extradata_hash").asText(null),
+                video.path("width").asInt(),
+                video.path("height").asInt(),
+                video.path("pix_fmt").asText(null),
+                video.path("r_frame_rate").asText(null),
+                video.path("time_base").asText(null),
+                audio != null ? audio.path("codec_name").asText() : null,
+                audio != null ? audio.path("sample_rate").asInt() : 0,
+                audio != null ? audio.path("channels").asInt() : 0);
+        // Duration is missing for some raw streams
+        double duration = root.path("format").path("duration").asDouble(-1);
+        return new MediaInfo(duration, format);
+    }
+}
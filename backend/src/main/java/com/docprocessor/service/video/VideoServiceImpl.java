@@ -1,16 +1,27 @@
 package com.docprocessor.service.video;
 
+import com.docprocessor.exception.JobCancelledException;
 import com.docprocessor.exception.ProcessingException;
+import com.docprocessor.job.JobContext;
+import com.docprocessor.metrics.OperationMetrics;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Service
 public class VideoServiceImpl implements VideoService {
@@ -18,22 +29,40 @@ public class VideoServiceImpl implements VideoService {
     private static final Logger logger = LoggerFactory.getLogger(VideoServiceImpl.class);
     private static final String TEMP_DIR = System.getProperty("user.dir") + "/temp/";
 
-    public VideoServiceImpl() {
+    // Codecs the concat demuxer can stream-copy into the .mp4 output
+    private static final Set<String> COPYABLE_VIDEO_CODECS = Set.of("h264", "hevc", "mpeg4", "av1");
+    private static final Set<String> COPYABLE_AUDIO_CODECS = Set.of("aac", "mp3", "ac3");
+    // Codecs we can re-encode a mismatching input into
+    private static final Map<String, String> VIDEO_ENCODERS = Map.of("h264", "libx264", "hevc", "libx265");
+    private static final Set<String> X264_PROFILES = Set.of("baseline", "main", "high", "high10", "high422");
+    private static final Set<String> X265_PROFILES = Set.of("main", "main10");
+
+    private final FfmpegGovernor ffmpegGovernor;
+    private final VideoProbe videoProbe;
+    // No more normalize threads than the governor lets FFmpeg processes run
+    private final ExecutorService normalizePool;
+
+    public VideoServiceImpl(FfmpegGovernor ffmpegGovernor, VideoProbe videoProbe) {
+        this.ffmpegGovernor = ffmpegGovernor;
+        this.videoProbe = videoProbe;
+        this.normalizePool = Executors.newFixedThreadPool(ffmpegGovernor.getMaxProcesses(),
+                new CustomizableThreadFactory("video-normalize-"));
         new File(TEMP_DIR).mkdirs();
     }
 
     @Override
     public File addTextToVideo(MultipartFile video, String text, String position, int fontSize, String color) {
+        File inputFile = null;
+        File outputFile = null;
         try {
-            File inputFile = saveTemp(video, "input_", getExtension(video.getOriginalFilename()));
-            File outputFile = new File(TEMP_DIR + "text_" + UUID.randomUUID() + ".mp4");
+            inputFile = saveTemp(video, "input_", getExtension(video.getOriginalFilename()));
+            outputFile = new File(TEMP_DIR + "text_" + UUID.randomUUID() + ".mp4");
 
             // Calculate position
             String positionFilter = getTextPosition(position);
 
             // FFmpeg command to add text
             List<String> command = new ArrayList<>();
-            command.add("/opt/homebrew/bin/ffmpeg");
             command.add("-i");
             command.add(inputFile.getAbsolutePath());
             command.add("-vf");
@@ -44,29 +73,33 @@ public class VideoServiceImpl implements VideoService {
             command.add("-y");
             command.add(outputFile.getAbsolutePath());
 
-            executeFFmpeg(command);
-            inputFile.delete();
+            executeFFmpeg(command, videoProbe.getDurationSeconds(inputFile));
 
             logger.info("Text added to video successfully");
             return outputFile;
         } catch (Exception e) {
-            throw new ProcessingException("Failed to add text to video: " + e.getMessage(), e);
+            deleteQuietly(outputFile);
+            throw failure("Failed to add text to video", e);
+        } finally {
+            deleteQuietly(inputFile);
         }
     }
 
     @Override
     public File addImageToVideo(MultipartFile video, MultipartFile image, String position) {
+        File videoFile = null;
+        File imageFile = null;
+        File outputFile = null;
         try {
-            File videoFile = saveTemp(video, "video_", getExtension(video.getOriginalFilename()));
-            File imageFile = saveTemp(image, "overlay_", getExtension(image.getOriginalFilename()));
-            File outputFile = new File(TEMP_DIR + "overlay_" + UUID.randomUUID() + ".mp4");
+            videoFile = saveTemp(video, "video_", getExtension(video.getOriginalFilename()));
+            imageFile = saveTemp(image, "overlay_", getExtension(image.getOriginalFilename()));
+            outputFile = new File(TEMP_DIR + "overlay_" + UUID.randomUUID() + ".mp4");
 
             // Calculate overlay position
             String overlayPosition = getOverlayPosition(position);
 
             // FFmpeg command to overlay image
             List<String> command = new ArrayList<>();
-            command.add("/opt/homebrew/bin/ffmpeg");
             command.add("-i");
             command.add(videoFile.getAbsolutePath());
             command.add("-i");
@@ -78,26 +111,30 @@ public class VideoServiceImpl implements VideoService {
             command.add("-y");
             command.add(outputFile.getAbsolutePath());
 
-            executeFFmpeg(command);
-            videoFile.delete();
-            imageFile.delete();
+            executeFFmpeg(command, videoProbe.getDurationSeconds(videoFile));
 
             logger.info("Image added to video successfully");
             return outputFile;
         } catch (Exception e) {
-            throw new ProcessingException("Failed to add image to video: " + e.getMessage(), e);
+            deleteQuietly(outputFile);
+            throw failure("Failed to add image to video", e);
+        } finally {
+            deleteQuietly(videoFile);
+            deleteQuietly(imageFile);
         }
     }
 
     @Override
     public File changeVideoSpeed(MultipartFile video, double speed) {
+        File inputFile = null;
+        File outputFile = null;
         try {
             if (speed <= 0 || speed > 4) {
                 throw new ProcessingException("Speed must be between 0.1 and 4.0");
             }
 
-            File inputFile = saveTemp(video, "input_", getExtension(video.getOriginalFilename()));
-            File outputFile = new File(TEMP_DIR + "speed_" + UUID.randomUUID() + ".mp4");
+            inputFile = saveTemp(video, "input_", getExtension(video.getOriginalFilename()));
+            outputFile = new File(TEMP_DIR + "speed_" + UUID.randomUUID() + ".mp4");
 
             // Calculate video and audio tempo
             double videoSpeed = 1.0 / speed;
@@ -105,7 +142,6 @@ public class VideoServiceImpl implements VideoService {
 
             // FFmpeg command to change speed
             List<String> command = new ArrayList<>();
-            command.add("/opt/homebrew/bin/ffmpeg");
             command.add("-i");
             command.add(inputFile.getAbsolutePath());
             command.add("-filter_complex");
@@ -117,13 +153,17 @@ public class VideoServiceImpl implements VideoService {
             command.add("-y");
             command.add(outputFile.getAbsolutePath());
 
-            executeFFmpeg(command);
-            inputFile.delete();
+            // Slowing down produces more frames to encode than the input has
+            double duration = videoProbe.getDurationSeconds(inputFile);
+            executeFFmpeg(command, Math.max(duration, duration / speed));
 
             logger.info("Video speed changed successfully");
             return outputFile;
         } catch (Exception e) {
-            throw new ProcessingException("Failed to change video speed: " + e.getMessage(), e);
+            deleteQuietly(outputFile);
+            throw failure("Failed to change video speed", e);
+        } finally {
+            deleteQuietly(inputFile);
         }
     }
 
@@ -132,6 +172,8 @@ public class VideoServiceImpl implements VideoService {
         List<File> inputFiles = new ArrayList<>();
         List<File> normalizedFiles = new ArrayList<>();
         File listFile = null;
+        File outputFile = null;
+        double totalDuration = 0;
         try {
             if (videos == null || videos.size() < 2) {
                 throw new ProcessingException("At least 2 videos required for merging");
@@ -139,88 +181,60 @@ public class VideoServiceImpl implements VideoService {
 
             logger.info("Starting video merge process for {} videos", videos.size());
 
-            // Save and normalize all input videos to same format/fps
+            // Save and probe all input videos
+            List<MediaInfo> probes = new ArrayList<>();
             for (int i = 0; i < videos.size(); i++) {
                 String originalFilename = videos.get(i).getOriginalFilename();
                 logger.info("Processing video {}: {}", i + 1, originalFilename);
-                
+
                 File inputFile = saveTemp(videos.get(i), "merge_" + i + "_", getExtension(originalFilename));
                 inputFiles.add(inputFile);
                 logger.info("Saved input file: {} (size: {} bytes)", inputFile.getName(), inputFile.length());
 
-                // Normalize each video to 30fps, same resolution, h264 codec with pixel format
-                File normalizedFile = new File(TEMP_DIR + "normalized_" + i + "_" + UUID.randomUUID() + ".mp4");
-                List<String> normalizeCmd = new ArrayList<>();
-                normalizeCmd.add("/opt/homebrew/bin/ffmpeg");
-                normalizeCmd.add("-i");
-                normalizeCmd.add(inputFile.getAbsolutePath());
-                // Add silent audio source as second input
-                normalizeCmd.add("-f");
-                normalizeCmd.add("lavfi");
-                normalizeCmd.add("-i");
-                normalizeCmd.add("anullsrc=channel_layout=stereo:sample_rate=44100");
-                // Video filter with pixel format
-                normalizeCmd.add("-vf");
-                normalizeCmd.add("fps=30,scale=1920:1080:force_original_aspect_ratio=decrease,pad=1920:1080:(ow-iw)/2:(oh-ih)/2,format=yuv420p");
-                // Video codec settings
-                normalizeCmd.add("-c:v");
-                normalizeCmd.add("libx264");
-                normalizeCmd.add("-preset");
-                normalizeCmd.add("fast");
-                normalizeCmd.add("-crf");
-                normalizeCmd.add("23");
-                normalizeCmd.add("-pix_fmt");
-                normalizeCmd.add("yuv420p");
-                // Audio codec settings - use original audio if exists, otherwise use silent audio
-                normalizeCmd.add("-c:a");
-                normalizeCmd.add("aac");
-                normalizeCmd.add("-b:a");
-                normalizeCmd.add("128k");
-                normalizeCmd.add("-ar");
-                normalizeCmd.add("44100");
-                normalizeCmd.add("-ac");
-                normalizeCmd.add("2");
-                // Use shortest stream (video length)
-                normalizeCmd.add("-shortest");
-                normalizeCmd.add("-y");
-                normalizeCmd.add(normalizedFile.getAbsolutePath());
-                
-                logger.info("Normalizing video {} with command: {}", i + 1, String.join(" ", normalizeCmd));
-                executeFFmpeg(normalizeCmd);
-                normalizedFiles.add(normalizedFile);
-                logger.info("Normalized file created: {} (size: {} bytes)", normalizedFile.getName(), normalizedFile.length());
+                MediaInfo info = videoProbe.probe(inputFile);
+                probes.add(info);
+                double duration = info != null ? info.durationSeconds() : -1;
+                totalDuration = duration > 0 && totalDuration >= 0 ? totalDuration + duration : -1;
             }
 
+            // Stream copy when every input already matches; otherwise all are re-encoded alike
+            StreamFormat target = chooseConcatFormat(probes);
+            List<File> segments = prepareSegments(inputFiles, probes, target, normalizedFiles);
+
             // Create file list for FFmpeg concat
             listFile = new File(TEMP_DIR + "filelist_" + UUID.randomUUID() + ".txt");
             logger.info("Creating concat file list: {}", listFile.getAbsolutePath());
             try (PrintWriter writer = new PrintWriter(listFile)) {
-                for (File f : normalizedFiles) {
+                for (File f : segments) {
                     String line = "file '" + f.getAbsolutePath() + "'";
                     writer.println(line);
                     logger.info("Added to concat list: {}", line);
                 }
             }
 
-            File outputFile = new File(TEMP_DIR + "merged_" + UUID.randomUUID() + ".mp4");
+            outputFile = new File(TEMP_DIR + "merged_" + UUID.randomUUID() + ".mp4");
             logger.info("Output file will be: {}", outputFile.getAbsolutePath());
 
-            // FFmpeg command to concat normalized videos
+            // FFmpeg command to concat the segments without re-encoding
             List<String> command = new ArrayList<>();
-            command.add("/opt/homebrew/bin/ffmpeg");
             command.add("-f");
             command.add("concat");
             command.add("-safe");
             command.add("0");
             command.add("-i");
             command.add(listFile.getAbsolutePath());
+            // Leave out data and extra tracks that camera files often carry
+            command.add("-map");
+            command.add("0:v:0");
+            command.add("-map");
+            command.add("0:a:0?");
             command.add("-c");
             command.add("copy");
             command.add("-y");
             command.add(outputFile.getAbsolutePath());
 
             logger.info("Executing concat command: {}", String.join(" ", command));
-            executeFFmpeg(command);
+            executeFFmpeg(command, totalDuration);
             logger.info("Merge completed. Output file size: {} bytes", outputFile.length());
 
             // Cleanup
@@ -248,36 +262,267 @@ public class VideoServiceImpl implements VideoService {
             if (listFile != null && listFile.exists()) {
                 listFile.delete();
             }
-            throw new ProcessingException("Failed to merge videos: " + e.getMessage(), e);
+            deleteQuietly(outputFile);
+            throw failure("Failed to merge videos", e);
         }
     }
 
-    private void executeFFmpeg(List<String> command) throws Exception {
-        logger.info("Executing FFmpeg: {}", String.join(" ", command));
+    /**
+     * Pick the format the merged file will use. When every input has exactly the
+     * same format (parameter sets included) it is returned as is and the inputs are
+     * joined with stream copy. Otherwise every input is re-encoded with the same
+     * settings to the format most of them share: conformed and original bitstreams
+     * carry different parameter sets, and the concat demuxer would keep only the
+     * first file's. Returns null when there is no common format we can encode to,
+     * in which case everything is normalized to 1080p30 H.264/AAC.
+     */
+    private StreamFormat chooseConcatFormat(List<MediaInfo> probes) {
+        if (probes.contains(null)) {
+            return null;
+        }
+        StreamFormat first = probes.get(0).format();
+        boolean allMatch = probes.stream().allMatch(info -> first.equals(info.format()));
+        if (allMatch && isCopyable(first)) {
+            logger.info("All {} inputs share the same stream format, joining with stream copy", probes.size());
+            return first;
+        }
 
-        ProcessBuilder pb = new ProcessBuilder(command);
-        pb.redirectErrorStream(true);
-        Process process = pb.start();
+        Map<StreamFormat, Integer> counts = new LinkedHashMap<>();
+        for (MediaInfo info : probes) {
+            counts.merge(info.format().withoutParameterSets(), 1, Integer::sum);
+        }
+        StreamFormat common = null;
+        int best = 0;
+        for (Map.Entry<StreamFormat, Integer> entry : counts.entrySet()) {
+            if (entry.getValue() > best) {
+                common = entry.getKey();
+                best = entry.getValue();
+            }
+        }
+        if (isEncodable(common)) {
+            logger.info("{} of {} inputs share the same stream format, re-encoding all of them to it",
+                    best, probes.size());
+            return common;
+        }
+        logger.info("Inputs have no usable common stream format, normalizing all of them");
+        return null;
+    }
+
+    private static boolean isCopyable(StreamFormat format) {
+        return COPYABLE_VIDEO_CODECS.contains(format.videoCodec())
+                && (!format.hasAudio() || COPYABLE_AUDIO_CODECS.contains(format.audioCodec()));
+    }
 
-        // Read output
-        StringBuilder output = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
+    private static boolean isEncodable(StreamFormat format) {
+        return VIDEO_ENCODERS.containsKey(format.videoCodec())
+                && format.pixelFormat() != null
+                && format.frameRate() != null
+                && (!format.hasAudio() || "aac".equals(format.audioCodec()));
+    }
+
+    /**
+     * Inputs are used as they are when all of them are already in the target
+     * format; otherwise every one is re-encoded, in parallel on the bounded
+     * normalize pool.
+     */
+    private List<File> prepareSegments(List<File> inputFiles, List<MediaInfo> probes, StreamFormat target,
+                                       List<File> normalizedFiles) throws Exception {
+        if (target != null && probes.stream().allMatch(info -> target.equals(info.format()))) {
+            return inputFiles;
+        }
+        List<File> segments = new ArrayList<>();
+        List<CompletableFuture<Void>> encodes = new ArrayList<>();
+        for (int i = 0; i < inputFiles.size(); i++) {
+            File inputFile = inputFiles.get(i);
+            MediaInfo info = probes.get(i);
+
+            File normalizedFile = new File(TEMP_DIR + "normalized_" + i + "_" + UUID.randomUUID() + ".mp4");
+            normalizedFiles.add(normalizedFile);
+            segments.add(normalizedFile);
+
+            List<String> normalizeCmd = target != null
+                    ? conformArguments(inputFile, info, target, normalizedFile)
+                    : normalizeArguments(inputFile, normalizedFile);
+            double duration = info != null ? info.durationSeconds() : -1;
+            int index = i + 1;
+            encodes.add(CompletableFuture.runAsync(OperationMetrics.wrap(JobContext.wrap(() -> {
+                logger.info("Normalizing video {} with command: {}", index, String.join(" ", normalizeCmd));
+                try {
+                    executeFFmpeg(normalizeCmd, duration);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+                logger.info("Normalized file created: {} (size: {} bytes)",
+                        normalizedFile.getName(), normalizedFile.length());
+            })), normalizePool));
+        }
+
+        // Wait for every encode, even after a failure, before cleanup deletes their files
+        Exception failure = null;
+        for (CompletableFuture<Void> encode : encodes) {
+            try {
+                encode.join();
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof Exception cause ? cause : e;
+                }
             }
         }
+        if (failure != null) {
+            throw failure;
+        }
+        return segments;
+    }
 
-        boolean completed = process.waitFor(120, TimeUnit.SECONDS);
-        if (!completed) {
-            process.destroyForcibly();
-            throw new ProcessingException("FFmpeg process timed out");
+    /**
+     * Re-encode one input to exactly the target's stream parameters, so it can be
+     * stream-copied alongside the inputs that already have them.
+     */
+    private List<String> conformArguments(File inputFile, MediaInfo info, StreamFormat target, File outputFile) {
+        boolean addSilence = target.hasAudio() && (info == null || !info.format().hasAudio());
+
+        List<String> command = new ArrayList<>();
+        command.add("-i");
+        command.add(inputFile.getAbsolutePath());
+        if (addSilence) {
+            command.add("-f");
+            command.add("lavfi");
+            command.add("-i");
+            command.add(String.format("anullsrc=channel_layout=%s:sample_rate=%d",
+                    channelLayout(target.channels()), target.sampleRate()));
         }
+        command.add("-map");
+        command.add("0:v:0");
+        if (target.hasAudio()) {
+            command.add("-map");
+            command.add(addSilence ? "1:a:0" : "0:a:0");
+        }
+        command.add("-vf");
+        command.add(String.format("scale=%1$d:%2$d:force_original_aspect_ratio=decrease,"
+                        + "pad=%1$d:%2$d:(ow-iw)/2:(oh-ih)/2,fps=%3$s,format=%4$s",
+                target.width(), target.height(), target.frameRate(), target.pixelFormat()));
+        command.add("-c:v");
+        command.add(VIDEO_ENCODERS.get(target.videoCodec()));
+        command.add("-preset");
+        command.add("fast");
+        command.add("-crf");
+        command.add("23");
+        String profile = encoderProfile(target);
+        if (profile != null) {
+            command.add("-profile:v");
+            command.add(profile);
+        }
+        String timescale = timescale(target.timeBase());
+        if (timescale != null) {
+            command.add("-video_track_timescale");
+            command.add(timescale);
+        }
+        if (target.hasAudio()) {
+            command.add("-c:a");
+            command.add("aac");
+            command.add("-ar");
+            command.add(String.valueOf(target.sampleRate()));
+            command.add("-ac");
+            command.add(String.valueOf(target.channels()));
+        } else {
+            command.add("-an");
+        }
+        if (addSilence) {
+            // Use shortest stream (video length)
+            command.add("-shortest");
+        }
+        command.add("-y");
+        command.add(outputFile.getAbsolutePath());
+        return command;
+    }
+
+    /**
+     * Normalize to 30fps 1080p H.264 with AAC audio, used when the inputs have no
+     * common format worth keeping.
+     */
+    private List<String> normalizeArguments(File inputFile, File outputFile) {
+        List<String> normalizeCmd = new ArrayList<>();
+        normalizeCmd.add("-i");
+        normalizeCmd.add(inputFile.getAbsolutePath());
+        // Add silent audio source as second input
+        normalizeCmd.add("-f");
+        normalizeCmd.add("lavfi");
+        normalizeCmd.add("-i");
+        normalizeCmd.add("anullsrc=channel_layout=stereo:sample_rate=44100");
+        // Video filter with pixel format
+        normalizeCmd.add("-vf");
+        normalizeCmd.add("fps=30,scale=1920:1080:force_original_aspect_ratio=decrease,pad=1920:1080:(ow-iw)/2:(oh-ih)/2,format=yuv420p");
+        // Video codec settings
+        normalizeCmd.add("-c:v");
+        normalizeCmd.add("libx264");
+        normalizeCmd.add("-preset");
+        normalizeCmd.add("fast");
+        normalizeCmd.add("-crf");
+        normalizeCmd.add("23");
+        normalizeCmd.add("-pix_fmt");
+        normalizeCmd.add("yuv420p");
+        // Audio codec settings - use original audio if exists, otherwise use silent audio
+        normalizeCmd.add("-c:a");
+        normalizeCmd.add("aac");
+        normalizeCmd.add("-b:a");
+        normalizeCmd.add("128k");
+        normalizeCmd.add("-ar");
+        normalizeCmd.add("44100");
+        normalizeCmd.add("-ac");
+        normalizeCmd.add("2");
+        // Use shortest stream (video length)
+        normalizeCmd.add("-shortest");
+        normalizeCmd.add("-y");
+        normalizeCmd.add(outputFile.getAbsolutePath());
+        return normalizeCmd;
+    }
+
+    private static String encoderProfile(StreamFormat format) {
+        if (format.videoProfile() == null) {
+            return null;
+        }
+        // ffprobe reports e.g. "Constrained Baseline" or "High 10"; x264/x265 want "baseline", "high10"
+        String profile = format.videoProfile().toLowerCase()
+                .replace("constrained ", "")
+                .replace(" ", "");
+        Set<String> supported = "hevc".equals(format.videoCodec()) ? X265_PROFILES : X264_PROFILES;
+        return supported.contains(profile) ? profile : null;
+    }
+
+    private static String timescale(String timeBase) {
+        // time_base "1/15360" -> track timescale 15360
+        if (timeBase == null || !timeBase.startsWith("1/")) {
+            return null;
+        }
+        return timeBase.substring(2);
+    }
+
+    private static String channelLayout(int channels) {
+        return switch (channels) {
+            case 1 -> "mono";
+            case 2 -> "stereo";
+            default -> channels + "c";
+        };
+    }
+
+    private void executeFFmpeg(List<String> arguments, double inputDurationSeconds) throws Exception {
+        ffmpegGovernor.execute(arguments, inputDurationSeconds);
+    }
+
+    /**
+     * Cancellation passes through unchanged so the job engine can tell it apart
+     * from a processing failure.
+     */
+    private static RuntimeException failure(String message, Exception e) {
+        if (e instanceof JobCancelledException cancelled) {
+            return cancelled;
+        }
+        return new ProcessingException(message + ": " + e.getMessage(), e);
+    }
 
-        int exitCode = process.exitValue();
-        if (exitCode != 0) {
-            logger.error("FFmpeg error output: {}", output.toString());
-            throw new ProcessingException("FFmpeg failed: " + output.toString().substring(0, Math.min(200, output.length())));
+    private static void deleteQuietly(File file) {
+        if (file != null && file.exists()) {
+            file.delete();
         }
     }
 
@@ -322,4 +567,9 @@ public class VideoServiceImpl implements VideoService {
             default -> "10:10"; // default top-left
         };
     }
+
+    @PreDestroy
+    public void shutdown() {
+        normalizePool.shutdownNow();
+    }
 }
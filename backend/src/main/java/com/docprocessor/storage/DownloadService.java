@@ -0,0 +1,16 @@
+package com.docprocessor.storage;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+public interface DownloadService {
+
+    /**
+     * Write a processed file from the temp directory to the response, honouring
+     * Range, If-Range and conditional request headers.
+     * Throws ResourceNotFoundException if the file does not exist.
+     */
+    void serve(String filename, HttpServletRequest request, HttpServletResponse response) throws IOException;
+}
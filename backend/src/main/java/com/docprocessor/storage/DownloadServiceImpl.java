@@ -0,0 +1,242 @@
+package com.docprocessor.storage;
+
+import com.docprocessor.exception.ResourceNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Download Service
+ *
+ * Purpose: Serves processed files so downloads can resume, seek and be cached
+ *
+ * How it works:
+ * - ETag and Last-Modified come from the file's size and modification time;
+ *   If-None-Match / If-Modified-Since answer 304 without touching the file
+ * - Range requests get 206 with a single range, or multipart/byteranges for
+ *   several; If-Range falls back to the full file when it no longer matches
+ * - The content type is derived from the stored file name
+ * - Whole files and single ranges are handed to Tomcat's sendfile, so the
+ *   bytes go from the page cache to the socket without passing through the JVM;
+ *   other cases use FileChannel.transferTo
+ */
+@Service
+public class DownloadServiceImpl implements DownloadService {
+
+    // Tomcat's sendfile contract (see org.apache.catalina.Globals)
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private static final String CRLF = "\r\n";
+
+    private final Path tempLocation;
+
+    public DownloadServiceImpl(@Value("${storage.temp.location}") String tempStorageLocation) {
+        this.tempLocation = Paths.get(tempStorageLocation).toAbsolutePath().normalize();
+    }
+
+    private record ByteRange(long start, long end) {
+        long length() {
+            return end - start + 1;
+        }
+    }
+
+    @Override
+    public void serve(String filename, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path file = resolve(filename);
+        long length = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        // Sets ETag/Last-Modified and answers 304 (or 412) when the client's copy is current
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        MediaType contentType = MediaTypeFactory.getMediaType(filename)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(filename).build().toString());
+        boolean head = "HEAD".equals(request.getMethod());
+
+        List<ByteRange> ranges;
+        try {
+            ranges = requestedRanges(request, etag, lastModified, length);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return;
+        }
+
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType.toString());
+            response.setContentLengthLong(length);
+            if (!head) {
+                send(file, new ByteRange(0, length - 1), request, response);
+            }
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            response.setContentType(contentType.toString());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(range, length));
+            response.setContentLengthLong(range.length());
+            if (!head) {
+                send(file, range, request, response);
+            }
+            return;
+        }
+
+        sendMultipart(file, ranges, length, contentType, head, response);
+    }
+
+    private Path resolve(String filename) {
+        Path file = tempLocation.resolve(filename).normalize();
+        // Reject anything that escapes the temp directory (e.g. "..")
+        if (!file.getParent().equals(tempLocation) || !Files.isRegularFile(file)) {
+            throw new ResourceNotFoundException("File not found: " + filename);
+        }
+        return file;
+    }
+
+    /**
+     * Ranges to serve, or an empty list for the whole file. Throws
+     * IllegalArgumentException when the Range header cannot be satisfied.
+     */
+    private static List<ByteRange> requestedRanges(HttpServletRequest request, String etag, long lastModified,
+                                                   long length) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null || !ifRangeMatches(request, etag, lastModified)) {
+            return List.of();
+        }
+
+        List<ByteRange> ranges = new ArrayList<>();
+        long total = 0;
+        for (HttpRange range : HttpRange.parseRanges(header)) {
+            ByteRange byteRange = new ByteRange(range.getRangeStart(length), range.getRangeEnd(length));
+            if (byteRange.start() >= length || byteRange.start() > byteRange.end()) {
+                throw new IllegalArgumentException("Range starts beyond the end of the file");
+            }
+            ranges.add(byteRange);
+            total += byteRange.length();
+        }
+        // Same guard as Spring's ResourceRegion handling: overlapping ranges
+        // must not make us send more than the file itself
+        if (total > length && ranges.size() > 1) {
+            throw new IllegalArgumentException("Ranges exceed the file length");
+        }
+        return ranges;
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // Only a strong match allows a partial response
+            return ifRange.equals(etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static void send(Path file, ByteRange range, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (range.length() == 0) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            // Tomcat writes the file itself once the handler returns
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.toString());
+            request.setAttribute(SENDFILE_START_ATTR, range.start());
+            request.setAttribute(SENDFILE_END_ATTR, range.end() + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            transfer(channel, range, Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    private static void sendMultipart(Path file, List<ByteRange> ranges, long length, MediaType contentType,
+                                      boolean head, HttpServletResponse response) throws IOException {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            byte[] partHeader = (CRLF + "--" + boundary + CRLF
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + CRLF
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range, length) + CRLF
+                    + CRLF).getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + range.length();
+        }
+        byte[] end = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+        contentLength += end.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (head) {
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int i = 0; i < ranges.size(); i++) {
+                out.write(partHeaders.get(i));
+                transfer(channel, ranges.get(i), target);
+            }
+        }
+        out.write(end);
+    }
+
+    private static void transfer(FileChannel channel, ByteRange range, WritableByteChannel target)
+            throws IOException {
+        long position = range.start();
+        long remaining = range.length();
+        while (remaining > 0) {
+            long sent = channel.transferTo(position, remaining, target);
+            if (sent <= 0) {
+                // File shrank underneath us
+                throw new IOException("Unexpected end of file");
+            }
+            position += sent;
+            remaining -= sent;
+        }
+    }
+
+    private static String contentRange(ByteRange range, long length) {
+        return "bytes " + range.start() + "-" + range.end() + "/" + length;
+    }
+}
@@ -2,6 +2,7 @@ package com.docprocessor.storage;
 
 import com.docprocessor.exception.InvalidFileException;
 import com.docprocessor.exception.StorageException;
+import com.docprocessor.job.SpooledMultipartFile;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -97,17 +98,23 @@ public class LocalStorageService implements StorageService {
                 throw new InvalidFileException("Filename contains invalid path sequence: " + originalFilename);
             }
 
-            try (InputStream inputStream = file.getInputStream()) {
-                Path destinationFile = location.resolve(newFilename).normalize().toAbsolutePath();
+            Path destinationFile = location.resolve(newFilename).normalize().toAbsolutePath();
 
-                if (!destinationFile.getParent().equals(location.toAbsolutePath())) {
-                    throw new InvalidFileException("Cannot store file outside designated directory");
-                }
+            if (!destinationFile.getParent().equals(location.toAbsolutePath())) {
+                throw new InvalidFileException("Cannot store file outside designated directory");
+            }
 
-                Files.copy(inputStream, destinationFile, StandardCopyOption.REPLACE_EXISTING);
-                logger.info("File stored successfully: {}", newFilename);
-                return newFilename;
+            // A streamed upload is already on disk, so this is a rename rather than a copy.
+            // If a job has adopted it already, the file is that job's: copy it instead
+            if (file instanceof SpooledMultipartFile spooled && !spooled.claim()) {
+                try (InputStream inputStream = file.getInputStream()) {
+                    Files.copy(inputStream, destinationFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } else {
+                file.transferTo(destinationFile);
             }
+            logger.info("File stored successfully: {}", newFilename);
+            return newFilename;
         } catch (IOException e) {
             throw new StorageException("Failed to store file: " + newFilename, e);
         }
@@ -124,6 +131,12 @@ public class LocalStorageService implements StorageService {
             !ALLOWED_EXCEL_TYPES.contains(contentType)) {
             throw new InvalidFileException("File type not allowed: " + contentType);
         }
+
+        // Streamed uploads were sniffed on the way in: the content has to back up the declared type
+        if (file instanceof SpooledMultipartFile spooled && spooled.getFileType() != null
+                && !spooled.getFileType().matches(contentType)) {
+            throw new InvalidFileException("File content does not match its type: " + contentType);
+        }
     }
 
     private String getFileExtension(String filename) {
@@ -183,6 +196,7 @@ public class LocalStorageService implements StorageService {
     @Override
     @Scheduled(fixedRate = 3600000) // Run every hour
     public void scheduleTempFileCleanup() {
+        // Also expires abandoned chunked uploads: every chunk written touches the part file
         try {
             long currentTime = Instant.now().toEpochMilli();
             long oneHourAgo = currentTime - 3600000;
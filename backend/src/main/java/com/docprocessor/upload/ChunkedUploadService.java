@@ -0,0 +1,43 @@
+package com.docprocessor.upload;
+
+import com.docprocessor.job.SpooledMultipartFile;
+
+import java.io.InputStream;
+
+public interface ChunkedUploadService {
+
+    /**
+     * Open an upload of size bytes. The file is assembled under storage.temp.location.
+     */
+    UploadSession create(String owner, String filename, String contentType, long size);
+
+    /**
+     * Look up an upload owned by the given user. Throws ResourceNotFoundException
+     * if there is none or it has expired.
+     */
+    UploadSession get(String id, String owner);
+
+    /**
+     * Write bytes [start, end) read from body straight to their place in the file.
+     * The chunk only counts as received once its SHA-256 matches sha256 (hex).
+     * Re-sending a chunk that was already received is a no-op; overlapping a chunk
+     * that is still being written throws UploadConflictException.
+     */
+    UploadSession writeChunk(String id, String owner, long start, long end, String sha256, InputStream body);
+
+    /**
+     * Mark the upload finished. Throws UploadConflictException while bytes are
+     * missing, and deletes the upload with an InvalidFileException if its
+     * content is not a video.
+     */
+    UploadSession complete(String id, String owner);
+
+    /**
+     * A handle on a completed upload for the processing services, under the given
+     * form field name. It links the assembled file rather than copying it, and
+     * the upload stays usable for further operations until it expires.
+     */
+    SpooledMultipartFile open(String id, String owner, String name);
+
+    void abort(String id, String owner);
+}
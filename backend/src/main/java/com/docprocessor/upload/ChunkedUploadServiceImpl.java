@@ -0,0 +1,291 @@
+package com.docprocessor.upload;
+
+import com.docprocessor.exception.InvalidFileException;
+import com.docprocessor.exception.ResourceNotFoundException;
+import com.docprocessor.exception.StorageException;
+import com.docprocessor.exception.UploadConflictException;
+import com.docprocessor.job.SpooledMultipartFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chunked Upload Service
+ *
+ * Purpose: Resumable uploads for files too big for one multipart request
+ * (videos above all), sent as chunks in parallel and in any order
+ *
+ * How it works:
+ * - Creating an upload preallocates (sparsely) its part file,
+ *   storage.temp.location/upload_ID.part, at its final size
+ * - Each chunk is streamed from the request body to its own offset with
+ *   positional FileChannel writes, hashing it on the way; it is only recorded
+ *   as received when the SHA-256 the client sent matches, otherwise the range
+ *   stays missing and the client sends it again
+ * - Ranges being written are reserved, so concurrent chunks never overwrite
+ *   each other and a retry of a received chunk is acknowledged without writing
+ * - Completing an upload sniffs its content; the uploads feed the video
+ *   endpoints, so anything recognisably not a video is deleted right away
+ * - A completed upload is handed to the services as a SpooledMultipartFile that
+ *   is a hard link to the part file: no copy, and the job engine can delete
+ *   its handle without losing the upload
+ * - Every chunk write updates the part file's modification time, so an upload
+ *   abandoned for an hour is deleted by LocalStorageService's temp cleanup like
+ *   any other stale temp file; sessions whose part file is gone are dropped
+ */
+@Service
+public class ChunkedUploadServiceImpl implements ChunkedUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedUploadServiceImpl.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+    private final Path tempLocation;
+    private final long maxSize;
+    private final long maxChunkSize;
+    private final int maxSessionsPerUser;
+
+    public ChunkedUploadServiceImpl(@Value("${storage.temp.location}") String tempStorageLocation,
+                                    @Value("${upload.chunked.max.size}") DataSize maxSize,
+                                    @Value("${upload.chunked.max.chunk.size}") DataSize maxChunkSize,
+                                    @Value("${upload.chunked.max.sessions.per.user}") int maxSessionsPerUser) {
+        this.tempLocation = Paths.get(tempStorageLocation).toAbsolutePath();
+        this.maxSize = maxSize.toBytes();
+        this.maxChunkSize = maxChunkSize.toBytes();
+        this.maxSessionsPerUser = maxSessionsPerUser;
+    }
+
+    @Override
+    public UploadSession create(String owner, String filename, String contentType, long size) {
+        if (!StringUtils.hasText(filename) || filename.contains("/") || filename.contains("\\")) {
+            throw new InvalidFileException("Invalid filename: " + filename);
+        }
+        if (size <= 0) {
+            throw new InvalidFileException("Upload size must be positive");
+        }
+        if (size > maxSize) {
+            throw new InvalidFileException("File size exceeds maximum allowed size of " + DataSize.ofBytes(maxSize));
+        }
+        dropExpired();
+        long open = sessions.values().stream().filter(session -> session.getOwner().equals(owner)).count();
+        if (open >= maxSessionsPerUser) {
+            throw new InvalidFileException("Too many open uploads; complete or delete one first");
+        }
+
+        String id = UUID.randomUUID().toString();
+        Path path = tempLocation.resolve("upload_" + id + ".part");
+        try {
+            Files.createDirectories(tempLocation);
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.setLength(size);
+            }
+        } catch (IOException e) {
+            throw new StorageException("Failed to create upload", e);
+        }
+        UploadSession session = new UploadSession(id, owner, filename, contentType, size, path);
+        sessions.put(id, session);
+        logger.info("Upload {} created: {} ({} bytes)", id, filename, size);
+        return session;
+    }
+
+    @Override
+    public UploadSession get(String id, String owner) {
+        UploadSession session = sessions.get(id);
+        if (session == null || !session.getOwner().equals(owner)) {
+            throw new ResourceNotFoundException("Upload not found: " + id);
+        }
+        if (!Files.exists(session.getPath())) {
+            // Removed by the temp cleanup after an hour without chunks
+            sessions.remove(id);
+            throw new ResourceNotFoundException("Upload expired: " + id);
+        }
+        return session;
+    }
+
+    @Override
+    public UploadSession writeChunk(String id, String owner, long start, long end, String sha256, InputStream body) {
+        UploadSession session = get(id, owner);
+        if (session.isComplete()) {
+            throw new UploadConflictException("Upload is already complete");
+        }
+        if (start < 0 || end <= start || end > session.getSize()) {
+            throw new InvalidFileException("Chunk range " + start + "-" + (end - 1)
+                    + " is outside the upload (" + session.getSize() + " bytes)");
+        }
+        if (end - start > maxChunkSize) {
+            throw new InvalidFileException("Chunks may be at most " + DataSize.ofBytes(maxChunkSize));
+        }
+        if (!StringUtils.hasText(sha256)) {
+            throw new InvalidFileException("Chunk checksum is required");
+        }
+        if (session.isReceived(start, end)) {
+            // A retry of a chunk whose response was lost. Read it anyway: an unread
+            // body makes the container drop the connection before the client sees the answer
+            discard(body, end - start);
+            return session;
+        }
+
+        session.reserve(start, end);
+        try {
+            String actual = write(session.getPath(), start, end, body);
+            if (!actual.equalsIgnoreCase(sha256.strip())) {
+                throw new InvalidFileException("Chunk checksum mismatch for bytes " + start + "-" + (end - 1));
+            }
+            session.markReceived(start, end);
+            return session;
+        } catch (NoSuchFileException e) {
+            sessions.remove(id);
+            throw new ResourceNotFoundException("Upload expired: " + id);
+        } catch (IOException e) {
+            throw new StorageException("Failed to write chunk of upload " + id, e);
+        } finally {
+            session.release(start);
+        }
+    }
+
+    /**
+     * Copy [start, end) from body to the same offsets of the part file.
+     *
+     * @return hex SHA-256 of what was written
+     */
+    private String write(Path path, long start, long end, InputStream body) throws IOException {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        byte[] array = buffer.array();
+        long position = start;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            while (position < end) {
+                int read = body.read(array, 0, (int) Math.min(array.length, end - position));
+                if (read == -1) {
+                    throw new InvalidFileException("Chunk ended after " + (position - start)
+                            + " of " + (end - start) + " bytes");
+                }
+                digest.update(array, 0, read);
+                buffer.clear().limit(read);
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void discard(InputStream body, long length) {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try {
+            for (long remaining = length; remaining > 0; ) {
+                int read = body.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    return;
+                }
+                remaining -= read;
+            }
+        } catch (IOException e) {
+            // The chunk is already stored; a broken retry changes nothing
+        }
+    }
+
+    @Override
+    public UploadSession complete(String id, String owner) {
+        UploadSession session = get(id, owner);
+        if (session.isComplete()) {
+            return session;
+        }
+        if (!session.isFullyReceived()) {
+            throw new UploadConflictException("Upload is missing " + (session.getSize() - session.getReceivedBytes())
+                    + " bytes");
+        }
+        FileType fileType = sniff(session.getPath());
+        if (!FileType.VIDEOS.contains(fileType)) {
+            abort(id, owner);
+            throw new InvalidFileException("Upload " + id + " is not a video (" + fileType + ") and was deleted");
+        }
+        session.markComplete(fileType);
+        logger.info("Upload {} complete: {} ({} bytes, {})", id, session.getFilename(), session.getSize(),
+                session.getFileType());
+        return session;
+    }
+
+    @Override
+    public SpooledMultipartFile open(String id, String owner, String name) {
+        UploadSession session = get(id, owner);
+        if (!session.isComplete()) {
+            throw new UploadConflictException("Upload " + id + " is not complete");
+        }
+        Path handle = tempLocation.resolve("spool_" + UUID.randomUUID());
+        try {
+            try {
+                Files.createLink(handle, session.getPath());
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                Files.copy(session.getPath(), handle);
+            }
+            // Using an upload counts as activity: keeps it, and the handle, clear of the temp cleanup
+            Files.setLastModifiedTime(session.getPath(), FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            sessions.remove(id);
+            throw new ResourceNotFoundException("Upload expired: " + id);
+        } catch (IOException e) {
+            throw new StorageException("Failed to open upload " + id, e);
+        }
+        return SpooledMultipartFile.received(name, session.getFilename(), session.getContentType(), handle,
+                session.getSize(), null, session.getFileType());
+    }
+
+    @Override
+    public void abort(String id, String owner) {
+        UploadSession session = get(id, owner);
+        sessions.remove(id);
+        try {
+            Files.deleteIfExists(session.getPath());
+        } catch (IOException e) {
+            logger.warn("Failed to delete upload {}; the temp cleanup will remove it", id, e);
+        }
+    }
+
+    /**
+     * Forget uploads whose part file the temp cleanup has removed.
+     */
+    private void dropExpired() {
+        sessions.values().removeIf(session -> !Files.exists(session.getPath()));
+    }
+
+    private static FileType sniff(Path path) {
+        byte[] head = new byte[FileType.HEAD_BYTES];
+        try (InputStream in = Files.newInputStream(path)) {
+            return FileType.sniff(head, in.readNBytes(head, 0, head.length));
+        } catch (IOException e) {
+            throw new StorageException("Failed to read upload", e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
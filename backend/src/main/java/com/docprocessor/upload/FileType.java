@@ -0,0 +1,155 @@
+package com.docprocessor.upload;
+
+import com.docprocessor.exception.InvalidFileException;
+import com.docprocessor.job.SpooledMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * File formats recognised from their first bytes, independent of the name or
+ * the Content-Type the client sent.
+ */
+public enum FileType {
+    PDF("application/pdf"),
+    JPEG("image/jpeg"),
+    PNG("image/png"),
+    GIF("image/gif"),
+    WEBP("image/webp"),
+    BMP("image/bmp"),
+    TIFF("image/tiff"),
+    /** Zip container: xlsx and the other OOXML formats */
+    ZIP("application/zip", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"),
+    /** OLE2 compound file: legacy xls */
+    OLE2("application/x-tika-msoffice", "application/vnd.ms-excel"),
+    MP4("video/mp4", "video/quicktime", "video/x-m4v", "video/3gpp"),
+    MATROSKA("video/x-matroska", "video/webm"),
+    AVI("video/x-msvideo", "video/avi"),
+    UNKNOWN("application/octet-stream");
+
+    /** How many leading bytes sniff() looks at */
+    public static final int HEAD_BYTES = 16;
+
+    /** Content the image endpoints accept */
+    public static final Set<FileType> IMAGES = Collections.unmodifiableSet(EnumSet.of(JPEG, PNG, GIF, WEBP, BMP, TIFF));
+
+    /** Content the Excel endpoint accepts: xlsx, or a legacy xls */
+    public static final Set<FileType> SPREADSHEETS = Collections.unmodifiableSet(EnumSet.of(ZIP, OLE2));
+
+    /**
+     * Content the video endpoints accept. FFmpeg reads containers sniff() does
+     * not know (MPEG-TS, FLV, ASF...), so UNKNOWN passes; only content that is
+     * recognisably something else is turned away.
+     */
+    public static final Set<FileType> VIDEOS = Collections.unmodifiableSet(EnumSet.of(MP4, MATROSKA, AVI, UNKNOWN));
+
+    private final String mimeType;
+    private final Set<String> aliases;
+
+    FileType(String mimeType, String... aliases) {
+        this.mimeType = mimeType;
+        this.aliases = Set.of(aliases);
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * Whether a declared Content-Type is plausible for content of this type.
+     */
+    public boolean matches(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.split(";", 2)[0].strip().toLowerCase();
+        return type.equals(mimeType) || aliases.contains(type);
+    }
+
+    /**
+     * Reject an upload whose content was sniffed as none of the accepted types,
+     * whatever Content-Type the client declared. Files that were not sniffed on
+     * the way in are left to the decoders.
+     */
+    public static void require(MultipartFile file, Set<FileType> accepted) {
+        if (file instanceof SpooledMultipartFile spooled && spooled.getFileType() != null
+                && !accepted.contains(spooled.getFileType())) {
+            throw new InvalidFileException("Unsupported file content in " + file.getOriginalFilename()
+                    + ": " + spooled.getFileType());
+        }
+    }
+
+    /**
+     * Identify content by its magic bytes.
+     *
+     * @param head   the first bytes of the content
+     * @param length how many of them are valid (may be less than HEAD_BYTES for tiny files)
+     */
+    public static FileType sniff(byte[] head, int length) {
+        if (startsWith(head, length, 0, "%PDF-")) {
+            return PDF;
+        }
+        if (startsWith(head, length, 0xFF, 0xD8, 0xFF)) {
+            return JPEG;
+        }
+        if (startsWith(head, length, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return PNG;
+        }
+        if (startsWith(head, length, 0, "GIF87a") || startsWith(head, length, 0, "GIF89a")) {
+            return GIF;
+        }
+        if (startsWith(head, length, 0, "RIFF") && startsWith(head, length, 8, "WEBP")) {
+            return WEBP;
+        }
+        if (startsWith(head, length, 0, "RIFF") && startsWith(head, length, 8, "AVI ")) {
+            return AVI;
+        }
+        if (startsWith(head, length, 0, "BM")) {
+            return BMP;
+        }
+        if (startsWith(head, length, 0, "II*\0") || startsWith(head, length, 0, "MM\0*")) {
+            return TIFF;
+        }
+        if (startsWith(head, length, 'P', 'K', 0x03, 0x04)) {
+            return ZIP;
+        }
+        if (startsWith(head, length, 0xD0, 0xCF, 0x11, 0xE0, 0xA1, 0xB1, 0x1A, 0xE1)) {
+            return OLE2;
+        }
+        if (startsWith(head, length, 4, "ftyp")) {
+            return MP4;
+        }
+        if (startsWith(head, length, 0x1A, 0x45, 0xDF, 0xA3)) {
+            return MATROSKA;
+        }
+        return UNKNOWN;
+    }
+
+    private static boolean startsWith(byte[] head, int length, int offset, String magic) {
+        byte[] bytes = magic.getBytes(StandardCharsets.ISO_8859_1);
+        if (length < offset + bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (head[offset + i] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWith(byte[] head, int length, int... magic) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((head[i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
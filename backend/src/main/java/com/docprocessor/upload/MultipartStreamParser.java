@@ -0,0 +1,218 @@
+package com.docprocessor.upload;
+
+import org.springframework.http.ContentDisposition;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Multipart Stream Parser
+ *
+ * Purpose: Splits a multipart/form-data body into parts while it is being read,
+ * handing each part's bytes to a caller-supplied sink
+ *
+ * How it works:
+ * - A single fixed buffer slides over the request body; nothing is held per part
+ * - Parts end at CRLF "--" boundary; the buffer starts with a virtual CRLF so
+ *   the first boundary (right at the start of the body) is found the same way
+ * - Everything before the last (delimiter length - 1) bytes of the buffer can
+ *   never be the start of a delimiter, so it is passed to the sink straight away
+ * - Part headers are read line by line up to the blank line, with a size cap
+ *
+ * Usage: call nextPart() until it returns null; readBody() the part in between
+ * (a part that is not read is skipped).
+ */
+final class MultipartStreamParser {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_BYTES = 16 * 1024;
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    /**
+     * Headers of one part. filename is null for ordinary form fields.
+     */
+    record Part(String name, String filename, String contentType) {
+    }
+
+    private final InputStream input;
+    private final byte[] delimiter;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int head;
+    private int tail;
+    private boolean bodyPending;
+    private boolean finished;
+
+    MultipartStreamParser(InputStream input, String boundary) {
+        this.input = input;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        // The body starts with the boundary itself, not CRLF + boundary
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        tail = 2;
+        // Treat the preamble as the body of a part nobody reads
+        bodyPending = true;
+    }
+
+    /**
+     * Advance to the next part, skipping the unread rest of the current one.
+     *
+     * @return the part's headers, or null after the closing boundary
+     */
+    Part nextPart() throws IOException {
+        if (bodyPending) {
+            readBody(OutputStream.nullOutputStream());
+        }
+        if (finished) {
+            return null;
+        }
+
+        // After a boundary: "--" closes the body, otherwise optional whitespace and CRLF
+        require(2);
+        if (buffer[head] == '-' && buffer[head + 1] == '-') {
+            finished = true;
+            return null;
+        }
+        String rest = readLine(delimiter.length + 64);
+        if (!rest.isBlank()) {
+            throw new MalformedMultipartException("Unexpected data after boundary");
+        }
+
+        String name = null;
+        String filename = null;
+        String contentType = null;
+        int headerBytes = 0;
+        for (String line = readLine(MAX_HEADER_BYTES); !line.isEmpty(); line = readLine(MAX_HEADER_BYTES)) {
+            headerBytes += line.length();
+            if (headerBytes > MAX_HEADER_BYTES) {
+                throw new MalformedMultipartException("Part headers are too large");
+            }
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                throw new MalformedMultipartException("Malformed part header");
+            }
+            String header = line.substring(0, colon).strip().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).strip();
+            if (header.equals("content-disposition")) {
+                ContentDisposition disposition = ContentDisposition.parse(value);
+                name = disposition.getName();
+                filename = disposition.getFilename();
+            } else if (header.equals("content-type")) {
+                contentType = value;
+            }
+        }
+        if (name == null) {
+            throw new MalformedMultipartException("Part without a form field name");
+        }
+        bodyPending = true;
+        return new Part(name, filename, contentType);
+    }
+
+    /**
+     * Copy the current part's body to sink, leaving the parser at the next boundary.
+     */
+    void readBody(OutputStream sink) throws IOException {
+        if (!bodyPending) {
+            throw new IllegalStateException("No part body to read");
+        }
+        while (true) {
+            int found = indexOfDelimiter();
+            if (found >= 0) {
+                sink.write(buffer, head, found - head);
+                head = found + delimiter.length;
+                bodyPending = false;
+                return;
+            }
+            // Only the tail of the buffer may hold the start of a delimiter
+            int safe = tail - (delimiter.length - 1);
+            if (safe > head) {
+                sink.write(buffer, head, safe - head);
+                head = safe;
+            }
+            if (!fill()) {
+                throw new MalformedMultipartException("Unexpected end of multipart body");
+            }
+        }
+    }
+
+    private int indexOfDelimiter() {
+        byte first = delimiter[0];
+        int last = tail - delimiter.length;
+        outer:
+        for (int i = head; i <= last; i++) {
+            if (buffer[i] != first) {
+                continue;
+            }
+            for (int j = 1; j < delimiter.length; j++) {
+                if (buffer[i + j] != delimiter[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Read up to the next CRLF and consume it; the line is decoded as UTF-8,
+     * which is what browsers send non-ASCII file names in.
+     */
+    private String readLine(int maxLength) throws IOException {
+        int scanned = 0;
+        while (true) {
+            for (int i = head + scanned; i + 1 < tail; i++) {
+                if (buffer[i] == CRLF[0] && buffer[i + 1] == CRLF[1]) {
+                    String line = new String(buffer, head, i - head, StandardCharsets.UTF_8);
+                    head = i + 2;
+                    return line;
+                }
+            }
+            // The last byte may be the CR of a CRLF that has not arrived yet
+            scanned = Math.max(0, tail - head - 1);
+            if (scanned > maxLength) {
+                throw new MalformedMultipartException("Part header line is too long");
+            }
+            if (!fill()) {
+                throw new MalformedMultipartException("Unexpected end of multipart body");
+            }
+        }
+    }
+
+    private void require(int bytes) throws IOException {
+        while (tail - head < bytes) {
+            if (!fill()) {
+                throw new MalformedMultipartException("Unexpected end of multipart body");
+            }
+        }
+    }
+
+    /**
+     * Move the unconsumed bytes to the front and read more after them.
+     *
+     * @return false at end of input
+     */
+    private boolean fill() throws IOException {
+        if (head > 0) {
+            System.arraycopy(buffer, head, buffer, 0, tail - head);
+            tail -= head;
+            head = 0;
+        }
+        if (tail == buffer.length) {
+            throw new MalformedMultipartException("Multipart buffer overflow");
+        }
+        int read = input.read(buffer, tail, buffer.length - tail);
+        if (read == -1) {
+            return false;
+        }
+        tail += read;
+        return true;
+    }
+
+    static final class MalformedMultipartException extends IOException {
+        MalformedMultipartException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.docprocessor.upload;
+
+import com.docprocessor.exception.InvalidFileException;
+import com.docprocessor.exception.StorageException;
+import com.docprocessor.job.SpooledMultipartFile;
+import jakarta.servlet.ServletRequestEvent;
+import jakarta.servlet.ServletRequestListener;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.multipart.MultipartResolver;
+import org.springframework.web.multipart.support.DefaultMultipartHttpServletRequest;
+import org.springframework.web.servlet.DispatcherServlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Streaming Multipart Resolver
+ *
+ * Purpose: Receives uploads straight into the temp directory, writing each byte
+ * to disk exactly once
+ *
+ * How it works:
+ * - Replaces the container's multipart handling (spring.servlet.multipart.enabled=false),
+ *   which buffered parts to its own temp files that were then copied again by
+ *   the job engine and hashed again by the result cache
+ * - The body is parsed as it arrives; each file part goes to
+ *   storage.temp.location/spool_UUID while its SHA-256 is computed and its
+ *   first bytes are kept for type sniffing
+ * - Files are handed to controllers as SpooledMultipartFile handles carrying the
+ *   hash and the sniffed FileType; the job engine adopts them without copying
+ *   and the result cache uses the hash instead of re-reading them
+ * - The existing spring.servlet.multipart.max-file-size / max-request-size limits
+ *   are enforced while reading (a declared Content-Length over the limit is
+ *   rejected before reading anything)
+ * - Files nobody claimed are deleted when the request completes; the request
+ *   listener catches the async case (e.g. StreamingResponseBody), where
+ *   DispatcherServlet never calls cleanupMultipart
+ */
+@Component(DispatcherServlet.MULTIPART_RESOLVER_BEAN_NAME)
+public class StreamingMultipartResolver implements MultipartResolver, ServletRequestListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingMultipartResolver.class);
+
+    /** Form fields are kept in memory, so they get a much smaller cap than files */
+    private static final int MAX_FIELD_BYTES = 64 * 1024;
+
+    private static final String FILES_ATTRIBUTE = StreamingMultipartResolver.class.getName() + ".FILES";
+
+    private final Path spoolLocation;
+    private final long maxFileSize;
+    private final long maxRequestSize;
+
+    public StreamingMultipartResolver(@Value("${storage.temp.location}") String tempStorageLocation,
+                                      @Value("${spring.servlet.multipart.max-file-size}") DataSize maxFileSize,
+                                      @Value("${spring.servlet.multipart.max-request-size}") DataSize maxRequestSize) {
+        this.spoolLocation = Paths.get(tempStorageLocation).toAbsolutePath();
+        this.maxFileSize = maxFileSize.toBytes();
+        this.maxRequestSize = maxRequestSize.toBytes();
+    }
+
+    @Override
+    public boolean isMultipart(HttpServletRequest request) {
+        return StringUtils.startsWithIgnoreCase(request.getContentType(), MediaType.MULTIPART_FORM_DATA_VALUE);
+    }
+
+    @Override
+    public MultipartHttpServletRequest resolveMultipart(HttpServletRequest request) {
+        if (request.getContentLengthLong() > maxRequestSize) {
+            throw new MaxUploadSizeExceededException(maxRequestSize);
+        }
+        String boundary = boundary(request.getContentType());
+        Charset charset = request.getCharacterEncoding() != null
+                ? Charset.forName(request.getCharacterEncoding()) : StandardCharsets.UTF_8;
+
+        MultiValueMap<String, MultipartFile> files = new LinkedMultiValueMap<>();
+        Map<String, List<String>> fields = new LinkedHashMap<>();
+        Map<String, String> contentTypes = new LinkedHashMap<>();
+        try (InputStream body = new LimitedInputStream(request.getInputStream(), maxRequestSize)) {
+            Files.createDirectories(spoolLocation);
+            MultipartStreamParser parser = new MultipartStreamParser(body, boundary);
+            MultipartStreamParser.Part part;
+            while ((part = parser.nextPart()) != null) {
+                if (part.filename() != null) {
+                    files.add(part.name(), receive(parser, part));
+                } else {
+                    fields.computeIfAbsent(part.name(), name -> new ArrayList<>()).add(readField(parser, charset));
+                }
+                if (part.contentType() != null) {
+                    contentTypes.put(part.name(), part.contentType());
+                }
+            }
+        } catch (MultipartStreamParser.MalformedMultipartException e) {
+            discard(files);
+            throw new InvalidFileException("Malformed multipart request: " + e.getMessage());
+        } catch (IOException e) {
+            discard(files);
+            throw new StorageException("Failed to receive upload", e);
+        } catch (RuntimeException e) {
+            discard(files);
+            throw e;
+        }
+
+        request.setAttribute(FILES_ATTRIBUTE, files);
+        Map<String, String[]> parameters = new LinkedHashMap<>();
+        fields.forEach((name, values) -> parameters.put(name, values.toArray(String[]::new)));
+        return new DefaultMultipartHttpServletRequest(request, files, parameters, contentTypes);
+    }
+
+    @Override
+    public void cleanupMultipart(MultipartHttpServletRequest request) {
+        discard(request.getMultiFileMap());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void requestDestroyed(ServletRequestEvent event) {
+        Object files = event.getServletRequest().getAttribute(FILES_ATTRIBUTE);
+        if (files != null) {
+            discard((MultiValueMap<String, MultipartFile>) files);
+        }
+    }
+
+    /**
+     * Write one file part to its spool file, hashing and sniffing it on the way.
+     */
+    private SpooledMultipartFile receive(MultipartStreamParser parser, MultipartStreamParser.Part part)
+            throws IOException {
+        Path target = spoolLocation.resolve("spool_" + UUID.randomUUID());
+        ReceivingOutputStream out = new ReceivingOutputStream(Files.newOutputStream(target), maxFileSize);
+        try (out) {
+            parser.readBody(out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+        FileType fileType = FileType.sniff(out.head, (int) Math.min(out.size, FileType.HEAD_BYTES));
+        logger.debug("Received {} ({} bytes, {}) as {}", part.filename(), out.size, fileType, target.getFileName());
+        return SpooledMultipartFile.received(part.name(), part.filename(), part.contentType(), target,
+                out.size, HexFormat.of().formatHex(out.digest.digest()), fileType);
+    }
+
+    private String readField(MultipartStreamParser parser, Charset charset) throws IOException {
+        ByteArrayOutputStream value = new ByteArrayOutputStream() {
+            @Override
+            public void write(byte[] b, int off, int len) {
+                if (count + len > MAX_FIELD_BYTES) {
+                    throw new InvalidFileException("Form field exceeds " + MAX_FIELD_BYTES + " bytes");
+                }
+                super.write(b, off, len);
+            }
+        };
+        parser.readBody(value);
+        return value.toString(charset);
+    }
+
+    private static String boundary(String contentType) {
+        try {
+            String boundary = MediaType.parseMediaType(contentType).getParameter("boundary");
+            if (boundary != null && boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+                boundary = boundary.substring(1, boundary.length() - 1);
+            }
+            if (!StringUtils.hasLength(boundary)) {
+                throw new InvalidFileException("Multipart request has no boundary");
+            }
+            return boundary;
+        } catch (InvalidMediaTypeException e) {
+            throw new InvalidFileException("Invalid multipart content type");
+        }
+    }
+
+    private static void discard(MultiValueMap<String, MultipartFile> files) {
+        files.values().stream()
+                .flatMap(List::stream)
+                .filter(file -> file instanceof SpooledMultipartFile)
+                .map(SpooledMultipartFile.class::cast)
+                .filter(SpooledMultipartFile::claim)
+                .forEach(SpooledMultipartFile::delete);
+    }
+
+    /**
+     * Counts, hashes and keeps the first bytes of everything written through it.
+     */
+    private static final class ReceivingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final long limit;
+        private final MessageDigest digest;
+        private final byte[] head = new byte[FileType.HEAD_BYTES];
+        private long size;
+
+        ReceivingOutputStream(OutputStream out, long limit) {
+            this.out = out;
+            this.limit = limit;
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            if (size + len > limit) {
+                throw new MaxUploadSizeExceededException(limit);
+            }
+            if (size < head.length) {
+                System.arraycopy(b, off, head, (int) size, (int) Math.min(len, head.length - size));
+            }
+            digest.update(b, off, len);
+            out.write(b, off, len);
+            size += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Fails the request as soon as more than limit bytes have been read, for
+     * clients that send no Content-Length or a wrong one.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        private void count(int bytes) {
+            count += bytes;
+            if (count > limit) {
+                throw new MaxUploadSizeExceededException(limit);
+            }
+        }
+    }
+}
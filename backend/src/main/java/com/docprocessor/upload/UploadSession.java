@@ -0,0 +1,148 @@
+package com.docprocessor.upload;
+
+import com.docprocessor.exception.UploadConflictException;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * One resumable upload: the part file it is assembled in and which byte ranges
+ * of it have arrived.
+ *
+ * Ranges are half-open [start, end). Received ranges are merged as they arrive;
+ * ranges being written right now are reserved so that a retried chunk cannot
+ * overwrite one that is still in flight.
+ */
+public class UploadSession {
+
+    public record ByteRange(long start, long end) {
+    }
+
+    private final String id;
+    private final String owner;
+    private final String filename;
+    private final String contentType;
+    private final long size;
+    private final Path path;
+    private final Instant createdAt;
+    private final TreeMap<Long, Long> received = new TreeMap<>();
+    private final TreeMap<Long, Long> inFlight = new TreeMap<>();
+    private FileType fileType;
+    private boolean complete;
+
+    UploadSession(String id, String owner, String filename, String contentType, long size, Path path) {
+        this.id = id;
+        this.owner = owner;
+        this.filename = filename;
+        this.contentType = contentType;
+        this.size = size;
+        this.path = path;
+        this.createdAt = Instant.now();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public synchronized FileType getFileType() {
+        return fileType;
+    }
+
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    public synchronized long getReceivedBytes() {
+        return received.entrySet().stream().mapToLong(range -> range.getValue() - range.getKey()).sum();
+    }
+
+    public synchronized List<ByteRange> getReceived() {
+        List<ByteRange> ranges = new ArrayList<>(received.size());
+        received.forEach((start, end) -> ranges.add(new ByteRange(start, end)));
+        return ranges;
+    }
+
+    /**
+     * Whether every byte of [start, end) has already been received.
+     */
+    synchronized boolean isReceived(long start, long end) {
+        Map.Entry<Long, Long> range = received.floorEntry(start);
+        return range != null && range.getValue() >= end;
+    }
+
+    /**
+     * Claim [start, end) for writing. Fails if any of it has been received or
+     * is being written by another request.
+     */
+    synchronized void reserve(long start, long end) {
+        if (overlaps(received, start, end) || overlaps(inFlight, start, end)) {
+            throw new UploadConflictException("Bytes " + start + "-" + (end - 1)
+                    + " overlap a chunk that was already received or is being uploaded");
+        }
+        inFlight.put(start, end);
+    }
+
+    synchronized void release(long start) {
+        inFlight.remove(start);
+    }
+
+    synchronized void markReceived(long start, long end) {
+        inFlight.remove(start);
+        // Merge with the neighbours it touches
+        Map.Entry<Long, Long> before = received.floorEntry(start);
+        if (before != null && before.getValue() == start) {
+            start = before.getKey();
+        }
+        Long after = received.remove(end);
+        if (after != null) {
+            end = after;
+        }
+        received.put(start, end);
+    }
+
+    synchronized boolean isFullyReceived() {
+        return received.size() == 1 && received.firstKey() == 0 && received.firstEntry().getValue() == size;
+    }
+
+    synchronized void markComplete(FileType fileType) {
+        this.fileType = fileType;
+        this.complete = true;
+    }
+
+    private static boolean overlaps(TreeMap<Long, Long> ranges, long start, long end) {
+        Map.Entry<Long, Long> before = ranges.floorEntry(start);
+        if (before != null && before.getValue() > start) {
+            return true;
+        }
+        Long next = ranges.ceilingKey(start);
+        return next != null && next < end;
+    }
+}